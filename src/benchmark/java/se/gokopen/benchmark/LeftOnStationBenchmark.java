@@ -0,0 +1,123 @@
+package se.gokopen.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+
+/**
+ * Patruller som är kvar på en kontroll. filterInJava är det filter som
+ * tidigare låg i PatrolServiceImpl och går igenom alla poäng i minnet.
+ * antiJoinQuery är PatrolDAO.getPatrolsLeftOnStation mot H2 i minnet med
+ * samma tävling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeftOnStationBenchmark {
+
+    @Param({ "50", "500", "5000" })
+    private int patrols;
+
+    @Param({ "20", "100" })
+    private int stations;
+
+    private List<PatrolImpl> competitors;
+    private Integer stationId;
+
+    private SessionFactory sessionFactory;
+    private PatrolDAO patrolDao;
+    private Integer dbStationId;
+
+    @Setup
+    public void setup() throws ScoreNotSavedException {
+        SyntheticCompetition competition = SyntheticCompetition.generate(patrols, stations, 42, true);
+        competitors = competition.getPatrols();
+        stationId = competition.getStations().get(stations / 2).getStationId();
+
+        sessionFactory = EmbeddedDatabase.createSessionFactory("leftonstation" + patrols + "x" + stations);
+        patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        ScoreDAO scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+
+        SyntheticCompetition stored = SyntheticCompetition.generate(patrols, stations, 42, false);
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        for (Track track : stored.getTracks()) {
+            session.save(track);
+        }
+        for (Station station : stored.getStations()) {
+            session.save(station);
+        }
+        // Poängen sparas i en batch efteråt istället för via kaskad från patrullen
+        for (PatrolImpl patrol : stored.getPatrols()) {
+            patrol.getScores().clear();
+            session.save(patrol);
+        }
+        session.flush();
+        scoreDao.saveNewScores(new ArrayList<ScoreImpl>(stored.getScores()));
+        session.getTransaction().commit();
+        dbStationId = stored.getStations().get(stations / 2).getStationId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<PatrolImpl> filterInJava() {
+        List<PatrolImpl> left = new ArrayList<PatrolImpl>(competitors);
+        Iterator<PatrolImpl> itt = left.iterator();
+        while (itt.hasNext()) {
+            PatrolImpl patrol = itt.next();
+            for (ScoreImpl score : patrol.getScores()) {
+                if (score.getStation().getStationId().equals(stationId)) {
+                    itt.remove();
+                    break;
+                }
+            }
+        }
+        return left;
+    }
+
+    @Benchmark
+    public List<PatrolImpl> antiJoinQuery() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return patrolDao.getPatrolsLeftOnStation(dbStationId);
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package se.gokopen.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.service.Ranking;
+
+/**
+ * Sortering med PatrolImpl.compareTo och summering av poäng, som båda räknar
+ * om summorna från patrullens poäng vid varje anrop, jämfört med att räkna
+ * fram en nyckel per patrull med Ranking och sortera nycklarna.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({ "50", "500", "5000", "10000" })
+    private int patrols;
+
+    @Param({ "20", "100" })
+    private int stations;
+
+    private List<PatrolImpl> competitors;
+    // Summorna per patrull, som TrackStandings håller dem
+    private int[] scorePoints;
+    private int[] stylePoints;
+    private int[] maxScores;
+    private int[] reportedStations;
+    private final Ranking ranking = Ranking.parse("TOTAL,SCORE_POINT,MAX_SCORES");
+
+    @Setup
+    public void setup() {
+        competitors = SyntheticCompetition.generate(patrols, stations, 42, true).getPatrols();
+        scorePoints = new int[patrols];
+        stylePoints = new int[patrols];
+        maxScores = new int[patrols];
+        reportedStations = new int[patrols];
+        for (int i = 0; i < patrols; i++) {
+            for (ScoreImpl score : competitors.get(i).getScores()) {
+                scorePoints[i] += score.getScorePoint();
+                stylePoints[i] += score.getStylePoint();
+                if (score.getScorePoint() >= score.getStation().getMaxScore()) {
+                    maxScores[i]++;
+                }
+                reportedStations[i]++;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<PatrolImpl> sortByCompareTo() {
+        List<PatrolImpl> sorted = new ArrayList<PatrolImpl>(competitors);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public int[] sortByRankingKeys() {
+        long[] keys = new long[patrols];
+        for (int i = 0; i < patrols; i++) {
+            keys[i] = ranking.key(scorePoints[i], stylePoints[i], maxScores[i], reportedStations[i]);
+        }
+        return Ranking.sortDescending(keys);
+    }
+
+    @Benchmark
+    public void computeTotals(Blackhole blackhole) {
+        for (PatrolImpl patrol : competitors) {
+            blackhole.consume(patrol.getTotalScore());
+            blackhole.consume(patrol.getTotalScorePoint());
+            blackhole.consume(patrol.getTotalStylePoint());
+            blackhole.consume(patrol.getTotalReportedStations());
+        }
+    }
+}
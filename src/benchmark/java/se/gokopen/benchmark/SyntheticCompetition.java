@@ -0,0 +1,101 @@
+package se.gokopen.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+
+/**
+ * Påhittad tävling i minnet med ett givet antal patruller och kontroller.
+ * Samma frö ger alltid samma tävling så att mätningar går att jämföra.
+ */
+public class SyntheticCompetition {
+
+    public static final int TRACKS = 4;
+    // Andel kontroller som varje patrull har hunnit få poäng på
+    public static final double REPORTED_SHARE = 0.8;
+
+    private final List<Track> tracks = new ArrayList<Track>();
+    private final List<Station> stations = new ArrayList<Station>();
+    private final List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+    private final List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+
+    private SyntheticCompetition() {
+
+    }
+
+    /**
+     * @param withIds sätt id:n direkt, för mätningar som inte går via databasen
+     */
+    public static SyntheticCompetition generate(int patrolCount, int stationCount, long seed, boolean withIds) {
+        SyntheticCompetition competition = new SyntheticCompetition();
+        Random random = new Random(seed);
+        for (int t = 0; t < TRACKS; t++) {
+            Track track = new Track();
+            track.setTrackName("Klass " + (t + 1));
+            if (withIds) {
+                track.setTrackId(t + 1);
+            }
+            competition.tracks.add(track);
+        }
+        for (int s = 0; s < stationCount; s++) {
+            Station station = new Station();
+            station.setStationName("Kontroll " + (s + 1));
+            station.setStationNumber(s + 1);
+            station.setMaxScore(10);
+            station.setMaxStyleScore(5);
+            if (withIds) {
+                station.setStationId(s + 1);
+            }
+            competition.stations.add(station);
+        }
+        int scoreId = 1;
+        for (int p = 0; p < patrolCount; p++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("Patrull " + (p + 1));
+            patrol.setTroop("Kår " + (p % 50 + 1));
+            patrol.setTrack(competition.tracks.get(p % TRACKS));
+            if (withIds) {
+                patrol.setPatrolId(p + 1);
+            }
+            for (Station station : competition.stations) {
+                if (random.nextDouble() >= REPORTED_SHARE) {
+                    continue;
+                }
+                ScoreImpl score = new ScoreImpl();
+                score.setPatrol(patrol);
+                score.setStation(station);
+                score.setScorePoint(random.nextInt(11));
+                score.setStylePoint(random.nextInt(6));
+                if (withIds) {
+                    score.setScoreId(scoreId++);
+                }
+                patrol.getScores().add(score);
+                competition.scores.add(score);
+            }
+            competition.patrols.add(patrol);
+        }
+        return competition;
+    }
+
+    public List<Track> getTracks() {
+        return Collections.unmodifiableList(tracks);
+    }
+
+    public List<Station> getStations() {
+        return Collections.unmodifiableList(stations);
+    }
+
+    public List<PatrolImpl> getPatrols() {
+        return Collections.unmodifiableList(patrols);
+    }
+
+    public List<ScoreImpl> getScores() {
+        return Collections.unmodifiableList(scores);
+    }
+}
@@ -0,0 +1,34 @@
+package se.gokopen.loadtest;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+/**
+ * Webbappen direkt från src/main/webapp i en Jetty 7 (Servlet 2.5, samma som
+ * servlet-api i pom.xml). Klasserna tas från Mavens klassväg, så
+ * target/classes måste vara byggd.
+ */
+class EmbeddedServer {
+
+    static final String CONTEXT_PATH = "/gokopen";
+
+    private final Server server;
+
+    EmbeddedServer(int port) {
+        server = new Server(port);
+        WebAppContext webapp = new WebAppContext("src/main/webapp", CONTEXT_PATH);
+        webapp.setParentLoaderPriority(true);
+        // Taggbiblioteken (c, form, sec) ligger i burkar på klassvägen
+        webapp.setAttribute("org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern",
+                ".*/(jstl|spring-webmvc|spring-security-taglibs)-[^/]*\\.jar$");
+        server.setHandler(webapp);
+    }
+
+    void start() throws Exception {
+        server.start();
+    }
+
+    void stop() throws Exception {
+        server.stop();
+    }
+}
@@ -0,0 +1,246 @@
+package se.gokopen.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.gokopen.service.CompetitionGenerator;
+import se.gokopen.service.LatencyHistogram;
+import se.gokopen.service.RequestMetrics;
+
+/**
+ * Lasttest av en hel tävlingsdag: K kontroller som var och en loggar in och
+ * rapporterar poäng (välj kontroll, tänk, spara, tänk) och V åskådare som
+ * läser resultatlistan för en klass med jämna mellanrum. Efteråt skrivs antal
+ * anrop, anrop per sekund, median, 99:e percentilen och andel fel per sida.
+ *
+ * Utan url= startas webbappen i en Jetty med profilen embedded, så att
+ * databasen är H2 med en genererad tävling (se embedded.properties). Körs med
+ * t.ex.
+ *
+ * mvn -Ploadtest test -Dloadtest.args="stations=30 viewers=100 seconds=300"
+ *
+ * Inställningar som namn=värde:
+ * url          en körande gokopen, t.ex. http://server:8080/gokopen
+ * port         porten för den inbyggda Jetty (8080)
+ * stations     antal kontroller K (30); kontroll i loggar in som kontroll&lt;i&gt;
+ * viewers      antal åskådare V (20)
+ * seconds      hur länge testet pågår (300)
+ * think        medeltid i ms mellan en kontrolls anrop (5000)
+ * poll         medeltid i ms mellan en åskådares anrop (10000)
+ * viewer       inloggning för åskådarna, lösenordet lika (megaadmin)
+ */
+public class LoadSimulator {
+
+    private final String baseUrl;
+    private final int stations;
+    private final int viewers;
+    private final long durationMillis;
+    private final long thinkMillis;
+    private final long pollMillis;
+    private final String viewer;
+
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final AtomicInteger finishedStations = new AtomicInteger();
+    private long deadline;
+
+    LoadSimulator(String baseUrl, Map<String, String> options) {
+        this.baseUrl = baseUrl;
+        this.stations = intOption(options, "stations", 30);
+        this.viewers = intOption(options, "viewers", 20);
+        this.durationMillis = TimeUnit.SECONDS.toMillis(intOption(options, "seconds", 300));
+        this.thinkMillis = intOption(options, "think", 5000);
+        this.pollMillis = intOption(options, "poll", 10000);
+        this.viewer = options.containsKey("viewer") ? options.get("viewer") : "megaadmin";
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Inställningar skrivs namn=värde: " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+
+        EmbeddedServer server = null;
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            if (System.getProperty("spring.profiles.active") == null) {
+                System.setProperty("spring.profiles.active", "embedded");
+            }
+            int port = intOption(options, "port", 8080);
+            server = new EmbeddedServer(port);
+            server.start();
+            baseUrl = "http://localhost:" + port + EmbeddedServer.CONTEXT_PATH;
+        }
+        try {
+            new LoadSimulator(baseUrl, options).run();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    void run() throws Exception {
+        // Id:n för kontrollerna och klasserna läses som en webbläsare skulle
+        // göra, utan att räknas in i resultatet
+        WebSession setup = new WebSession(baseUrl, new RequestMetrics());
+        setup.login(viewer, viewer);
+        WebSession.Response scorePage = setup.get("GET /score", "/score");
+        List<String> stationIds = new ArrayList<String>();
+        for (int i = 1; i <= stations; i++) {
+            String stationId = scorePage.optionValue("station", "Kontroll " + i);
+            if (stationId == null) {
+                throw new IllegalStateException("Kontroll " + i + " finns inte på " + baseUrl);
+            }
+            stationIds.add(stationId);
+        }
+        List<String> trackIds = setup.get("GET /reports/bytrack", "/reports/bytrack").links("/reports/bytrack/");
+        if (trackIds.isEmpty()) {
+            throw new IllegalStateException("Det finns inga klasser på " + baseUrl);
+        }
+
+        System.out.println("Startar " + stations + " kontroller och " + viewers + " åskådare mot " + baseUrl + " i "
+                + TimeUnit.MILLISECONDS.toSeconds(durationMillis) + " s");
+        long start = System.currentTimeMillis();
+        deadline = start + durationMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(stations + viewers);
+        List<Future<?>> clients = new ArrayList<Future<?>>();
+        for (int i = 1; i <= stations; i++) {
+            clients.add(executor.submit(stationClient(i, stationIds.get(i - 1))));
+        }
+        for (int i = 0; i < viewers; i++) {
+            clients.add(executor.submit(viewerClient(trackIds, i)));
+        }
+        int crashed = 0;
+        for (Future<?> client : clients) {
+            try {
+                client.get();
+            } catch (Exception e) {
+                crashed++;
+                System.out.println("Klienten avbröts: " + e.getCause());
+            }
+        }
+        executor.shutdown();
+        report(System.currentTimeMillis() - start, crashed);
+    }
+
+    /**
+     * Kontroll nummer station rapporterar patruller tills tiden är ute eller
+     * alla patruller har poäng på kontrollen.
+     */
+    private Runnable stationClient(final int station, final String stationId) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(station);
+                try {
+                    // Kontrollerna kommer inte igång på exakt samma gång
+                    pause(random, thinkMillis);
+                    WebSession session = new WebSession(baseUrl, metrics);
+                    String username = CompetitionGenerator.stationUser(station);
+                    session.login(username, username);
+                    while (System.currentTimeMillis() < deadline) {
+                        try {
+                            WebSession.Response page = session.post("POST /score/selectstation", "/score/selectstation",
+                                    "station", stationId);
+                            List<String> patrols = page.options("patrol");
+                            if (patrols.isEmpty()) {
+                                finishedStations.incrementAndGet();
+                                return;
+                            }
+                            pause(random, thinkMillis);
+                            if (System.currentTimeMillis() >= deadline) {
+                                return;
+                            }
+                            session.post("POST /score/savescore", "/score/savescore", "scoreId", "", "station.stationId",
+                                    stationId, "patrol", pick(random, patrols), "scorePoint",
+                                    pick(random, page.options("scorePoint")), "stylePoint", pick(random, page.options("stylePoint")));
+                        } catch (IOException e) {
+                            // Redan räknat som fel, kontrollen försöker igen
+                        }
+                        pause(random, thinkMillis);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Kontroll " + station + ": " + e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private Runnable viewerClient(final List<String> trackIds, final int number) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(-1 - number);
+                try {
+                    pause(random, pollMillis);
+                    WebSession session = new WebSession(baseUrl, metrics);
+                    session.login(viewer, viewer);
+                    while (System.currentTimeMillis() < deadline) {
+                        try {
+                            session.get("GET /reports/bytrack/{id}", "/reports/bytrack/" + pick(random, trackIds));
+                        } catch (IOException e) {
+                            // Redan räknat som fel
+                        }
+                        pause(random, pollMillis);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Åskådare " + number + ": " + e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private void report(long elapsedMillis, int crashed) {
+        double seconds = elapsedMillis / 1000.0;
+        System.out.println();
+        System.out.println(String.format("%-34s %8s %8s %9s %9s %9s %7s", "Sida", "Anrop", "Anrop/s", "Median ms", "99 % ms",
+                "Max ms", "Fel %"));
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getHandlers().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            System.out.println(String.format("%-34s %8d %8.1f %9d %9d %9.1f %7.2f", entry.getKey(), count, count / seconds,
+                    histogram.getP50Millis(), histogram.getP99Millis(), histogram.getMaxMillis(),
+                    count == 0 ? 0.0 : 100.0 * histogram.getErrors() / count));
+        }
+        System.out.println();
+        System.out.println(String.format("%.0f s, %d av %d kontroller rapporterade alla patruller, %d klienter avbröts", seconds,
+                finishedStations.get(), stations, crashed));
+        System.out.println("Serverns egna mätningar finns på " + baseUrl + "/admin/metrics");
+    }
+
+    /**
+     * Väntar mellan halva och en och en halv medeltid, så att klienterna inte
+     * går i takt.
+     */
+    private static void pause(Random random, long meanMillis) throws InterruptedException {
+        if (meanMillis > 0) {
+            Thread.sleep(meanMillis / 2 + (long) (random.nextDouble() * meanMillis));
+        }
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,203 @@
+package se.gokopen.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import se.gokopen.service.RequestMetrics;
+
+/**
+ * En inloggad användare mot en körande gokopen, som en webbläsare utan
+ * JavaScript: en sessionskaka, formulär som postas och omdirigeringar som
+ * inte följs. Varje anrop mäts i metrics under namnet på sidan, och ett svar
+ * med felstatus, en omdirigering till inloggningen eller en felruta
+ * (errorblock) räknas som fel.
+ */
+class WebSession {
+
+    private static final Pattern SESSION_COOKIE = Pattern.compile("JSESSIONID=([^;]+)");
+
+    private final String baseUrl;
+    private final RequestMetrics metrics;
+    private String sessionId;
+
+    WebSession(String baseUrl, RequestMetrics metrics) {
+        this.baseUrl = baseUrl;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Loggar in med Spring Securitys formulär.
+     *
+     * @throws IOException om inloggningen misslyckas
+     */
+    void login(String username, String password) throws IOException {
+        Response response = post("POST /j_spring_security_check", "/j_spring_security_check", "j_username", username,
+                "j_password", password);
+        if (response.status != HttpURLConnection.HTTP_MOVED_TEMP || response.location == null
+                || response.location.contains("loginfailed")) {
+            throw new IOException("Kunde inte logga in som " + username + " (status " + response.status + ")");
+        }
+    }
+
+    Response get(String name, String path) throws IOException {
+        return request(name, path, null);
+    }
+
+    /**
+     * Postar ett formulär, fälten som namn och värde efter varandra.
+     */
+    Response post(String name, String path, String... fields) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < fields.length; i += 2) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(fields[i], "UTF-8")).append('=').append(URLEncoder.encode(fields[i + 1], "UTF-8"));
+        }
+        return request(name, path, form.toString());
+    }
+
+    private Response request(String name, String path, String form) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(60000);
+            if (sessionId != null) {
+                connection.setRequestProperty("Cookie", "JSESSIONID=" + sessionId);
+            }
+            if (form != null) {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(form.getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            }
+            Response response = new Response(connection.getResponseCode(), connection.getHeaderField("Location"),
+                    read(connection));
+            rememberSession(connection);
+            failed = response.failed();
+            return response;
+        } finally {
+            metrics.record(name, System.nanoTime() - start, failed);
+        }
+    }
+
+    private void rememberSession(HttpURLConnection connection) {
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (!"Set-Cookie".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String cookie : header.getValue()) {
+                Matcher matcher = SESSION_COOKIE.matcher(cookie);
+                if (matcher.find()) {
+                    sessionId = matcher.group(1);
+                }
+            }
+        }
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in == null) {
+            return "";
+        }
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    static class Response {
+        final int status;
+        final String location;
+        final String body;
+
+        Response(int status, String location, String body) {
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+
+        boolean failed() {
+            if (status >= 400) {
+                return true;
+            }
+            if (location != null && location.contains("/login")) {
+                return true;
+            }
+            return body.contains("class=\"errorblock\"");
+        }
+
+        /**
+         * Värdena i en select, utom "-- Välj --" med värdet -1.
+         */
+        List<String> options(String selectId) {
+            List<String> values = new ArrayList<String>();
+            int start = body.indexOf("id=\"" + selectId + "\"");
+            if (start < 0) {
+                return values;
+            }
+            int end = body.indexOf("</select>", start);
+            Matcher option = Pattern.compile("<option[^>]*value=\"([^\"]*)\"").matcher(body.substring(start, end));
+            while (option.find()) {
+                if (!"-1".equals(option.group(1))) {
+                    values.add(option.group(1));
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Det som följer på prefix i sidans länkar, t.ex. klassernas id i
+         * /reports/bytrack/{id}.
+         */
+        List<String> links(String prefix) {
+            List<String> values = new ArrayList<String>();
+            Matcher link = Pattern.compile("href=\"[^\"]*" + Pattern.quote(prefix) + "([^\"/]+)\"").matcher(body);
+            while (link.find()) {
+                if (!values.contains(link.group(1))) {
+                    values.add(link.group(1));
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Värdet på den option i selectId som har texten label.
+         */
+        String optionValue(String selectId, String label) {
+            int start = body.indexOf("id=\"" + selectId + "\"");
+            if (start < 0) {
+                return null;
+            }
+            int end = body.indexOf("</select>", start);
+            Matcher option = Pattern.compile("<option[^>]*value=\"([^\"]*)\"[^>]*>" + Pattern.quote(label) + "</option>")
+                    .matcher(body.substring(start, end));
+            return option.find() ? option.group(1) : null;
+        }
+    }
+}
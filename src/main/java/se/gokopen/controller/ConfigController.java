@@ -13,6 +13,7 @@ import org.springframework.web.servlet.ModelAndView;
 
 import se.gokopen.model.Config;
 import se.gokopen.service.ConfigService;
+import se.gokopen.service.Ranking;
 
 @RequestMapping("/admin/config")
 @Controller
@@ -24,16 +25,30 @@ public class ConfigController {
     @RequestMapping(method=RequestMethod.GET)
     public ModelAndView showConfig(){
         Config config = configService.getCurrentConfig();
-        ModelMap map = new ModelMap();
-        map.put("config", config);
-        return new ModelAndView("config",map);
+        return showConfig(config, null);
     }
     
     @RequestMapping(method=RequestMethod.POST)
-    public String save(Config config,BindingResult errors, HttpServletRequest request, HttpServletResponse response){
+    public ModelAndView save(Config config,BindingResult errors, HttpServletRequest request, HttpServletResponse response){
+        try {
+            Ranking.parse(config.getRankingOrder());
+        } catch (IllegalArgumentException e) {
+            return showConfig(config, "Sorteringsordningen går inte att använda. " + e.getMessage());
+        }
         configService.saveConfig(config);
         
-        return "startadmin";
+        return new ModelAndView("startadmin");
+    }
+
+    private ModelAndView showConfig(Config config, String errorMsg){
+        ModelMap map = new ModelMap();
+        map.put("config", config);
+        map.put("criteria", Ranking.Criterion.values());
+        map.put("defaultRankingOrder", Ranking.DEFAULT_ORDER);
+        if (errorMsg != null) {
+            map.put("errormsg", errorMsg);
+        }
+        return new ModelAndView("config",map);
     }
 
 }
@@ -0,0 +1,80 @@
+package se.gokopen.controller;
+
+import java.io.Serializable;
+import java.util.Set;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import se.gokopen.model.Station;
+import se.gokopen.service.StationUserIndex;
+
+/**
+ * Den inloggade användarens rättigheter att ge och ändra poäng, beräknade
+ * första gången de behövs och sparade i sessionen tills kontrollernas
+ * användare ändras. Se SecurityChecker.
+ */
+public final class EditPermissions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String username;
+    private final boolean admin;
+    private final boolean startFinishAdmin;
+    private final Set<Integer> stationIds;
+    private final long indexVersion;
+
+    private EditPermissions(String username, boolean admin, boolean startFinishAdmin, Set<Integer> stationIds,
+            long indexVersion) {
+        this.username = username;
+        this.admin = admin;
+        this.startFinishAdmin = startFinishAdmin;
+        this.stationIds = stationIds;
+        this.indexVersion = indexVersion;
+    }
+
+    static EditPermissions create(Authentication authentication, StationUserIndex index) {
+        boolean admin = false;
+        boolean startFinishAdmin = false;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority.getAuthority().equalsIgnoreCase("ROLE_ADMIN")) {
+                admin = true;
+            } else if (authority.getAuthority().equalsIgnoreCase("ROLE_STARTFINISH")) {
+                startFinishAdmin = true;
+            }
+        }
+        return new EditPermissions(authentication.getName(), admin, startFinishAdmin, index.getStationIds(authentication.getName()),
+                index.getVersion());
+    }
+
+    /**
+     * Om rättigheterna beräknades för användaren från det aktuella indexet,
+     * dvs. ingen kontroll har ändrats sedan dess.
+     */
+    boolean isCurrent(Authentication authentication, StationUserIndex index) {
+        return indexVersion == index.getVersion() && username.equals(authentication.getName());
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public boolean isStartFinishAdmin() {
+        return startFinishAdmin;
+    }
+
+    public Set<Integer> getStationIds() {
+        return stationIds;
+    }
+
+    public boolean isEditAllowedOnStation(Station station) {
+        if (admin || startFinishAdmin) {
+            return true;
+        }
+        return station != null && station.getStationId() != null && stationIds.contains(station.getStationId());
+    }
+}
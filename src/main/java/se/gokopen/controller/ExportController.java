@@ -0,0 +1,198 @@
+package se.gokopen.controller;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import se.gokopen.dao.RowHandler;
+import se.gokopen.model.Standing;
+import se.gokopen.model.Track;
+import se.gokopen.service.ScoreService;
+import se.gokopen.service.StandingsService;
+import se.gokopen.service.TrackService;
+
+/**
+ * Export av poäng och resultatlistor som CSV eller JSON. Poängen skrivs till
+ * svaret medan de läses från databasen, så minnesåtgången beror inte på hur
+ * stor tävlingen är och rubrikraden skickas innan frågan körs. Resultatlistorna
+ * tas från StandingsService, så placeringarna blir desamma som på
+ * resultatsidorna med tävlingens rangordning.
+ */
+@RequestMapping("/admin/export")
+@Controller
+public class ExportController {
+
+    // Semikolon och BOM så att Excel med svenska inställningar läser filen rätt
+    private static final char CSV_SEPARATOR = ';';
+    private static final char BOM = '\ufeff';
+
+    private static final String[] SCORE_COLUMNS = { "Klass", "Patrullid", "Patrull", "Kår", "Kontrollnummer", "Kontroll", "Poäng", "Stilpoäng" };
+    private static final String[] SCORE_FIELDS = { "trackName", "patrolId", "patrolName", "troop", "stationNumber", "stationName", "scorePoint", "stylePoint" };
+    private static final String[] STANDING_COLUMNS = { "Klassid", "Klass", "Placering", "Patrullid", "Patrull", "Kår", "Totalt", "Poäng", "Stilpoäng", "Antal kontroller" };
+    private static final String[] STANDING_FIELDS = { "trackId", "trackName", "position", "patrolId", "patrolName", "troop", "totalScore", "totalScorePoint", "totalStylePoint", "totalReportedStations" };
+
+    private static final Comparator<Track> TRACK_ORDER = new Comparator<Track>() {
+        @Override
+        public int compare(Track t1, Track t2) {
+            String n1 = t1.getTrackName() != null ? t1.getTrackName() : "";
+            String n2 = t2.getTrackName() != null ? t2.getTrackName() : "";
+            int comp = n1.compareTo(n2);
+            return comp != 0 ? comp : t1.getTrackId().compareTo(t2.getTrackId());
+        }
+    };
+
+    @Autowired
+    private ScoreService scoreService;
+    @Autowired
+    private TrackService trackService;
+    @Autowired
+    private StandingsService standingsService;
+
+    @RequestMapping(value = "/scores.csv", method = RequestMethod.GET)
+    public void exportScoresCsv(HttpServletResponse response) throws IOException {
+        final Writer out = start(response, "text/csv", "poang.csv");
+        out.write(BOM);
+        writeCsvRow(out, (Object[]) SCORE_COLUMNS);
+        response.flushBuffer();
+        scoreService.scrollAllScores(new RowHandler() {
+            @Override
+            public void handleRow(Object[] row) throws IOException {
+                writeCsvRow(out, row);
+            }
+        });
+        out.flush();
+    }
+
+    @RequestMapping(value = "/scores.json", method = RequestMethod.GET)
+    public void exportScoresJson(HttpServletResponse response) throws IOException {
+        final JsonArray array = new JsonArray(start(response, "application/json", "poang.json"));
+        response.flushBuffer();
+        scoreService.scrollAllScores(new RowHandler() {
+            @Override
+            public void handleRow(Object[] row) throws IOException {
+                array.writeObject(SCORE_FIELDS, row);
+            }
+        });
+        array.close();
+    }
+
+    @RequestMapping(value = "/standings.csv", method = RequestMethod.GET)
+    public void exportStandingsCsv(HttpServletResponse response) throws IOException {
+        final Writer out = start(response, "text/csv", "resultat.csv");
+        out.write(BOM);
+        writeCsvRow(out, (Object[]) STANDING_COLUMNS);
+        response.flushBuffer();
+        forEachStanding(new RowHandler() {
+            @Override
+            public void handleRow(Object[] standing) throws IOException {
+                writeCsvRow(out, standing);
+            }
+        });
+        out.flush();
+    }
+
+    @RequestMapping(value = "/standings.json", method = RequestMethod.GET)
+    public void exportStandingsJson(HttpServletResponse response) throws IOException {
+        final JsonArray array = new JsonArray(start(response, "application/json", "resultat.json"));
+        response.flushBuffer();
+        forEachStanding(new RowHandler() {
+            @Override
+            public void handleRow(Object[] standing) throws IOException {
+                array.writeObject(STANDING_FIELDS, standing);
+            }
+        });
+        array.close();
+    }
+
+    private static Writer start(HttpServletResponse response, String contentType, String fileName) throws IOException {
+        response.setContentType(contentType + ";charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        response.setHeader("Cache-Control", "no-cache");
+        return response.getWriter();
+    }
+
+    static void writeCsvRow(Writer out, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(CSV_SEPARATOR);
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = String.valueOf(values[i]);
+            if (value.indexOf(CSV_SEPARATOR) >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Resultatlistorna klass för klass, som {klassid, klass, placering,
+     * patrullid, patrull, kår, totalt, poäng, stilpoäng, antal kontroller}.
+     * Placeringen räknas från 1 för varje ny klass.
+     */
+    void forEachStanding(RowHandler handler) throws IOException {
+        List<Track> tracks = trackService.getAllTracks();
+        Collections.sort(tracks, TRACK_ORDER);
+        for (Track track : tracks) {
+            int position = 0;
+            for (Standing standing : standingsService.getStandingsByTrack(track)) {
+                position++;
+                handler.handleRow(new Object[] { track.getTrackId(), track.getTrackName(), position, standing.getPatrolId(),
+                        standing.getPatrolName(), standing.getTroop(), standing.getTotalScore(), standing.getTotalScorePoint(),
+                        standing.getTotalStylePoint(), standing.getTotalReportedStations() });
+            }
+        }
+    }
+
+    /**
+     * JSON-array som skrivs ett objekt i taget.
+     */
+    static class JsonArray {
+        private final Writer out;
+        private boolean first = true;
+
+        JsonArray(Writer out) throws IOException {
+            this.out = out;
+            out.write('[');
+        }
+
+        void writeObject(String[] fields, Object[] values) throws IOException {
+            out.write(first ? "\n{" : ",\n{");
+            first = false;
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(StandingsJson.quote(fields[i]));
+                out.write(':');
+                Object value = values[i];
+                if (value == null || value instanceof Number) {
+                    out.write(String.valueOf(value));
+                } else {
+                    out.write(StandingsJson.quote(String.valueOf(value)));
+                }
+            }
+            out.write('}');
+        }
+
+        void close() throws IOException {
+            out.write("\n]");
+            out.flush();
+        }
+    }
+}
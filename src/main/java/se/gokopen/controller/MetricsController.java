@@ -0,0 +1,253 @@
+package se.gokopen.controller;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import se.gokopen.dao.MeteredDataSource;
+import se.gokopen.dao.SchemaMigrator;
+import se.gokopen.service.CachedUserDetailsService;
+import se.gokopen.service.LatencyHistogram;
+import se.gokopen.service.RequestMetrics;
+import se.gokopen.service.ScoreJournal;
+import se.gokopen.service.ScoreJournalWriter;
+
+/**
+ * Mätvärden för att se vad som är långsamt under en tävling: svarstider per
+ * sida, Hibernates statistik, databasens version, anslutningspoolen, JVM:en,
+ * cacherna och poängjournalen. Samma siffror finns som JSON på
+ * /admin/metrics/json.
+ */
+@Controller
+public class MetricsController {
+
+    private static final int SLOWEST_QUERIES = 10;
+    private static final long MB = 1024 * 1024;
+
+    // RequestMetrics och journalen finns bara i mvc-dispatcher
+    @Autowired(required = false)
+    private RequestMetrics requestMetrics;
+    @Autowired(required = false)
+    private ScoreJournal scoreJournal;
+    @Autowired(required = false)
+    private ScoreJournalWriter scoreJournalWriter;
+    @Autowired
+    private SessionFactory sessionFactory;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
+    @Autowired(required = false)
+    private SchemaMigrator schemaMigrator;
+
+    @RequestMapping(value = "/admin/metrics", method = RequestMethod.GET)
+    public ModelAndView showMetrics() {
+        ModelMap map = new ModelMap();
+        map.put("since", new Date(requestMetrics.getSince()));
+        map.put("handlers", requestMetrics.getHandlers());
+        map.put("sections", sections());
+        map.put("slowQueries", slowestQueries());
+        return new ModelAndView("metrics", map);
+    }
+
+    @RequestMapping(value = "/admin/metrics/json", method = RequestMethod.GET, produces = "application/json;charset=UTF-8")
+    @ResponseBody
+    public String metricsJson() {
+        Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+        metrics.put("since", requestMetrics.getSince());
+        List<Map<String, Object>> handlers = new ArrayList<Map<String, Object>>();
+        for (Map.Entry<String, LatencyHistogram> entry : requestMetrics.getHandlers().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Map<String, Object> handler = new LinkedHashMap<String, Object>();
+            handler.put("handler", entry.getKey());
+            handler.put("count", histogram.getCount());
+            handler.put("errors", histogram.getErrors());
+            handler.put("meanMillis", round(histogram.getMeanMillis()));
+            handler.put("p50Millis", histogram.getP50Millis());
+            handler.put("p95Millis", histogram.getP95Millis());
+            handler.put("p99Millis", histogram.getP99Millis());
+            handler.put("maxMillis", round(histogram.getMaxMillis()));
+            handlers.add(handler);
+        }
+        metrics.put("handlers", handlers);
+        metrics.putAll(sections());
+        metrics.put("slowQueries", slowestQueries());
+        return MetricsJson.toJson(metrics);
+    }
+
+    /**
+     * Nollställer svarstiderna, poolens väntetider och Hibernates statistik,
+     * t.ex. inför en ny tävlingsdag.
+     */
+    @RequestMapping(value = "/admin/metrics/reset", method = RequestMethod.POST)
+    public String reset() {
+        requestMetrics.reset();
+        sessionFactory.getStatistics().clear();
+        if (dataSource instanceof MeteredDataSource) {
+            ((MeteredDataSource) dataSource).reset();
+        }
+        return "redirect:/admin/metrics";
+    }
+
+    private Map<String, Map<String, Object>> sections() {
+        Map<String, Map<String, Object>> sections = new LinkedHashMap<String, Map<String, Object>>();
+        sections.put("Databas", database());
+        sections.put("Anslutningar", pool());
+        sections.put("JVM", jvm());
+        sections.put("Cacher", caches());
+        if (scoreJournal != null && scoreJournal.isEnabled()) {
+            sections.put("Poängjournal", journal());
+        }
+        return sections;
+    }
+
+    private Map<String, Object> database() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> database = new LinkedHashMap<String, Object>();
+        database.put("Statistik påslagen", statistics.isStatisticsEnabled());
+        database.put("Transaktioner", statistics.getTransactionCount());
+        database.put("Sessioner", statistics.getSessionOpenCount());
+        database.put("Anslutningar hämtade", statistics.getConnectCount());
+        database.put("Förberedda satser", statistics.getPrepareStatementCount());
+        database.put("Frågor", statistics.getQueryExecutionCount());
+        database.put("Längsta fråga (ms)", statistics.getQueryExecutionMaxTime());
+        database.put("Entiteter laddade", statistics.getEntityLoadCount());
+        database.put("Entiteter hämtade var för sig", statistics.getEntityFetchCount());
+        database.put("Samlingar laddade", statistics.getCollectionLoadCount());
+        database.put("Samlingar hämtade var för sig", statistics.getCollectionFetchCount());
+        database.put("Flushar", statistics.getFlushCount());
+        if (schemaMigrator != null) {
+            try {
+                SchemaMigrator.Status status = schemaMigrator.status();
+                database.put("Schemaversion", status.getVersion() + " (" + status.getDescription() + ")");
+                database.put("Schemat uppdaterat", status.getInstalledOn() != null ? timestamp().format(status.getInstalledOn()) : null);
+                database.put("Skript som inte körts", status.getPending());
+            } catch (Exception e) {
+                database.put("Schemaversion", "Kunde inte läsas: " + e.getMessage());
+            }
+        }
+        return database;
+    }
+
+    private List<Map<String, Object>> slowestQueries() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>();
+        for (String query : statistics.getQueries()) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+            Map<String, Object> row = new LinkedHashMap<String, Object>();
+            row.put("query", query);
+            row.put("count", queryStatistics.getExecutionCount());
+            row.put("meanMillis", queryStatistics.getExecutionAvgTime());
+            row.put("maxMillis", queryStatistics.getExecutionMaxTime());
+            row.put("rows", queryStatistics.getExecutionRowCount());
+            queries.add(row);
+        }
+        Collections.sort(queries, new Comparator<Map<String, Object>>() {
+            @Override
+            public int compare(Map<String, Object> q1, Map<String, Object> q2) {
+                return ((Long) q2.get("maxMillis")).compareTo((Long) q1.get("maxMillis"));
+            }
+        });
+        return queries.size() > SLOWEST_QUERIES ? queries.subList(0, SLOWEST_QUERIES) : queries;
+    }
+
+    private Map<String, Object> pool() {
+        Map<String, Object> pool = new LinkedHashMap<String, Object>();
+        if (dataSource instanceof BasicDataSource) {
+            BasicDataSource basic = (BasicDataSource) dataSource;
+            pool.put("Aktiva", basic.getNumActive());
+            pool.put("Lediga", basic.getNumIdle());
+            pool.put("Max aktiva", basic.getMaxActive());
+            pool.put("Max lediga", basic.getMaxIdle());
+            pool.put("Min lediga", basic.getMinIdle());
+            pool.put("Max väntetid (ms)", basic.getMaxWait());
+            pool.put("Återanvänder förberedda satser", basic.isPoolPreparedStatements());
+            pool.put("Max förberedda satser per anslutning", basic.getMaxOpenPreparedStatements());
+        }
+        if (dataSource instanceof MeteredDataSource) {
+            MeteredDataSource metered = (MeteredDataSource) dataSource;
+            LatencyHistogram waits = metered.getWaits();
+            pool.put("Flest aktiva samtidigt", metered.getPeakActive());
+            pool.put("Lån", waits.getCount());
+            pool.put("Lån som gav upp", waits.getErrors());
+            pool.put("Väntan medel (ms)", round(waits.getMeanMillis()));
+            pool.put("Väntan 95% (ms)", waits.getP95Millis());
+            pool.put("Väntan 99% (ms)", waits.getP99Millis());
+            pool.put("Väntan max (ms)", round(waits.getMaxMillis()));
+        }
+        return pool;
+    }
+
+    private Map<String, Object> jvm() {
+        Map<String, Object> jvm = new LinkedHashMap<String, Object>();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        jvm.put("Heap använt (MB)", heap.getUsed() / MB);
+        jvm.put("Heap reserverat (MB)", heap.getCommitted() / MB);
+        jvm.put("Heap max (MB)", heap.getMax() / MB);
+        jvm.put("Övrigt minne använt (MB)", ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed() / MB);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            jvm.put("GC " + gc.getName() + " antal", gc.getCollectionCount());
+            jvm.put("GC " + gc.getName() + " tid (ms)", gc.getCollectionTime());
+        }
+        jvm.put("Trådar", ManagementFactory.getThreadMXBean().getThreadCount());
+        jvm.put("Trådar som mest", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        jvm.put("Processorer", Runtime.getRuntime().availableProcessors());
+        jvm.put("Igång (min)", ManagementFactory.getRuntimeMXBean().getUptime() / 60000);
+        return jvm;
+    }
+
+    private Map<String, Object> caches() {
+        Map<String, Object> caches = new LinkedHashMap<String, Object>();
+        caches.put("Inloggningscache träffar", userDetailsService.getHitCount());
+        caches.put("Inloggningscache missar", userDetailsService.getMissCount());
+        caches.put("Inloggningscache användare", userDetailsService.getCachedUserCount());
+        return caches;
+    }
+
+    /**
+     * Poäng som väntar på att sparas och de senaste som databasen inte tog
+     * emot.
+     */
+    private Map<String, Object> journal() {
+        Map<String, Object> journal = new LinkedHashMap<String, Object>();
+        journal.put("Ej sparade", scoreJournal.getPendingCount());
+        journal.put("Avvisade", scoreJournalWriter.getRejectedCount());
+        DateFormat format = timestamp();
+        for (ScoreJournalWriter.Rejection rejection : scoreJournalWriter.getRecentRejections()) {
+            journal.put("Avvisad " + format.format(rejection.getTime()) + ", patrull " + rejection.getPatrolId() + " på kontroll "
+                    + rejection.getStationId(), rejection.getErrorMsg());
+        }
+        return journal;
+    }
+
+    private static DateFormat timestamp() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 10) / 10.0;
+    }
+}
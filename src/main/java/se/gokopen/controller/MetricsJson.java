@@ -0,0 +1,52 @@
+package se.gokopen.controller;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Skriver mätvärdena från MetricsController som JSON. Värdena är kartor,
+ * listor, tal, text och sanningsvärden i godtyckligt djup.
+ */
+class MetricsJson {
+
+    private MetricsJson() {
+
+    }
+
+    static String toJson(Object value) {
+        StringBuilder json = new StringBuilder();
+        append(json, value);
+        return json.toString();
+    }
+
+    private static void append(StringBuilder json, Object value) {
+        if (value instanceof Map) {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append(StandingsJson.quote(String.valueOf(entry.getKey()))).append(':');
+                append(json, entry.getValue());
+            }
+            json.append('}');
+        } else if (value instanceof Collection) {
+            json.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                append(json, item);
+            }
+            json.append(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else {
+            json.append(StandingsJson.quote(value == null ? null : value.toString()));
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 import se.gokopen.dao.PatrolNotFoundException;
 import se.gokopen.dao.PatrolNotSavedException;
@@ -34,8 +35,9 @@ public class PatrolController {
 	private TrackService trackService;
 	
 	@InitBinder
-    protected void initBinder(WebDataBinder binder) {
-		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService));
+    protected void initBinder(WebDataBinder binder, HttpServletRequest request) {
+		RequestIdentityMap identityMap = RequestIdentityMap.forRequest(request);
+		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService, identityMap));
     }
 	
 	@ModelAttribute("tracks")
@@ -47,21 +49,11 @@ public class PatrolController {
 	public ModelAndView save(PatrolImpl patrol, BindingResult errors, HttpServletRequest request, HttpServletResponse response) throws PatrolNotSavedException{
 		System.out.println("Saving a patrol");
 		
-		//Check to see if there is a saved patrol already since we otherwise empty the scores
-		try {
-			PatrolImpl patrolOnDisc = patrolService.getPatrolById(patrol.getPatrolId());
-			patrol.setScores(patrolOnDisc.getScores());
-			
-		} catch (PatrolNotFoundException e) {
-			//not really a problem, just saving the new patrol
-		}
-		
 		patrolService.savePatrol(patrol);	
 		
 		
 		//Return to list of existing patrols
-		List<PatrolImpl> patrols = patrolService.getAllPatrols();
-		return new ModelAndView("patrollist","patrols",patrols);
+		return listAllPatrols(null, null, null, null);
 	}
 	
 	@RequestMapping(value="/admin/newpatrol",method=RequestMethod.GET)
@@ -77,7 +69,7 @@ public class PatrolController {
 	public ModelAndView viewPatrol(@PathVariable String id, HttpServletRequest request){
 		PatrolImpl patrol = null;
 		try {
-			patrol = patrolService.getPatrolById(Integer.parseInt(id));
+			patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(id));
 		} catch (NumberFormatException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -94,7 +86,7 @@ public class PatrolController {
 	public ModelAndView viewPatrolFromTrackList(@PathVariable String id,@PathVariable String trackid, HttpServletRequest request){
 		PatrolImpl patrol = null;
 		try {
-			patrol = patrolService.getPatrolById(Integer.parseInt(id));
+			patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(id));
 		} catch (NumberFormatException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -111,7 +103,7 @@ public class PatrolController {
 	public ModelAndView viewPatrolFromPatrolList(@PathVariable String id, HttpServletRequest request){
 		PatrolImpl patrol = null;
 		try {
-			patrol = patrolService.getPatrolById(Integer.parseInt(id));
+			patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(id));
 		} catch (NumberFormatException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -125,10 +117,12 @@ public class PatrolController {
 	}
 	
 	@RequestMapping(method=RequestMethod.GET)
-	public ModelAndView listAllPatrols(){
+	public ModelAndView listAllPatrols(@RequestParam(value="track", required=false) Integer trackId,
+			@RequestParam(value="troop", required=false) String troop,
+			@RequestParam(value="afterName", required=false) String afterName,
+			@RequestParam(value="afterId", required=false) Integer afterId){
 		//Return to list of existing patrols
-		List<PatrolImpl> patrols = patrolService.getAllPatrols();
-		return new ModelAndView("patrollist","patrols",patrols);
+		return new ModelAndView("patrollist", PatrolListModel.create(patrolService, "/patrol", trackId, troop, afterName, afterId));
 	}
 	
 	//Edit patrol
@@ -136,7 +130,7 @@ public class PatrolController {
 	public ModelAndView editPatrol(@PathVariable String id, HttpServletRequest request){
 		PatrolImpl patrol = null;
 		try {
-			patrol = patrolService.getPatrolById(Integer.parseInt(id));
+			patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(id));
 		} catch (NumberFormatException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -162,7 +156,6 @@ public class PatrolController {
 		}
 		
 		//Return to list of existing patrols
-		List<PatrolImpl> patrols = patrolService.getAllPatrols();
-		return new ModelAndView("patrollist","patrols",patrols);
+		return listAllPatrols(null, null, null, null);
 	}
 }
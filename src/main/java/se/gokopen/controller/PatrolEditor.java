@@ -10,22 +10,29 @@ public class PatrolEditor extends PropertyEditorSupport {
 
 
     private PatrolService patrolService;
+    private RequestIdentityMap identityMap;
 
-    public PatrolEditor(PatrolService patrolService) {
+    public PatrolEditor(PatrolService patrolService, RequestIdentityMap identityMap) {
         this.patrolService = patrolService;
+        this.identityMap = identityMap;
     }
 
     @Override
     public void setAsText(String text) throws IllegalArgumentException {
-        PatrolImpl patrol = null;
-        try {
-            patrol = patrolService.getPatrolById(Integer.parseInt(text));
-        } catch (PatrolNotFoundException e) {
-            e.printStackTrace();
+        Integer id = Integer.parseInt(text);
+        PatrolImpl patrol = identityMap.get(PatrolImpl.class, id);
+        // -1 används för "-- Välj --" i listorna
+        if (patrol == null && id > 0) {
+            try {
+                patrol = patrolService.getPatrolById(id);
+                identityMap.put(PatrolImpl.class, id, patrol);
+            } catch (PatrolNotFoundException e) {
+                e.printStackTrace();
+            }
         }
         setValue(patrol);
     }
-
+    
     @Override
     public String getAsText() {
         PatrolImpl patrol = (PatrolImpl) getValue();
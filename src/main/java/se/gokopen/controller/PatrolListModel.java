@@ -0,0 +1,37 @@
+package se.gokopen.controller;
+
+import org.springframework.ui.ModelMap;
+
+import se.gokopen.model.PatrolPage;
+import se.gokopen.service.PatrolService;
+
+/**
+ * Gemensam modell för de bläddringsbara patrullistorna, se
+ * include_patrolpaging.jsp. Tomma filter i formuläret betyder alla.
+ */
+final class PatrolListModel {
+
+    private PatrolListModel() {
+
+    }
+
+    static ModelMap create(PatrolService patrolService, String listUrl, Integer trackId, String troop, String afterName, Integer afterId) {
+        if (troop != null && troop.isEmpty()) {
+            troop = null;
+        }
+        // Länken till nästa sida skickar en tom sträng när sista patrullen saknar namn
+        if (afterName != null && afterName.isEmpty()) {
+            afterName = null;
+        }
+        PatrolPage page = patrolService.getPatrolSummaryPage(trackId, troop, afterName, afterId, PatrolPage.DEFAULT_SIZE);
+        ModelMap map = new ModelMap();
+        map.put("patrols", page.getPatrols());
+        map.put("page", page);
+        map.put("troops", patrolService.getAllTroops());
+        map.put("listurl", listUrl);
+        map.put("selectedTrackId", trackId);
+        map.put("selectedTroop", troop);
+        map.put("firstPage", afterId == null);
+        return map;
+    }
+}
@@ -1,8 +1,10 @@
 package se.gokopen.controller;
 
+import java.io.IOException;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -18,6 +20,7 @@ import se.gokopen.model.PatrolImpl;
 import se.gokopen.model.Station;
 import se.gokopen.model.Track;
 import se.gokopen.service.PatrolService;
+import se.gokopen.service.ScoreCardService;
 import se.gokopen.service.ScoreService;
 import se.gokopen.service.StationService;
 import se.gokopen.service.TrackService;
@@ -35,12 +38,15 @@ public class PrintController {
 	private StationService stationService;
 	@Autowired
 	private ScoreService scoreService;
+	@Autowired
+	private ScoreCardService scoreCardService;
 	
 	@InitBinder
-    protected void initBinder(WebDataBinder binder) {
-		binder.registerCustomEditor(Station.class, new StationEditor(this.stationService));
-		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(this.patrolService));
-		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService));
+    protected void initBinder(WebDataBinder binder, HttpServletRequest request) {
+		RequestIdentityMap identityMap = RequestIdentityMap.forRequest(request);
+		binder.registerCustomEditor(Station.class, new StationEditor(this.stationService, identityMap));
+		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(this.patrolService, identityMap));
+		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService, identityMap));
     }
 	
 	@ModelAttribute("tracks")
@@ -83,5 +89,28 @@ public class PrintController {
 		return new ModelAndView("printscorecardstations","patrols",patrols);
 	}
 	
+	//Samma poängkort som PDF, ritade på servern och sparade per klass
+	@RequestMapping(value="/pdf/{id}")
+	public void printScoreCardPdfForTrack(@PathVariable String id, HttpServletResponse response) throws IOException{
+		Track track = null;
+		try {
+			track = trackService.getTrackById(Integer.parseInt(id));
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (TrackNotFoundException e) {
+			e.printStackTrace();
+		}
+		if (track == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Hittar inte klassen");
+			return;
+		}
+		byte[] pdf = scoreCardService.getScoreCardPdf(track);
+		response.setContentType("application/pdf");
+		response.setHeader("Content-Disposition", "inline; filename=\"poangkort-" + track.getTrackId() + ".pdf\"");
+		response.setContentLength(pdf.length);
+		response.getOutputStream().write(pdf);
+		response.getOutputStream().flush();
+	}
+	
 	
 }
@@ -3,6 +3,7 @@ package se.gokopen.controller;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -11,14 +12,18 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 import se.gokopen.dao.TrackNotFoundException;
 import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.Standing;
 import se.gokopen.model.Station;
 import se.gokopen.model.Track;
 import se.gokopen.service.PatrolService;
 import se.gokopen.service.ScoreService;
+import se.gokopen.service.StandingsService;
 import se.gokopen.service.StationService;
 import se.gokopen.service.TrackService;
 
@@ -26,6 +31,9 @@ import se.gokopen.service.TrackService;
 @Controller
 public class ReportsController {
 	
+	// Lagom under de flesta proxyers tidsgräns för inaktiva anslutningar
+	private static final long FEED_WAIT_MILLIS = 25000;
+	
 	//Skjuter in PatrolService
 	@Autowired
 	private PatrolService patrolService;
@@ -35,12 +43,15 @@ public class ReportsController {
 	private StationService stationService;
 	@Autowired
 	private ScoreService scoreService;
+	@Autowired
+	private StandingsService standingsService;
 	
 	@InitBinder
-    protected void initBinder(WebDataBinder binder) {
-		binder.registerCustomEditor(Station.class, new StationEditor(this.stationService));
-		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(this.patrolService));
-		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService));
+    protected void initBinder(WebDataBinder binder, HttpServletRequest request) {
+		RequestIdentityMap identityMap = RequestIdentityMap.forRequest(request);
+		binder.registerCustomEditor(Station.class, new StationEditor(this.stationService, identityMap));
+		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(this.patrolService, identityMap));
+		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService, identityMap));
     }
 	
 	@ModelAttribute("tracks")
@@ -59,10 +70,11 @@ public class ReportsController {
 //	}
 	
 	@RequestMapping(value="/patrols")
-	public ModelAndView viewPatrols(HttpServletRequest request){
-		
-		List<PatrolImpl> patrols = patrolService.getAllPatrols();
-		return new ModelAndView("viewpatrollist","patrols",patrols);
+	public ModelAndView viewPatrols(@RequestParam(value="track", required=false) Integer trackId,
+			@RequestParam(value="troop", required=false) String troop,
+			@RequestParam(value="afterName", required=false) String afterName,
+			@RequestParam(value="afterId", required=false) Integer afterId){
+		return new ModelAndView("viewpatrollist", PatrolListModel.create(patrolService, "/reports/patrols", trackId, troop, afterName, afterId));
 	}
 	
 	@RequestMapping(value="/bytrack")
@@ -89,7 +101,50 @@ public class ReportsController {
 		request.setAttribute("trackid", track.getTrackId());
 		request.setAttribute("selectedTrack", track.getTrackName());
 		request.setAttribute("backurl", request.getContextPath() + "/reports/bytrack/" + track.getTrackId());
-		List<PatrolImpl> patrols = patrolService.getAllPatrolsByTrack(track);
+		//Numret läses före listan så att en ändring däremellan ger en extra uppdatering istället för en missad
+		request.setAttribute("version", standingsService.getVersion(track.getTrackId()));
+		List<Standing> patrols = standingsService.getStandingsByTrack(track);
 		return new ModelAndView("viewpatrolsbytrack","patrols",patrols);
 	}
+	
+	/**
+	 * Flöde för resultatskärmar. Utan since svaras direkt med listan. Med since
+	 * väntar anropet tills klassen har ändrats eller FEED_WAIT_MILLIS har gått,
+	 * och svarar då utan lista om inget har hänt. Går att prova med t.ex.
+	 * curl -b cookies.txt ".../reports/bytrack/1/feed?since=0"
+	 */
+	@RequestMapping(value="/bytrack/{id}/feed", produces="application/json;charset=UTF-8")
+	@ResponseBody
+	public String standingsFeed(@PathVariable String id, @RequestParam(value="since", required=false) Long since, HttpServletResponse response){
+		response.setHeader("Cache-Control", "no-cache");
+		Track track = null;
+		try {
+			track = trackService.getTrackById(Integer.parseInt(id));
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (TrackNotFoundException e) {
+			e.printStackTrace();
+		}
+		if (track == null) {
+			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+			return "{\"error\":\"Hittar inte klassen\"}";
+		}
+		
+		long version;
+		if (since == null) {
+			version = standingsService.getVersion(track.getTrackId());
+		} else {
+			try {
+				version = standingsService.awaitChange(track.getTrackId(), since, FEED_WAIT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				version = since;
+			}
+			if (version == since) {
+				return StandingsJson.toJson(track.getTrackId(), version, null);
+			}
+		}
+		List<Standing> patrols = standingsService.getStandingsByTrack(track);
+		return StandingsJson.toJson(track.getTrackId(), version, patrols);
+	}
 }
@@ -0,0 +1,45 @@
+package se.gokopen.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Entiteter som redan har slagits upp under anropet, per typ och id. Alla
+ * editorer som registreras för samma anrop delar på samma karta så att en
+ * patrull eller kontroll bara hämtas en gång även om den binds flera gånger.
+ */
+public class RequestIdentityMap {
+
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+
+    private final Map<Class<?>, Map<Integer, Object>> entities = new HashMap<Class<?>, Map<Integer, Object>>();
+
+    public RequestIdentityMap() {
+
+    }
+
+    public static RequestIdentityMap forRequest(HttpServletRequest request) {
+        RequestIdentityMap identityMap = (RequestIdentityMap) request.getAttribute(ATTRIBUTE);
+        if (identityMap == null) {
+            identityMap = new RequestIdentityMap();
+            request.setAttribute(ATTRIBUTE, identityMap);
+        }
+        return identityMap;
+    }
+
+    public <T> T get(Class<T> type, Integer id) {
+        Map<Integer, Object> byId = entities.get(type);
+        return byId != null ? type.cast(byId.get(id)) : null;
+    }
+
+    public <T> void put(Class<T> type, Integer id, T entity) {
+        Map<Integer, Object> byId = entities.get(type);
+        if (byId == null) {
+            byId = new HashMap<Integer, Object>();
+            entities.put(type, byId);
+        }
+        byId.put(id, entity);
+    }
+}
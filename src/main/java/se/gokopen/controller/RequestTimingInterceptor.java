@@ -0,0 +1,44 @@
+package se.gokopen.controller;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import se.gokopen.service.RequestMetrics;
+
+/**
+ * Mäter tiden för varje anrop till en controller och sparar den i
+ * RequestMetrics under controller, metod och den @RequestMapping som
+ * matchade, t.ex. "ScoreController GET /score/sheet/{stationid}". Med
+ * sökvägsmönstret istället för adressen blir det ett fast antal rader.
+ */
+public class RequestTimingInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String START = RequestTimingInterceptor.class.getName() + ".start";
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START);
+        if (start == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - (Long) start;
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String name = ClassUtils.getUserClass(handler).getSimpleName() + " " + request.getMethod() + " "
+                + (pattern != null ? pattern : "(okänd)");
+        requestMetrics.record(name, nanos, ex != null);
+    }
+}
@@ -1,6 +1,11 @@
 package se.gokopen.controller;
 
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -17,15 +22,18 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 import se.gokopen.dao.PatrolNotFoundException;
-import se.gokopen.dao.PatrolNotSavedException;
 import se.gokopen.dao.ScoreNotFoundException;
 import se.gokopen.dao.ScoreNotSavedException;
 import se.gokopen.dao.StationNotFoundException;
 import se.gokopen.model.PatrolImpl;
 import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.ScoreSheet;
+import se.gokopen.model.ScoreUpload;
 import se.gokopen.model.Station;
 import se.gokopen.model.Track;
 import se.gokopen.service.PatrolService;
@@ -37,6 +45,12 @@ import se.gokopen.service.TrackService;
 @Controller
 public class ScoreController {
 
+	// Antal rader i formuläret för att rapportera flera patruller på en gång
+	private static final int SHEET_ROWS = 40;
+	// Större köer än så delar enheten upp i flera anrop
+	private static final int MAX_SYNC_SCORES = 200;
+	private static final Pattern SHEET_PATROL = Pattern.compile("scores\\[\\d+\\]\\.patrol");
+
 	@Autowired
 	private PatrolService patrolService;
 	@Autowired
@@ -47,13 +61,39 @@ public class ScoreController {
 	private ScoreService scoreService;
 
 	@InitBinder
-	protected void initBinder(WebDataBinder binder) {
-		binder.registerCustomEditor(Station.class, new StationEditor(
-				this.stationService));
-		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(
-				this.patrolService));
-		binder.registerCustomEditor(Track.class, new TrackEditor(
-				this.trackService));
+	protected void initBinder(WebDataBinder binder, HttpServletRequest request) {
+		RequestIdentityMap identityMap = RequestIdentityMap.forRequest(request);
+		binder.registerCustomEditor(Station.class, new StationEditor(this.stationService, identityMap));
+		binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(this.patrolService, identityMap));
+		binder.registerCustomEditor(Track.class, new TrackEditor(this.trackService, identityMap));
+		if (binder.getTarget() instanceof ScoreSheet) {
+			loadSheetPatrols(request, identityMap);
+		}
+	}
+
+	/**
+	 * Hämtar poängbladets patruller i en fråga innan raderna binds, annars
+	 * hämtar PatrolEditor dem en i taget.
+	 */
+	private void loadSheetPatrols(HttpServletRequest request, RequestIdentityMap identityMap) {
+		Set<Integer> ids = new HashSet<Integer>();
+		Enumeration<?> names = request.getParameterNames();
+		while (names.hasMoreElements()) {
+			String name = (String) names.nextElement();
+			if (SHEET_PATROL.matcher(name).matches()) {
+				try {
+					ids.add(Integer.valueOf(request.getParameter(name)));
+				} catch (NumberFormatException e) {
+					// Felet visas när raden binds
+				}
+			}
+		}
+		if (ids.isEmpty()) {
+			return;
+		}
+		for (PatrolImpl patrol : patrolService.getPatrolsByIds(ids)) {
+			identityMap.put(PatrolImpl.class, patrol.getPatrolId(), patrol);
+		}
 	}
 
 	@ModelAttribute("tracks")
@@ -75,7 +115,7 @@ public class ScoreController {
 	@RequestMapping(value = "/selectstation", method = RequestMethod.POST)
 	public ModelAndView selectStation(ScoreImpl score, BindingResult errors,
 			HttpServletRequest request, HttpServletResponse response) {
-		if(SecurityChecker.isEditAllowedForCurrentUser(score)){
+		if(SecurityChecker.getEditPermissions(request, stationService).isEditAllowedOnStation(score.getStation())){
 			List<PatrolImpl> patrols = patrolService.getAllPatrolsLeftOnStation(score.getStation().getStationId());
 			request.setAttribute("patrols", patrols);
 			return new ModelAndView("reportscore", "score", score);
@@ -123,13 +163,13 @@ public class ScoreController {
 		        request.getContextPath() + "/patrol/viewpatrolfromlisttrack/" + patrolid
 				+ "/track/" + trackid);
 
-		if(SecurityChecker.isEditAllowedForCurrentUser(score)){
+		if(SecurityChecker.getEditPermissions(request, stationService).isEditAllowedOnStation(score.getStation())){
 			return new ModelAndView("editscore", "score", score);	
 		}else{
 			//Får inte redigera därmed tillbaka till patrullen
 			PatrolImpl patrol = null;
 			try {
-				patrol = patrolService.getPatrolById(Integer.parseInt(patrolid));
+				patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(patrolid));
 			} catch (NumberFormatException e) {
 				e.printStackTrace();
 			} catch (PatrolNotFoundException e) {
@@ -190,6 +230,154 @@ public class ScoreController {
 		return new ModelAndView("reportscore", "score", scorenew);
 	}
 
+	@RequestMapping(value = "/sheet/{stationid}", method = RequestMethod.GET)
+	public ModelAndView startScoreSheet(@PathVariable String stationid, HttpServletRequest request) {
+		Station station = null;
+		try {
+			station = stationService.getStationById(Integer.parseInt(stationid));
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (StationNotFoundException e) {
+			e.printStackTrace();
+		}
+		return showScoreSheet(station, request);
+	}
+
+	@RequestMapping(value = "/savesheet", method = RequestMethod.POST)
+	public ModelAndView saveScoreSheet(ScoreSheet sheet, BindingResult errors,
+			HttpServletRequest request, HttpServletResponse response) {
+		Station station = sheet.getStation();
+		List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+		for (ScoreImpl score : sheet.getScores()) {
+			// Rader utan vald patrull lämnas tomma
+			if (score.getPatrol() != null) {
+				score.setStation(station);
+				scores.add(score);
+			}
+		}
+		if (station != null && isEditAllowedOnStation(station, request)) {
+			try {
+				request.setAttribute("results", scoreService.saveScores(scores));
+			} catch (ScoreNotSavedException e) {
+				request.setAttribute("errormsg", e.getErrorMsg());
+			}
+		}
+		return showScoreSheet(station, request);
+	}
+
+	private ModelAndView showScoreSheet(Station station, HttpServletRequest request) {
+		if (station == null || !isEditAllowedOnStation(station, request)) {
+			request.setAttribute("errormsg", "Du har inte behörighet att ge poäng på denna kontroll.");
+			return new ModelAndView("reportscore", "score", new ScoreImpl());
+		}
+		List<PatrolImpl> patrols = patrolService.getAllPatrolsLeftOnStation(station.getStationId());
+		ScoreSheet sheet = new ScoreSheet();
+		sheet.setStation(station);
+		for (int i = 0; i < Math.min(patrols.size(), SHEET_ROWS); i++) {
+			ScoreImpl score = new ScoreImpl();
+			score.setScorePoint(station.getMinScore());
+			score.setStylePoint(station.getMinStyleScore());
+			sheet.getScores().add(score);
+		}
+		request.setAttribute("patrols", patrols);
+		return new ModelAndView("reportscoresheet", "sheet", sheet);
+	}
+
+	/**
+	 * Sida för kontroller utan säker täckning. Poängen köas i webbläsaren och
+	 * skickas till /score/sync när det går, se reportscoreoffline.jsp.
+	 */
+	@RequestMapping(value = "/offline/{stationid}", method = RequestMethod.GET)
+	public ModelAndView startOfflineScore(@PathVariable String stationid, HttpServletRequest request) {
+		Station station = null;
+		try {
+			station = stationService.getStationById(Integer.parseInt(stationid));
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		} catch (StationNotFoundException e) {
+			e.printStackTrace();
+		}
+		if (station == null || !isEditAllowedOnStation(station, request)) {
+			request.setAttribute("errormsg", "Du har inte behörighet att ge poäng på denna kontroll.");
+			return new ModelAndView("reportscore", "score", new ScoreImpl());
+		}
+		request.setAttribute("patrolsJson", ScoreSyncJson.patrols(patrolService.getAllPatrolsLeftOnStation(station.getStationId())));
+		return new ModelAndView("reportscoreoffline", "station", station);
+	}
+
+	/**
+	 * Tar emot en kontrolls kö av poäng som parallella fält key, patrolId,
+	 * scorePoint och stylePoint. Allt sparas i en transaktion och svaret
+	 * talar om vad som hände med varje poäng. En poäng som skickas igen med
+	 * samma nyckel sparas inte en gång till utan svarar alreadysaved.
+	 */
+	@RequestMapping(value = "/sync/{stationid}", method = RequestMethod.POST, produces = "application/json;charset=UTF-8")
+	@ResponseBody
+	public String syncScores(@PathVariable String stationid, HttpServletRequest request, HttpServletResponse response) {
+		Station station = null;
+		try {
+			station = stationService.getStationById(Integer.parseInt(stationid));
+		} catch (NumberFormatException e) {
+			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+			return ScoreSyncJson.error("Hittar inte kontrollen.");
+		} catch (StationNotFoundException e) {
+			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+			return ScoreSyncJson.error("Hittar inte kontrollen.");
+		}
+		if (!isEditAllowedOnStation(station, request)) {
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return ScoreSyncJson.error("Du har inte behörighet att ge poäng på denna kontroll.");
+		}
+		List<ScoreUpload> uploads;
+		try {
+			uploads = readUploads(request);
+		} catch (IllegalArgumentException e) {
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return ScoreSyncJson.error(e.getMessage());
+		}
+		List<ScoreResult> results;
+		try {
+			results = scoreService.syncScores(station, uploads);
+		} catch (ScoreNotSavedException e) {
+			// Ett annat anrop sparade samma poäng samtidigt, nästa försök svarar alreadysaved
+			response.setStatus(HttpServletResponse.SC_CONFLICT);
+			return ScoreSyncJson.error(e.getErrorMsg());
+		}
+		return ScoreSyncJson.toJson(station.getStationId(), results,
+				patrolService.getAllPatrolsLeftOnStation(station.getStationId()));
+	}
+
+	private static List<ScoreUpload> readUploads(HttpServletRequest request) {
+		String[] keys = values(request, "key");
+		String[] patrolIds = values(request, "patrolId");
+		String[] scorePoints = values(request, "scorePoint");
+		String[] stylePoints = values(request, "stylePoint");
+		if (patrolIds.length != keys.length || scorePoints.length != keys.length || stylePoints.length != keys.length) {
+			throw new IllegalArgumentException("Lika många key, patrolId, scorePoint och stylePoint krävs.");
+		}
+		if (keys.length > MAX_SYNC_SCORES) {
+			throw new IllegalArgumentException("Högst " + MAX_SYNC_SCORES + " poäng per anrop.");
+		}
+		List<ScoreUpload> uploads = new ArrayList<ScoreUpload>(keys.length);
+		try {
+			for (int i = 0; i < keys.length; i++) {
+				uploads.add(new ScoreUpload(keys[i], Integer.valueOf(patrolIds[i]), Integer.parseInt(scorePoints[i]), Integer.parseInt(stylePoints[i])));
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Felaktigt tal i poängen.");
+		}
+		return uploads;
+	}
+
+	private static String[] values(HttpServletRequest request, String name) {
+		String[] values = request.getParameterValues(name);
+		return values == null ? new String[0] : values;
+	}
+
+	private boolean isEditAllowedOnStation(Station station, HttpServletRequest request) {
+		return SecurityChecker.getEditPermissions(request, stationService).isEditAllowedOnStation(station);
+	}
+
 	@RequestMapping(value = "/savescorefrompatrol", method = RequestMethod.POST)
 	public ModelAndView saveScoreFromPatrol(ScoreImpl score,
 			BindingResult errors, HttpServletRequest request,
@@ -203,7 +391,7 @@ public class ScoreController {
 		Integer patrolId = score.getPatrol().getPatrolId();
 		PatrolImpl patrolReloaded = null;
 		try {
-			patrolReloaded = patrolService.getPatrolById(patrolId);
+			patrolReloaded = patrolService.getPatrolWithScoresById(patrolId);
 		} catch (PatrolNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -221,9 +409,8 @@ public class ScoreController {
 		try {
 			score = scoreService.getScoreById(Integer.parseInt(id));
 			System.out.println("deleting: found score: " + score.getScoreId() + " score: " + score.getScorePoint() + " at station: " + score.getStation().getStationName());
-			patrol = patrolService.getPatrolById(Integer.parseInt(patrolid));
-			patrol.deleteScore(score);
-			patrolService.savePatrol(patrol);
+			scoreService.deleteScore(score);
+			patrol = patrolService.getPatrolWithScoresById(Integer.parseInt(patrolid));
 		} catch (NumberFormatException e1) {
 			System.out.println("NumberFormatException: Problem deleting score " + id);
 			e1.printStackTrace();
@@ -237,11 +424,6 @@ public class ScoreController {
 			System.out.println("PatrolNotFoundException: Problem deleting score " + id);
 			e.printStackTrace();
 			request.setAttribute("errormsg", "Hittar inte patrullen att ta bort poängen från.");
-            return new ModelAndView("start");
-		} catch (PatrolNotSavedException e) {
-			System.out.println("PatrolNotSavedException: Problem deleting score " + id);
-			e.printStackTrace();
-			request.setAttribute("errormsg", "Kunde inte spara patrullen och dess poängt.");
             return new ModelAndView("start");
 		}
 
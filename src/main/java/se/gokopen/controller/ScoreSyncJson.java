@@ -0,0 +1,70 @@
+package se.gokopen.controller;
+
+import java.util.List;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreResult;
+
+/**
+ * Svaret till en kontrolls enhet efter synk: utfallet per poäng i samma
+ * ordning som de skickades och patrullerna som är kvar på kontrollen.
+ */
+class ScoreSyncJson {
+
+    private ScoreSyncJson() {
+
+    }
+
+    static String toJson(Integer stationId, List<ScoreResult> results, List<PatrolImpl> remaining) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"stationId\":").append(stationId);
+        json.append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            ScoreResult result = results.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":").append(StandingsJson.quote(result.getScore().getClientKey()));
+            json.append(",\"status\":");
+            if (result.isAlreadySaved()) {
+                json.append("\"alreadysaved\"");
+            } else if (result.isSaved()) {
+                json.append("\"saved\"");
+            } else {
+                json.append("\"rejected\"");
+            }
+            json.append(",\"scoreId\":").append(result.getScore().getScoreId());
+            json.append(",\"message\":").append(StandingsJson.quote(result.getErrorMsg()));
+            json.append('}');
+        }
+        json.append(']');
+        json.append(",\"remaining\":");
+        appendPatrols(json, remaining);
+        json.append('}');
+        return json.toString();
+    }
+
+    static String patrols(List<PatrolImpl> patrols) {
+        StringBuilder json = new StringBuilder();
+        appendPatrols(json, patrols);
+        return json.toString();
+    }
+
+    static String error(String message) {
+        return "{\"error\":" + StandingsJson.quote(message) + "}";
+    }
+
+    private static void appendPatrols(StringBuilder json, List<PatrolImpl> patrols) {
+        json.append('[');
+        for (int i = 0; i < patrols.size(); i++) {
+            PatrolImpl patrol = patrols.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"patrolId\":").append(patrol.getPatrolId());
+            json.append(",\"patrolInfo\":").append(StandingsJson.quote(patrol.getPatrolInfo()));
+            json.append('}');
+        }
+        json.append(']');
+    }
+}
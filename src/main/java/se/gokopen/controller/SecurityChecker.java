@@ -1,17 +1,41 @@
 package se.gokopen.controller;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 
 import se.gokopen.model.ScoreImpl;
+import se.gokopen.service.StationService;
+import se.gokopen.service.StationUserIndex;
 
 public class SecurityChecker {
 
+    static final String PERMISSIONS_ATTRIBUTE = EditPermissions.class.getName();
+
     public SecurityChecker(){
         
     }
     
+    /**
+     * Rättigheterna som sparats i sessionen. Räknas om ifall de saknas, hör
+     * till en annan användare eller beräknades från ett äldre index.
+     */
+    public static EditPermissions getEditPermissions(HttpServletRequest request, StationService stationService) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        HttpSession session = request.getSession();
+        StationUserIndex index = stationService.getStationUserIndex();
+        EditPermissions permissions = (EditPermissions) session.getAttribute(PERMISSIONS_ATTRIBUTE);
+        if (permissions == null || !permissions.isCurrent(authentication, index)) {
+            permissions = EditPermissions.create(authentication, index);
+            session.setAttribute(PERMISSIONS_ATTRIBUTE, permissions);
+        }
+        return permissions;
+    }
+    
     public static boolean isEditAllowedForCurrentUser(ScoreImpl score) {
         User user = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         String name = user.getUsername();
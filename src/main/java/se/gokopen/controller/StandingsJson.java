@@ -0,0 +1,89 @@
+package se.gokopen.controller;
+
+import java.util.List;
+
+import se.gokopen.model.Standing;
+
+/**
+ * Skriver resultatlistan som JSON för resultatskärmarnas flöde. Listan är
+ * liten och platt, så den byggs för hand istället för att dra in ett
+ * JSON-bibliotek.
+ */
+class StandingsJson {
+
+    private StandingsJson() {
+
+    }
+
+    static String toJson(Integer trackId, long version, List<Standing> standings) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"trackId\":").append(trackId);
+        json.append(",\"version\":").append(version);
+        json.append(",\"changed\":").append(standings != null);
+        if (standings != null) {
+            json.append(",\"standings\":[");
+            int position = 0;
+            for (Standing standing : standings) {
+                if (position > 0) {
+                    json.append(',');
+                }
+                position++;
+                json.append("{\"position\":").append(position);
+                json.append(",\"patrolId\":").append(standing.getPatrolId());
+                json.append(",\"patrolName\":");
+                appendString(json, standing.getPatrolName());
+                json.append(",\"troop\":");
+                appendString(json, standing.getTroop());
+                json.append(",\"totalScore\":").append(standing.getTotalScore());
+                json.append(",\"totalScorePoint\":").append(standing.getTotalScorePoint());
+                json.append(",\"totalStylePoint\":").append(standing.getTotalStylePoint());
+                json.append(",\"totalReportedStations\":").append(standing.getTotalReportedStations());
+                json.append('}');
+            }
+            json.append(']');
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    static String quote(String value) {
+        StringBuilder json = new StringBuilder();
+        appendString(json, value);
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == '<' || c == '>' || c == '&') {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+}
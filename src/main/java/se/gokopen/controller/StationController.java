@@ -32,7 +32,6 @@ public class StationController {
 		} catch (StationNotSavedException e) {
 			e.printStackTrace();
 		}
-		
 		//Lista på stationer
 		List<Station> stations = stationService.getAllStations();
 		return new ModelAndView("stationlist","stations",stations);
@@ -9,19 +9,25 @@ public class StationEditor extends PropertyEditorSupport {
 
 
 	private StationService stationService;
+	private RequestIdentityMap identityMap;
 
-	public StationEditor(StationService stationService) {
-        this.stationService = stationService;
-    }
+	public StationEditor(StationService stationService, RequestIdentityMap identityMap) {
+		this.stationService = stationService;
+		this.identityMap = identityMap;
+	}
 
 	@Override
 	public void setAsText(String text) throws IllegalArgumentException {
-		Station station = null;
-		try {
-			station = stationService.getStationById(Integer.parseInt(text));
-		} catch (StationNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		Integer id = Integer.parseInt(text);
+		Station station = identityMap.get(Station.class, id);
+		// -1 används för "-- Välj --" i listorna
+		if (station == null && id > 0) {
+			try {
+				station = stationService.getStationById(id);
+				identityMap.put(Station.class, id, station);
+			} catch (StationNotFoundException e) {
+				e.printStackTrace();
+			}
 		}
 		setValue(station);
 	}
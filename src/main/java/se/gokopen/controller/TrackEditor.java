@@ -11,19 +11,25 @@ public class TrackEditor extends PropertyEditorSupport {
 
 
 	private TrackService trackService;
+	private RequestIdentityMap identityMap;
 
-	public TrackEditor(TrackService trackService) {
-        this.trackService = trackService;
-    }
+	public TrackEditor(TrackService trackService, RequestIdentityMap identityMap) {
+		this.trackService = trackService;
+		this.identityMap = identityMap;
+	}
 
 	@Override
 	public void setAsText(String text) throws IllegalArgumentException {
-		Track track = null;
-		try {
-			track = trackService.getTrackById(Integer.parseInt(text));
-		} catch (TrackNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		Integer id = Integer.parseInt(text);
+		Track track = identityMap.get(Track.class, id);
+		// -1 används för "-- Välj --" i listorna
+		if (track == null && id > 0) {
+			try {
+				track = trackService.getTrackById(id);
+				identityMap.put(Track.class, id, track);
+			} catch (TrackNotFoundException e) {
+				e.printStackTrace();
+			}
 		}
 		setValue(track);
 	}
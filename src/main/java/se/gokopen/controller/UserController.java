@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 
 import se.gokopen.dao.UserNotFoundException;
 import se.gokopen.model.User;
+import se.gokopen.service.CachedUserDetailsService;
 import se.gokopen.service.UserService;
 
 @RequestMapping("/admin/user")
@@ -25,6 +26,8 @@ public class UserController {
     
     @Autowired
     private UserService userService;
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
     
     @ModelAttribute("userroles")
     public Map<String,String> populateUserRoles(){
@@ -40,6 +43,8 @@ public class UserController {
         List<User> users = userService.getAllUsers();
         ModelMap map = new ModelMap();
         map.put("users", users);
+        map.put("loginCacheHits", userDetailsService.getHitCount());
+        map.put("loginCacheMisses", userDetailsService.getMissCount());
         return new ModelAndView("listusers",map);
     }
     
@@ -54,7 +59,18 @@ public class UserController {
     @RequestMapping(value="/save", method=RequestMethod.POST)
     public String saveUser(@ModelAttribute("user")User user, HttpServletRequest request){
         System.out.println("användare håller på att sparas: " + user.toString());
-        userService.saveUser(user);       
+        String oldUsername = null;
+        if (user.getId() != null) {
+            try {
+                oldUsername = userService.getUserById(user.getId()).getUsername();
+            } catch (UserNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        userService.saveUser(user);
+        // Både gamla och nya namnet, användarnamnet kan ha ändrats
+        userDetailsService.evict(oldUsername);
+        userDetailsService.evict(user.getUsername());
         return "redirect:/admin/user";
     }
     
@@ -75,7 +91,9 @@ public class UserController {
     @RequestMapping(value="/delete/{id}", method=RequestMethod.GET)
     public String deleteUser(@PathVariable String id){
         try {
-            userService.deleteUserById(Integer.parseInt(id));
+            User user = userService.getUserById(Integer.parseInt(id));
+            userService.deleteUserById(user.getId());
+            userDetailsService.evict(user.getUsername());
         } catch (NumberFormatException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
@@ -0,0 +1,56 @@
+package se.gokopen.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.dbcp.BasicDataSource;
+
+import se.gokopen.service.LatencyHistogram;
+
+/**
+ * Anslutningspoolen med mätning av hur länge anropen väntar på en anslutning.
+ * När många kontroller sparar samtidigt och poolen är full syns det här
+ * innan det syns som långa svarstider. Ett anrop som ger upp efter maxWait
+ * räknas som fel.
+ */
+public class MeteredDataSource extends BasicDataSource {
+
+    private volatile LatencyHistogram waits = new LatencyHistogram();
+    private final AtomicInteger peakActive = new AtomicInteger();
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Connection connection = super.getConnection();
+            failed = false;
+            int active = getNumActive();
+            int peak = peakActive.get();
+            while (active > peak && !peakActive.compareAndSet(peak, active)) {
+                peak = peakActive.get();
+            }
+            return connection;
+        } finally {
+            waits.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public LatencyHistogram getWaits() {
+        return waits;
+    }
+
+    /**
+     * Flest anslutningar som lånats ut samtidigt sedan start eller reset.
+     * Ligger den på maxActive har anrop fått vänta.
+     */
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    public void reset() {
+        waits = new LatencyHistogram();
+        peakActive.set(getNumActive());
+    }
+}
@@ -1,13 +1,16 @@
 package se.gokopen.dao;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.Query;
 import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.PatrolSummary;
 import se.gokopen.model.Track;
 
 //@Component("PatrolDAO")
@@ -32,15 +35,44 @@ public class PatrolDAO {
 		sessionFactory.getCurrentSession().delete(patrol);
 	}
 
-	@SuppressWarnings("unchecked")
 	public PatrolImpl getById(final Integer id) throws PatrolNotFoundException{
 		PatrolImpl patrol = null;
-		
-		List<PatrolImpl> patrols = (List<PatrolImpl>) sessionFactory.getCurrentSession().createQuery("from PatrolImpl patr where patr.patrolId=?").setParameter(0, id).list();
-		if (patrols==null || patrols.isEmpty() || patrols.size()>1){
+		if (id!=null){
+			patrol = (PatrolImpl) sessionFactory.getCurrentSession().get(PatrolImpl.class, id);
+		}
+		if (patrol==null){
+			throw new PatrolNotFoundException("Hittar inte patrullen med id: " + id);
+		}
+		return patrol;
+	}
+
+	/**
+	 * Patrullerna med de id som finns, med klass, i en fråga.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatrolImpl> getByIds(Collection<Integer> ids){
+		if(ids.isEmpty()){
+			return new ArrayList<PatrolImpl>();
+		}
+		return sessionFactory.getCurrentSession().createQuery("select patr from PatrolImpl patr left join fetch patr.track where patr.patrolId in (:ids)")
+				.setParameterList("ids", ids)
+				.list();
+	}
+
+	/**
+	 * Patrullen med alla poäng och kontroller hämtade i samma fråga, för sidor
+	 * som visar poängen. Poängen laddas annars inte med patrullen.
+	 */
+	public PatrolImpl getByIdWithScores(final Integer id) throws PatrolNotFoundException{
+		PatrolImpl patrol = null;
+		if (id!=null){
+			patrol = (PatrolImpl) sessionFactory.getCurrentSession().createQuery("select distinct patr from PatrolImpl patr left join fetch patr.track left join fetch patr.scores score left join fetch score.station where patr.patrolId=:patrolid")
+					.setParameter("patrolid", id)
+					.uniqueResult();
+		}
+		if (patrol==null){
 			throw new PatrolNotFoundException("Hittar inte patrullen med id: " + id);
 		}
-		patrol = patrols.get(0);
 		return patrol;
 	}
 	
@@ -49,20 +81,104 @@ public class PatrolDAO {
 		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("from PatrolImpl as ptr order by ptr.patrolName asc").list();
 		return patrols;
 	}
+
+	/**
+	 * En rad per patrull med klassnamn och poängsummor räknade med sum/count i
+	 * databasen, för listor som inte behöver de enskilda poängen.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatrolSummary> getAllPatrolSummaries(){
+		List<PatrolSummary> patrols = sessionFactory.getCurrentSession().createQuery("select new se.gokopen.model.PatrolSummary(patr.patrolId, patr.patrolName, patr.troop, track.trackName, patr.leaderContact, coalesce(sum(score.scorePoint),0), coalesce(sum(score.stylePoint),0), count(score.scoreId)) "
+				+ "from PatrolImpl patr left join patr.track track left join patr.scores score "
+				+ "group by patr.patrolId, patr.patrolName, patr.troop, track.trackName, patr.leaderContact "
+				+ "order by patr.patrolName asc, patr.patrolId asc").list();
+		return patrols;
+	}
 	
 
+	/**
+	 * En sida av patrullistan i namnordning, ev. bara en klass och/eller kår.
+	 * Sidan börjar efter patrullen afterName/afterId (sista raden på förra
+	 * sidan) i stället för med offset, så en sida långt in i listan kostar lika
+	 * lite som den första. Summorna läses från patrullens summakolumner.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatrolSummary> getPatrolSummaryPage(Integer trackId, String troop, String afterName, Integer afterId, int maxResults){
+		List<String> conditions = new ArrayList<String>();
+		if(trackId!=null){
+			conditions.add("patr.track.trackId=:trackid");
+		}
+		if(troop!=null){
+			conditions.add("patr.troop=:troop");
+		}
+		if(afterId!=null){
+			// Patruller utan namn kommer först i sorteringen
+			if(afterName==null){
+				conditions.add("(patr.patrolName is not null or patr.patrolId>:afterid)");
+			}else{
+				conditions.add("(patr.patrolName>:aftername or (patr.patrolName=:aftername and patr.patrolId>:afterid))");
+			}
+		}
+		StringBuilder hql = new StringBuilder("select new se.gokopen.model.PatrolSummary(patr.patrolId, patr.patrolName, patr.troop, track.trackName, patr.leaderContact, "
+				+ "cast(patr.sumScorePoint as long), cast(patr.sumStylePoint as long), cast(patr.sumReportedStations as long)) "
+				+ "from PatrolImpl patr left join patr.track track");
+		for(int i=0;i<conditions.size();i++){
+			hql.append(i==0 ? " where " : " and ").append(conditions.get(i));
+		}
+		hql.append(" order by patr.patrolName asc, patr.patrolId asc");
+
+		Query query = sessionFactory.getCurrentSession().createQuery(hql.toString()).setMaxResults(maxResults);
+		if(trackId!=null){
+			query.setParameter("trackid", trackId);
+		}
+		if(troop!=null){
+			query.setParameter("troop", troop);
+		}
+		if(afterId!=null){
+			query.setParameter("afterid", afterId);
+			if(afterName!=null){
+				query.setParameter("aftername", afterName);
+			}
+		}
+		return query.list();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<String> getAllTroops(){
+		return sessionFactory.getCurrentSession().createQuery("select distinct patr.troop from PatrolImpl patr where patr.troop is not null order by patr.troop asc").list();
+	}
+
+	/**
+	 * Klassen som patrullen tillhör i databasen, utan att ladda patrullen.
+	 */
+	public Integer getTrackIdByPatrolId(Integer patrolId){
+		return (Integer) sessionFactory.getCurrentSession().createQuery("select patr.track.trackId from PatrolImpl patr where patr.patrolId=:patrolid")
+				.setParameter("patrolid", patrolId)
+				.uniqueResult();
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<PatrolImpl> getPatrolsByTrackId(Integer trackId){
-		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("from PatrolImpl patr where patr.fk_track=? order by patr.patrolName asc").setParameter(0,trackId).list();
+		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("from PatrolImpl patr where patr.track.trackId=? order by patr.patrolName asc").setParameter(0,trackId).list();
 		return patrols;
 	}
 	
 	@SuppressWarnings("unchecked")
 	public List<PatrolImpl> getPatrolsByTrack(Track track){
-		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("from PatrolImpl patr where patr.track=? order by patr.patrolName asc").setParameter(0,track).list();
-		Collections.sort(patrols);
+		// Poängen behövs för resultatlistan och hämtas därför i samma fråga.
+		// Rangordningen görs av TrackStandings, här sorteras bara på namn.
+		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("select distinct patr from PatrolImpl patr left join fetch patr.scores where patr.track=? order by patr.patrolName asc, patr.patrolId asc").setParameter(0,track).list();
 		return patrols;
 	}
 
-}
+	/**
+	 * Patruller som ännu inte har fått poäng på kontrollen. Filtreras i databasen
+	 * med en not exists mot poängtabellen istället för att gå igenom alla poäng.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<PatrolImpl> getPatrolsLeftOnStation(Integer stationId){
+		List<PatrolImpl> patrols = sessionFactory.getCurrentSession().createQuery("from PatrolImpl as ptr where not exists (select score.scoreId from ScoreImpl as score where score.patrol=ptr and score.station.stationId=:stationid) order by ptr.patrolName asc").setParameter("stationid", stationId).list();
+		return patrols;
+	}
 
+}
@@ -0,0 +1,11 @@
+package se.gokopen.dao;
+
+import java.io.IOException;
+
+/**
+ * Tar emot en rad i taget från en fråga som strömmas från databasen, så att
+ * hela resultatet aldrig behöver ligga i minnet.
+ */
+public interface RowHandler {
+	public void handleRow(Object[] row) throws IOException;
+}
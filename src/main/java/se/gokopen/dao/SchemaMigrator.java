@@ -0,0 +1,325 @@
+package se.gokopen.dao;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Uppdaterar databasen med numrerade SQL-skript, V1__beskrivning.sql,
+ * V2__beskrivning.sql och så vidare, innan Hibernate startar. Vilka skript som
+ * körts står i tabellen schema_version, så varje skript körs en gång.
+ * Hibernate kontrollerar sedan bara att tabellerna stämmer (validate).
+ *
+ * MySQL kan inte rulla tillbaka DDL, så skripten skrivs så att de går att
+ * köra om efter ett avbrott: tabeller skapas med "if not exists", "create
+ * index" hoppas över om indexet redan finns och "alter table ... add column"
+ * om kolumnen redan finns. Det gör också att databaser som byggts av hbm2ddl
+ * tar emot skripten utan handpåläggning.
+ */
+public class SchemaMigrator implements InitializingBean {
+
+    private static final Log log = LogFactory.getLog(SchemaMigrator.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern CREATE_INDEX = Pattern.compile("create\\s+(?:unique\\s+)?index\\s+(\\w+)\\s+on\\s+(\\w+)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ADD_COLUMN = Pattern.compile("alter\\s+table\\s+(\\w+)\\s+add\\s+column\\s+(\\w+)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private DataSource dataSource;
+    private Resource[] scripts;
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void setScripts(Resource[] scripts) {
+        this.scripts = scripts;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException, IOException {
+        migrate();
+    }
+
+    /**
+     * Kör de skript som inte redan körts, i nummerordning.
+     *
+     * @return versionerna som kördes
+     */
+    public List<Integer> migrate() throws SQLException, IOException {
+        List<Script> pending = sortedScripts();
+        List<Integer> applied = new ArrayList<Integer>();
+        Connection connection = dataSource.getConnection();
+        try {
+            createVersionTable(connection);
+            Map<Integer, Long> installed = installedVersions(connection);
+            for (Script script : pending) {
+                Long checksum = installed.get(script.version);
+                if (checksum == null) {
+                    log.info("Uppdaterar databasen till version " + script.version + " (" + script.description + ")");
+                    run(connection, script);
+                    applied.add(script.version);
+                } else if (checksum.longValue() != script.checksum) {
+                    throw new IllegalStateException("Skriptet för version " + script.version + " har ändrats efter att det körts. "
+                            + "Lägg ändringen i ett nytt skript i stället.");
+                }
+            }
+        } finally {
+            connection.close();
+        }
+        return applied;
+    }
+
+    /**
+     * Databasens senaste version och hur många skript som inte har körts, för
+     * /admin/metrics.
+     */
+    public Status status() throws SQLException, IOException {
+        List<Script> all = sortedScripts();
+        Connection connection = dataSource.getConnection();
+        try {
+            Map<Integer, Long> installed = installedVersions(connection);
+            int pending = 0;
+            for (Script script : all) {
+                if (!installed.containsKey(script.version)) {
+                    pending++;
+                }
+            }
+            Statement statement = connection.createStatement();
+            try {
+                statement.setMaxRows(1);
+                ResultSet latest = statement.executeQuery("select version, description, installedon from schema_version order by version desc");
+                if (!latest.next()) {
+                    return new Status(0, null, null, pending);
+                }
+                return new Status(latest.getInt(1), latest.getString(2), latest.getTimestamp(3), pending);
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private List<Script> sortedScripts() throws IOException {
+        List<Script> sorted = new ArrayList<Script>();
+        for (Resource resource : scripts) {
+            Matcher name = SCRIPT_NAME.matcher(resource.getFilename());
+            if (!name.matches()) {
+                throw new IllegalStateException("Skriptet " + resource.getFilename() + " ska heta V<nummer>__<beskrivning>.sql");
+            }
+            String sql = FileCopyUtils.copyToString(new InputStreamReader(resource.getInputStream(), UTF8));
+            sorted.add(new Script(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), sql));
+        }
+        Collections.sort(sorted, new Comparator<Script>() {
+            @Override
+            public int compare(Script s1, Script s2) {
+                return Integer.compare(s1.version, s2.version);
+            }
+        });
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version == sorted.get(i - 1).version) {
+                throw new IllegalStateException("Två skript har version " + sorted.get(i).version);
+            }
+        }
+        return sorted;
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("create table if not exists schema_version (version integer not null primary key, "
+                    + "description varchar(200), checksum bigint not null, installedon timestamp not null)");
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static Map<Integer, Long> installedVersions(Connection connection) throws SQLException {
+        Map<Integer, Long> versions = new HashMap<Integer, Long>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rows = statement.executeQuery("select version, checksum from schema_version");
+            while (rows.next()) {
+                versions.put(rows.getInt(1), rows.getLong(2));
+            }
+        } finally {
+            statement.close();
+        }
+        return versions;
+    }
+
+    private static void run(Connection connection, Script script) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            for (String sql : statements(script.sql)) {
+                if (!indexExists(connection, sql) && !columnExists(connection, sql)) {
+                    statement.execute(sql);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Version " + script.version + " kunde inte köras: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            statement.close();
+        }
+        PreparedStatement insert = connection.prepareStatement(
+                "insert into schema_version (version, description, checksum, installedon) values (?, ?, ?, ?)");
+        try {
+            insert.setInt(1, script.version);
+            insert.setString(2, script.description);
+            insert.setLong(3, script.checksum);
+            insert.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            insert.executeUpdate();
+        } finally {
+            insert.close();
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Satserna i ett skript. Varje sats slutar med semikolon sist på raden och
+     * rader som börjar med -- är kommentarer.
+     */
+    static List<String> statements(String sql) {
+        List<String> statements = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (current.length() > 0) {
+                current.append('\n');
+            }
+            if (trimmed.endsWith(";")) {
+                current.append(trimmed.substring(0, trimmed.length() - 1));
+                statements.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(trimmed);
+            }
+        }
+        if (current.length() > 0) {
+            statements.add(current.toString());
+        }
+        return statements;
+    }
+
+    private static boolean indexExists(Connection connection, String sql) throws SQLException {
+        Matcher createIndex = CREATE_INDEX.matcher(sql);
+        if (!createIndex.matches()) {
+            return false;
+        }
+        String index = createIndex.group(1);
+        DatabaseMetaData metaData = connection.getMetaData();
+        // H2 lagrar namnen med versaler, MySQL som de skrevs
+        for (String table : new String[] { createIndex.group(2), createIndex.group(2).toUpperCase() }) {
+            ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, false, true);
+            try {
+                while (indexes.next()) {
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            } finally {
+                indexes.close();
+            }
+        }
+        return false;
+    }
+
+    private static boolean columnExists(Connection connection, String sql) throws SQLException {
+        Matcher addColumn = ADD_COLUMN.matcher(sql);
+        if (!addColumn.matches()) {
+            return false;
+        }
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String table : new String[] { addColumn.group(1), addColumn.group(1).toUpperCase() }) {
+            ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, null);
+            try {
+                while (columns.next()) {
+                    if (addColumn.group(2).equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            } finally {
+                columns.close();
+            }
+        }
+        return false;
+    }
+
+    public static final class Status {
+        private final int version;
+        private final String description;
+        private final Date installedOn;
+        private final int pending;
+
+        Status(int version, String description, Date installedOn, int pending) {
+            this.version = version;
+            this.description = description;
+            this.installedOn = installedOn;
+            this.pending = pending;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Date getInstalledOn() {
+            return installedOn;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+    }
+
+    private static class Script {
+        final int version;
+        final String description;
+        final String sql;
+        final long checksum;
+
+        Script(int version, String description, String sql) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            CRC32 crc = new CRC32();
+            crc.update(sql.replace("\r\n", "\n").getBytes(UTF8));
+            this.checksum = crc.getValue();
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package se.gokopen.dao;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.Work;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,27 +27,143 @@ import se.gokopen.model.ScoreImpl;
 @Transactional
 public class ScoreDAO {
 
+	private static final String INSERT_SCORE = "insert into score (fk_patrol, fk_station, scorepoint, stylepoint, clientkey) values (?, ?, ?, ?, ?)";
+	// Den unika nyckeln på (fk_patrol, fk_station), se V3__index_plan.sql
+	private static final String UNIQUE_PATROL_STATION = "uq_score_patrol_station";
+	private static final String ADD_PATROL_TOTALS = "update patrol set scorepoint=scorepoint+?, stylepoint=stylepoint+?, total=total+?, reportedstations=reportedstations+1 where patrolid=?";
+
 	@Autowired
     private SessionFactory sessionFactory;
 	
+	@Transactional(rollbackFor=ScoreNotSavedException.class)
 	public void save (ScoreImpl score) throws ScoreNotSavedException{
-		sessionFactory.getCurrentSession().saveOrUpdate(score);
+		Object[] old = null;
+		if(score.getScoreId()!=null && score.getScoreId()!=0){
+			old = getPointsForScore(score.getScoreId());
+		}
+		try{
+			sessionFactory.getCurrentSession().saveOrUpdate(score);
+			sessionFactory.getCurrentSession().flush();
+		}catch(ConstraintViolationException e){
+			if(!isDuplicateScore(e)){
+				throw e;
+			}
+			// En annan kontrollant hann före
+			throw new ScoreNotSavedException("Det finns redan poäng registrerat för denna patrull på denna kontroll.");
+		}
+		Integer patrolId = score.getPatrol().getPatrolId();
+		if(old==null){
+			updatePatrolTotals(patrolId, score.getScorePoint(), score.getStylePoint(), 1);
+		}else if(patrolId.equals(old[2])){
+			updatePatrolTotals(patrolId, score.getScorePoint() - (Integer) old[0], score.getStylePoint() - (Integer) old[1], 0);
+		}else{
+			updatePatrolTotals((Integer) old[2], -(Integer) old[0], -(Integer) old[1], -1);
+			updatePatrolTotals(patrolId, score.getScorePoint(), score.getStylePoint(), 1);
+		}
 	}
  
+	/**
+	 * Sparar nya poäng och uppdaterar patrullernas summor med JDBC-batchar, två
+	 * rundresor till databasen oavsett antal rader.
+	 */
+	public void saveNewScores(final List<ScoreImpl> scores) throws ScoreNotSavedException{
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		try{
+			session.doWork(new Work(){
+				@Override
+				public void execute(Connection connection) throws SQLException{
+					PreparedStatement insert = connection.prepareStatement(INSERT_SCORE, Statement.RETURN_GENERATED_KEYS);
+					try{
+						for(ScoreImpl score:scores){
+							insert.setInt(1, score.getPatrol().getPatrolId());
+							insert.setInt(2, score.getStation().getStationId());
+							insert.setInt(3, score.getScorePoint());
+							insert.setInt(4, score.getStylePoint());
+							if(score.getClientKey()==null){
+								insert.setNull(5, Types.VARCHAR);
+							}else{
+								insert.setString(5, score.getClientKey());
+							}
+							insert.addBatch();
+						}
+						insert.executeBatch();
+						ResultSet keys = insert.getGeneratedKeys();
+						try{
+							Iterator<ScoreImpl> itt = scores.iterator();
+							while(keys.next() && itt.hasNext()){
+								itt.next().setScoreId(keys.getInt(1));
+							}
+						}finally{
+							keys.close();
+						}
+					}finally{
+						insert.close();
+					}
+					PreparedStatement totals = connection.prepareStatement(ADD_PATROL_TOTALS);
+					try{
+						for(ScoreImpl score:scores){
+							totals.setInt(1, score.getScorePoint());
+							totals.setInt(2, score.getStylePoint());
+							totals.setInt(3, score.getScorePoint() + score.getStylePoint());
+							totals.setInt(4, score.getPatrol().getPatrolId());
+							totals.addBatch();
+						}
+						totals.executeBatch();
+					}finally{
+						totals.close();
+					}
+				}
+			});
+		}catch(ConstraintViolationException e){
+			if(!isDuplicateScore(e)){
+				throw e;
+			}
+			throw new ScoreNotSavedException("Det finns redan poäng registrerat för någon av patrullerna på denna kontroll.");
+		}
+	}
+
+	/**
+	 * Om felet gäller en poäng som redan finns för patrullen på kontrollen. Andra
+	 * fel, t.ex. att patrullen eller kontrollen tagits bort samtidigt, är inte
+	 * dubbletter. MySQL anger nyckeln som den heter (eller som score.namn) och
+	 * H2 med versaler och ett tillägg, därför jämförs bara delen.
+	 */
+	private static boolean isDuplicateScore(ConstraintViolationException e){
+		return e.getConstraintName()!=null && e.getConstraintName().toLowerCase().contains(UNIQUE_PATROL_STATION);
+	}
+
+	/**
+	 * Poäng som redan har sparats med någon av nycklarna, med patrull och
+	 * kontroll i samma fråga.
+	 */
 	@SuppressWarnings("unchecked")
+	public List<ScoreImpl> getScoresByClientKeys(Collection<String> clientKeys){
+		if(clientKeys.isEmpty()){
+			return new ArrayList<ScoreImpl>();
+		}
+		return sessionFactory.getCurrentSession().createQuery("select score from ScoreImpl score join fetch score.patrol patr left join fetch patr.track join fetch score.station where score.clientKey in (:keys)")
+				.setParameterList("keys", clientKeys)
+				.list();
+	}
+
 	public ScoreImpl getById(Integer id) throws ScoreNotFoundException{
 		ScoreImpl score = null;
-		
-		List<ScoreImpl> scores = (List<ScoreImpl>) sessionFactory.getCurrentSession().createQuery("from ScoreImpl score where score.scoreId=?").setParameter(0, id).list();
-		if (scores==null || scores.isEmpty() || scores.size()>1){
+		if (id!=null){
+			score = (ScoreImpl) sessionFactory.getCurrentSession().get(ScoreImpl.class, id);
+		}
+		if (score==null){
 			throw new ScoreNotFoundException("Hittar inte poäng med id: " + id);
 		}
-		score = scores.get(0);
 		return score;
 	}
 	
 	public void delete (ScoreImpl score) throws ScoreNotFoundException{
+		Object[] old = getPointsForScore(score.getScoreId());
 		sessionFactory.getCurrentSession().delete(score);
+		if(old!=null){
+			updatePatrolTotals((Integer) old[2], -(Integer) old[0], -(Integer) old[1], -1);
+		}
 	}
 	
 	public void deleteById(Integer id) throws ScoreNotFoundException{
@@ -48,6 +177,16 @@ public class ScoreDAO {
 		return scores;
 	}
 	
+	/**
+	 * Strömmar alla poäng sorterade på klass, patrull och kontroll. Raderna är
+	 * {klass, patrullid, patrull, kår, kontrollnummer, kontroll, poäng, stilpoäng}.
+	 */
+	public void scrollScores(RowHandler handler) throws IOException{
+		ScrollingQuery.forEachRow(sessionFactory, sessionFactory.getCurrentSession().createQuery("select track.trackName, patrol.patrolId, patrol.patrolName, patrol.troop, station.stationNumber, station.stationName, score.scorePoint, score.stylePoint "
+				+ "from ScoreImpl score join score.patrol patrol join score.station station left join patrol.track track "
+				+ "order by track.trackName asc, patrol.patrolName asc, patrol.patrolId asc, station.stationNumber asc"), handler);
+	}
+	
 	@SuppressWarnings("unchecked")
 	public List<ScoreImpl> getAllScoresByPatrol(PatrolImpl patrol){
 		List<ScoreImpl> scores = sessionFactory.getCurrentSession().createQuery("from ScoreImpl as score where score.fk_patrol=? order by score.fk_station").setParameter(0, patrol.getPatrolId()).list();
@@ -60,6 +199,12 @@ public class ScoreDAO {
 		return scores;
 	}
 	
+	@SuppressWarnings("unchecked")
+	public List<Integer> getPatrolIdsWithScoreOnStation(Integer stationId){
+		List<Integer> patrolIds = sessionFactory.getCurrentSession().createQuery("select score.patrol.patrolId from ScoreImpl as score where score.station.stationId=:stationid").setParameter("stationid", stationId).list();
+		return patrolIds;
+	}
+
 	@SuppressWarnings("unchecked")
     public ScoreImpl getScoreForPatrolOnStation(Integer patrolId, Integer stationId) throws ScoreNotFoundException{
 	    List<ScoreImpl> scores = sessionFactory.getCurrentSession().createQuery("from ScoreImpl as score where score.patrol.patrolId= :patrolid and score.station.stationId=:stationid").setParameter("patrolid", patrolId).setParameter("stationid",stationId).list();
@@ -68,4 +213,22 @@ public class ScoreDAO {
 	    }
 	    return scores.get(0);
 	}
+
+	private Object[] getPointsForScore(Integer scoreId){
+		return (Object[]) sessionFactory.getCurrentSession().createQuery("select score.scorePoint, score.stylePoint, score.patrol.patrolId from ScoreImpl score where score.scoreId=:scoreid").setParameter("scoreid", scoreId).uniqueResult();
+	}
+
+	private void updatePatrolTotals(Integer patrolId, int scorePoint, int stylePoint, int stations){
+		if(patrolId==null){
+			return;
+		}
+		sessionFactory.getCurrentSession().createSQLQuery("update patrol set scorepoint=scorepoint+:scorepoint, stylepoint=stylepoint+:stylepoint, total=total+:total, reportedstations=reportedstations+:stations where patrolid=:patrolid")
+				.addSynchronizedEntityClass(PatrolImpl.class)
+				.setParameter("scorepoint", scorePoint)
+				.setParameter("stylepoint", stylePoint)
+				.setParameter("total", scorePoint + stylePoint)
+				.setParameter("stations", stations)
+				.setParameter("patrolid", patrolId)
+				.executeUpdate();
+	}
 }
@@ -0,0 +1,45 @@
+package se.gokopen.dao;
+
+import java.io.IOException;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Går igenom en fråga med en framåtriktad markör och lämnar över raderna en
+ * och en. Raderna ska vara skalära värden så att inget hamnar i sessionen.
+ */
+class ScrollingQuery {
+
+	private static final int FETCH_SIZE = 500;
+
+	private ScrollingQuery(){
+
+	}
+
+	static void forEachRow(SessionFactory sessionFactory, Query query, RowHandler handler) throws IOException{
+		query.setReadOnly(true);
+		query.setFetchSize(fetchSize(sessionFactory));
+		ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY);
+		try{
+			while(rows.next()){
+				handler.handleRow(rows.get());
+			}
+		}finally{
+			rows.close();
+		}
+	}
+
+	private static int fetchSize(SessionFactory sessionFactory){
+		// MySQL Connector/J läser annars in hela resultatet innan första raden
+		// lämnas över, och strömmar bara med fetch size Integer.MIN_VALUE
+		if(((SessionFactoryImplementor) sessionFactory).getDialect() instanceof MySQLDialect){
+			return Integer.MIN_VALUE;
+		}
+		return FETCH_SIZE;
+	}
+}
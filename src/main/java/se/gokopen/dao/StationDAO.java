@@ -27,15 +27,14 @@ public class StationDAO {
 		delete(station);
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Station getById(Integer id) throws StationNotFoundException{
 		Station station = null;
-		
-		List<Station> stations = (List<Station>) sessionFactory.getCurrentSession().createQuery("from Station station where station.stationId=?").setParameter(0, id).list();
-		if (stations==null || stations.isEmpty() || stations.size()>1){
+		if (id!=null){
+			station = (Station) sessionFactory.getCurrentSession().get(Station.class, id);
+		}
+		if (station==null){
 			throw new StationNotFoundException("Hittar inte kontrollen med id: " + id);
 		}
-		station = stations.get(0);
 		return station;
 	}
 	
@@ -22,15 +22,14 @@ public class TrackDAO {
 		sessionFactory.getCurrentSession().delete(track);
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Track getById(Integer id) throws TrackNotFoundException{
 		Track track = null;
-		
-		List<Track> tracks = (List<Track>) sessionFactory.getCurrentSession().createQuery("from Track track where track.trackId=?").setParameter(0, id).list();
-		if (tracks==null || tracks.isEmpty() || tracks.size()>1){
+		if (id!=null){
+			track = (Track) sessionFactory.getCurrentSession().get(Track.class, id);
+		}
+		if (track==null){
 			throw new TrackNotFoundException("Hittar inte spåret med id: " + id);
 		}
-		track = tracks.get(0);
 		return track;
 	}
 	
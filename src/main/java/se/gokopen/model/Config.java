@@ -11,6 +11,7 @@ import javax.persistence.Table;
 public class Config {
     private Integer id;
     private String name;
+    private String rankingOrder;
     
     public Config(){
         
@@ -36,5 +37,18 @@ public class Config {
         this.name = name;
     }
 
+    /**
+     * Kommaseparerade kriterier för resultatlistan, se
+     * se.gokopen.service.Ranking. Tomt ger standardordningen.
+     */
+    @Column (name="rankingorder", length=200)
+    public String getRankingOrder() {
+        return rankingOrder;
+    }
+
+    public void setRankingOrder(String rankingOrder) {
+        this.rankingOrder = rankingOrder;
+    }
+
   
 }
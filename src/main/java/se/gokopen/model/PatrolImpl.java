@@ -10,6 +10,7 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.JoinColumn;
@@ -20,7 +21,9 @@ import javax.persistence.Transient;
 import org.hibernate.annotations.Cascade;
 
 @Entity
-@Table(name="patrol")
+@Table(name="patrol", indexes={@Index(name="idx_patrol_name", columnList="patrolname,patrolid"),
+		@Index(name="idx_patrol_track_name", columnList="fk_track,patrolname,patrolid"),
+		@Index(name="idx_patrol_troop_name", columnList="troop,patrolname,patrolid")})
 public class PatrolImpl implements Comparable<PatrolImpl> {
 	private Integer patrolId;
 	private String patrolName;
@@ -32,6 +35,10 @@ public class PatrolImpl implements Comparable<PatrolImpl> {
 	private String note;
 	private Set <ScoreImpl> scores = new LinkedHashSet<ScoreImpl>();
 	private String leaderContact;
+	private int sumScorePoint;
+	private int sumStylePoint;
+	private int sumTotal;
+	private int sumReportedStations;
 	
 	
 	public PatrolImpl(){
@@ -143,7 +150,7 @@ public class PatrolImpl implements Comparable<PatrolImpl> {
 		this.note = note;
 	}
 
-	@OneToMany(cascade=CascadeType.ALL, fetch=FetchType.EAGER, orphanRemoval = true)
+	@OneToMany(cascade=CascadeType.ALL, fetch=FetchType.LAZY, orphanRemoval = true)
 	 @Cascade(org.hibernate.annotations.CascadeType.DELETE)
 	@OrderBy("station asc")
 	@JoinColumn(name="fk_patrol")
@@ -177,6 +184,47 @@ public class PatrolImpl implements Comparable<PatrolImpl> {
 		this.leaderContact = leaderContact;
 	}
 	
+	/*
+	 * Summor som underhålls av ScoreDAO i samma transaktion som poängen sparas
+	 * eller tas bort. Skrivs aldrig av Hibernate vid save av patrullen så att
+	 * ett formulär utan dessa fält inte nollställer dem.
+	 */
+	@Column(name="scorepoint", insertable=false, updatable=false, columnDefinition="int default 0")
+	public int getSumScorePoint() {
+		return sumScorePoint;
+	}
+
+	public void setSumScorePoint(int sumScorePoint) {
+		this.sumScorePoint = sumScorePoint;
+	}
+
+	@Column(name="stylepoint", insertable=false, updatable=false, columnDefinition="int default 0")
+	public int getSumStylePoint() {
+		return sumStylePoint;
+	}
+
+	public void setSumStylePoint(int sumStylePoint) {
+		this.sumStylePoint = sumStylePoint;
+	}
+
+	@Column(name="total", insertable=false, updatable=false, columnDefinition="int default 0")
+	public int getSumTotal() {
+		return sumTotal;
+	}
+
+	public void setSumTotal(int sumTotal) {
+		this.sumTotal = sumTotal;
+	}
+
+	@Column(name="reportedstations", insertable=false, updatable=false, columnDefinition="int default 0")
+	public int getSumReportedStations() {
+		return sumReportedStations;
+	}
+
+	public void setSumReportedStations(int sumReportedStations) {
+		this.sumReportedStations = sumReportedStations;
+	}
+	
 	@Override
 	public String toString(){
 		return String.valueOf(patrolId);
@@ -234,7 +282,7 @@ public class PatrolImpl implements Comparable<PatrolImpl> {
 		if (comp==0){
 			comp = p.getTotalScorePoint().compareTo(getTotalScorePoint());
 		}
-		//här borde finnas logik för att hitta flest högpoänger
+		//resultatlistorna sorteras med se.gokopen.service.Ranking som även kan räkna flest maxpoäng
 		return comp;
 	}
 }
@@ -0,0 +1,34 @@
+package se.gokopen.model;
+
+import java.util.List;
+
+/**
+ * En sida av patrullistan. Nästa sida börjar efter den sista patrullen på den
+ * här, se getLast().
+ */
+public class PatrolPage {
+    public static final int DEFAULT_SIZE = 50;
+
+    private final List<PatrolSummary> patrols;
+    private final boolean more;
+
+    public PatrolPage(List<PatrolSummary> patrols, boolean more){
+        this.patrols = patrols;
+        this.more = more;
+    }
+
+    public List<PatrolSummary> getPatrols() {
+        return patrols;
+    }
+
+    /**
+     * Om det finns fler patruller efter den här sidan.
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    public PatrolSummary getLast() {
+        return patrols.isEmpty() ? null : patrols.get(patrols.size() - 1);
+    }
+}
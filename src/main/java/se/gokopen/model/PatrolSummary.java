@@ -0,0 +1,69 @@
+package se.gokopen.model;
+
+/**
+ * Kompakt rad för patrullistorna. Summorna räknas i databasen så att inga
+ * poängrader eller kontroller behöver laddas för att visa listan.
+ */
+public class PatrolSummary {
+    private final Integer patrolId;
+    private final String patrolName;
+    private final String troop;
+    private final String trackName;
+    private final String leaderContact;
+    private final long totalScorePoint;
+    private final long totalStylePoint;
+    private final long totalReportedStations;
+
+    public PatrolSummary(Integer patrolId, String patrolName, String troop, String trackName, String leaderContact,
+            long totalScorePoint, long totalStylePoint, long totalReportedStations){
+        this.patrolId = patrolId;
+        this.patrolName = patrolName;
+        this.troop = troop;
+        this.trackName = trackName;
+        this.leaderContact = leaderContact;
+        this.totalScorePoint = totalScorePoint;
+        this.totalStylePoint = totalStylePoint;
+        this.totalReportedStations = totalReportedStations;
+    }
+
+    public Integer getPatrolId() {
+        return patrolId;
+    }
+
+    public String getPatrolName() {
+        return patrolName;
+    }
+
+    public String getTroop() {
+        return troop;
+    }
+
+    public String getTrackName() {
+        return trackName;
+    }
+
+    public String getLeaderContact() {
+        return leaderContact;
+    }
+
+    public long getTotalScorePoint() {
+        return totalScorePoint;
+    }
+
+    public long getTotalStylePoint() {
+        return totalStylePoint;
+    }
+
+    public long getTotalReportedStations() {
+        return totalReportedStations;
+    }
+
+    public long getTotalScore() {
+        return totalScorePoint + totalStylePoint;
+    }
+
+    @Override
+    public String toString(){
+        return String.valueOf(patrolId);
+    }
+}
@@ -5,17 +5,23 @@ import javax.persistence.JoinColumn;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 @Entity
-@Table(name="score")
+@Table(name="score",
+	uniqueConstraints={@UniqueConstraint(name="uq_score_patrol_station", columnNames={"fk_patrol","fk_station"}),
+		@UniqueConstraint(name="uq_score_clientkey", columnNames={"clientkey"})},
+	indexes={@Index(name="idx_score_station_patrol", columnList="fk_station,fk_patrol")})
 public class ScoreImpl {
 	private Integer scoreId = null;
 	private Station station;
 	private int scorePoint;
 	private int stylePoint;
 	private PatrolImpl patrol;
+	private String clientKey;
 	
 
 	public ScoreImpl(){
@@ -75,4 +81,16 @@ public class ScoreImpl {
 	public PatrolImpl getPatrol() {
 		return patrol;
 	}
+
+	/**
+	 * Nyckel från kontrollens enhet när poängen har synkats, se ScoreService.syncScores.
+	 */
+	@Column(name="clientkey", length=64)
+	public String getClientKey() {
+		return clientKey;
+	}
+
+	public void setClientKey(String clientKey) {
+		this.clientKey = clientKey;
+	}
 }
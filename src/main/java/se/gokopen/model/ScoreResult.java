@@ -0,0 +1,42 @@
+package se.gokopen.model;
+
+/**
+ * Utfall för en rad när flera poäng sparas på en gång.
+ */
+public class ScoreResult {
+    private final ScoreImpl score;
+    private final boolean saved;
+    private final String errorMsg;
+    private final boolean alreadySaved;
+
+    public ScoreResult(ScoreImpl score, boolean saved, String errorMsg){
+        this(score, saved, errorMsg, false);
+    }
+
+    /**
+     * @param alreadySaved poängen hade sparats av ett tidigare försök med
+     *            samma nyckel, score är då den sparade poängen
+     */
+    public ScoreResult(ScoreImpl score, boolean saved, String errorMsg, boolean alreadySaved){
+        this.score = score;
+        this.saved = saved;
+        this.errorMsg = errorMsg;
+        this.alreadySaved = alreadySaved;
+    }
+
+    public ScoreImpl getScore() {
+        return score;
+    }
+
+    public boolean isSaved() {
+        return saved;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+    public boolean isAlreadySaved() {
+        return alreadySaved;
+    }
+}
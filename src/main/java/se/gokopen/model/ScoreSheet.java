@@ -0,0 +1,33 @@
+package se.gokopen.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formulär för att rapportera flera patrullers poäng på en kontroll i ett
+ * inskick, t.ex. från ett papper som fyllts i ute på kontrollen.
+ */
+public class ScoreSheet {
+    private Station station;
+    private List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+
+    public ScoreSheet(){
+
+    }
+
+    public Station getStation() {
+        return station;
+    }
+
+    public void setStation(Station station) {
+        this.station = station;
+    }
+
+    public List<ScoreImpl> getScores() {
+        return scores;
+    }
+
+    public void setScores(List<ScoreImpl> scores) {
+        this.scores = scores;
+    }
+}
@@ -0,0 +1,36 @@
+package se.gokopen.model;
+
+/**
+ * En poäng från en kontrolls kö som skickas när enheten har täckning igen.
+ * Nyckeln skapas av enheten och gör att samma poäng kan skickas flera gånger
+ * utan att sparas dubbelt.
+ */
+public class ScoreUpload {
+    private final String clientKey;
+    private final Integer patrolId;
+    private final int scorePoint;
+    private final int stylePoint;
+
+    public ScoreUpload(String clientKey, Integer patrolId, int scorePoint, int stylePoint){
+        this.clientKey = clientKey;
+        this.patrolId = patrolId;
+        this.scorePoint = scorePoint;
+        this.stylePoint = stylePoint;
+    }
+
+    public String getClientKey() {
+        return clientKey;
+    }
+
+    public Integer getPatrolId() {
+        return patrolId;
+    }
+
+    public int getScorePoint() {
+        return scorePoint;
+    }
+
+    public int getStylePoint() {
+        return stylePoint;
+    }
+}
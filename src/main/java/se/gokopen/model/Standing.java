@@ -0,0 +1,77 @@
+package se.gokopen.model;
+
+/**
+ * Rad i resultatlistan för en klass. Oföränderlig ögonblicksbild av en
+ * patrulls summerade poäng, se {@link se.gokopen.service.StandingsService}.
+ */
+public class Standing {
+    private final Integer patrolId;
+    private final String patrolName;
+    private final String troop;
+    private final int totalScorePoint;
+    private final int totalStylePoint;
+    private final int totalReportedStations;
+    private final int maxScoreStations;
+    private final long rankKey;
+
+    public Standing(Integer patrolId, String patrolName, String troop, int totalScorePoint, int totalStylePoint, int totalReportedStations){
+        this(patrolId, patrolName, troop, totalScorePoint, totalStylePoint, totalReportedStations, 0, 0);
+    }
+
+    /**
+     * @param rankKey sorteringsnyckel från {@link se.gokopen.service.Ranking},
+     *            större är bättre placering
+     */
+    public Standing(Integer patrolId, String patrolName, String troop, int totalScorePoint, int totalStylePoint, int totalReportedStations,
+            int maxScoreStations, long rankKey){
+        this.patrolId = patrolId;
+        this.patrolName = patrolName;
+        this.troop = troop;
+        this.totalScorePoint = totalScorePoint;
+        this.totalStylePoint = totalStylePoint;
+        this.totalReportedStations = totalReportedStations;
+        this.maxScoreStations = maxScoreStations;
+        this.rankKey = rankKey;
+    }
+
+    public Integer getPatrolId() {
+        return patrolId;
+    }
+
+    public String getPatrolName() {
+        return patrolName;
+    }
+
+    public String getTroop() {
+        return troop;
+    }
+
+    public int getTotalScorePoint() {
+        return totalScorePoint;
+    }
+
+    public int getTotalStylePoint() {
+        return totalStylePoint;
+    }
+
+    public int getTotalReportedStations() {
+        return totalReportedStations;
+    }
+
+    public int getMaxScoreStations() {
+        return maxScoreStations;
+    }
+
+    public long getRankKey() {
+        return rankKey;
+    }
+
+    public int getTotalScore() {
+        return totalScorePoint + totalStylePoint;
+    }
+
+    @Override
+    public String toString(){
+        return String.valueOf(patrolId);
+    }
+}
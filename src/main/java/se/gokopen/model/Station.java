@@ -27,6 +27,22 @@ public class Station {
 		
 	}
 
+	/**
+	 * En kopia som kan ändras utan att originalet påverkas.
+	 */
+	public Station(Station other){
+		this.stationId = other.stationId;
+		this.stationNumber = other.stationNumber;
+		this.stationName = other.stationName;
+		this.minScore = other.minScore;
+		this.maxScore = other.maxScore;
+		this.minStyleScore = other.minStyleScore;
+		this.maxStyleScore = other.maxStyleScore;
+		this.stationContact = other.stationContact;
+		this.stationPhonenumber = other.stationPhonenumber;
+		this.stationUser = other.stationUser;
+	}
+
 	@Id
 	@GeneratedValue
 	@Column(name="stationid", nullable=false)
@@ -17,6 +17,14 @@ public class Track {
 		
 	}
 
+	/**
+	 * En kopia som kan ändras utan att originalet påverkas.
+	 */
+	public Track(Track other){
+		this.trackId = other.trackId;
+		this.trackName = other.trackName;
+	}
+
 	@Id
 	@GeneratedValue
 	@Column(name="trackid", nullable=false)
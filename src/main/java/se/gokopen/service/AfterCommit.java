@@ -0,0 +1,29 @@
+package se.gokopen.service;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Kör en ändring av minnescachar först när transaktionen har gått igenom, så
+ * att en rollback inte lämnar kvar data som aldrig sparades. Utanför en
+ * transaktion körs ändringen direkt.
+ */
+class AfterCommit {
+
+    private AfterCommit() {
+
+    }
+
+    static void run(final Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package se.gokopen.service;
+
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+/**
+ * Inloggningsuppgifter som läses från users-tabellen en gång och sedan
+ * hämtas ur minnet. Måste tömmas när en användare sparas eller tas bort.
+ */
+public interface CachedUserDetailsService extends UserDetailsService {
+    public void evict(String username);
+    public void evictAll();
+    public long getHitCount();
+    public long getMissCount();
+    public int getCachedUserCount();
+}
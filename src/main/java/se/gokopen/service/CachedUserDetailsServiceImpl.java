@@ -0,0 +1,122 @@
+package se.gokopen.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import se.gokopen.dao.UserDao;
+import se.gokopen.dao.UserNotFoundException;
+import se.gokopen.model.User;
+
+/**
+ * Ersätter jdbc-user-service så att en inloggning inte kostar två frågor mot
+ * users-tabellen. Bönan deklareras i spring-security.xml och inte med
+ * {@code @Service}, annars skulle servlet-kontexten få en egen kopia av
+ * cachen som UserController tömde medan inloggningen läste en annan.
+ */
+public class CachedUserDetailsServiceImpl implements CachedUserDetailsService {
+
+    @Autowired
+    private UserDao userDao;
+
+    private final ConcurrentMap<String, CachedUser> users = new ConcurrentHashMap<String, CachedUser>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        String key = key(username);
+        CachedUser cached = users.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            long evictionsBefore = evictions.get();
+            cached = load(username);
+            synchronized (evictions) {
+                // Tömdes cachen under tiden kan det vi läste redan vara inaktuellt
+                if (evictions.get() == evictionsBefore) {
+                    users.put(key, cached);
+                }
+            }
+        }
+        // Spring Security nollar lösenordet i det objekt som returneras efter
+        // inloggningen, därför skapas ett nytt varje gång
+        return new org.springframework.security.core.userdetails.User(username, cached.password, cached.enabled, true, true, true,
+                cached.authorities);
+    }
+
+    private CachedUser load(String username) {
+        User user;
+        try {
+            user = userDao.getUserByName(username);
+        } catch (UserNotFoundException e) {
+            throw new UsernameNotFoundException("Hittar inte användaren " + username, e);
+        }
+        if (user.getRole() == null || user.getRole().trim().isEmpty()) {
+            throw new UsernameNotFoundException("Användaren " + username + " har ingen roll");
+        }
+        return new CachedUser(user.getPassword(), user.isEnabled(), user.getRole().trim());
+    }
+
+    @Override
+    public void evict(String username) {
+        if (username == null) {
+            return;
+        }
+        synchronized (evictions) {
+            evictions.incrementAndGet();
+            users.remove(key(username));
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (evictions) {
+            evictions.incrementAndGet();
+            users.clear();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public int getCachedUserCount() {
+        return users.size();
+    }
+
+    // users.username jämförs utan hänsyn till skiftläge i MySQL
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class CachedUser {
+        private final String password;
+        private final boolean enabled;
+        private final List<GrantedAuthority> authorities;
+
+        CachedUser(String password, boolean enabled, String role) {
+            this.password = password;
+            this.enabled = enabled;
+            this.authorities = Collections.<GrantedAuthority> singletonList(new SimpleGrantedAuthority(role));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package se.gokopen.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ändringsnummer per klass som väntande anrop kan vänta på. Numren börjar på
+ * tiden då tjänsten startade, så ett nummer som en skärm fick före en omstart
+ * är alltid lägre än de nya och ger ett direkt svar.
+ */
+class ChangeVersions {
+
+    private final long start = System.currentTimeMillis();
+    private final Map<Integer, Long> versions = new HashMap<Integer, Long>();
+
+    synchronized long current(Integer trackId) {
+        Long version = versions.get(trackId);
+        if (version == null) {
+            version = start;
+            versions.put(trackId, version);
+        }
+        return version;
+    }
+
+    synchronized void changed(Integer trackId) {
+        versions.put(trackId, current(trackId) + 1);
+        notifyAll();
+    }
+
+    synchronized void changedAll() {
+        for (Map.Entry<Integer, Long> entry : versions.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Väntar tills klassens nummer är ett annat än since eller tiden gått ut.
+     * Returnerar numret som gäller när anropet återvänder.
+     */
+    synchronized long await(Integer trackId, long since, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long version = current(trackId);
+        while (version == since) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+            wait(left);
+            version = current(trackId);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,173 @@
+package se.gokopen.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import se.gokopen.dao.PatrolNotSavedException;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.dao.StationNotSavedException;
+import se.gokopen.dao.TrackNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+import se.gokopen.model.User;
+
+/**
+ * Fyller en tom databas med en påhittad tävling inför lasttester: klasser,
+ * kontroller med en inloggning var, patruller och en andel av alla poäng.
+ * Allt sparas genom tjänsterna som när tävlingen administreras på riktigt.
+ * Samma frö ger samma tävling. Används av profilen embedded, se
+ * embedded.properties.
+ */
+public class CompetitionGenerator {
+
+    private static final Log log = LogFactory.getLog(CompetitionGenerator.class);
+
+    @Autowired
+    private TrackService trackService;
+    @Autowired
+    private StationService stationService;
+    @Autowired
+    private PatrolService patrolService;
+    @Autowired
+    private ScoreService scoreService;
+    @Autowired
+    private UserService userService;
+
+    private int tracks = 4;
+    private int stations = 30;
+    private int patrols = 3000;
+    private double scoredShare = 0.5;
+    private long seed = 1;
+    private int minScore = 0;
+    private int maxScore = 10;
+    private int minStyleScore = 0;
+    private int maxStyleScore = 5;
+
+    /**
+     * Gör ingenting om det redan finns klasser, så att en databas som
+     * delas av flera Spring-kontexter bara fylls en gång.
+     *
+     * @return antalet poäng som sparades
+     */
+    public int generate() throws TrackNotSavedException, StationNotSavedException, PatrolNotSavedException, ScoreNotSavedException {
+        if (!trackService.getAllTracks().isEmpty()) {
+            log.info("Databasen har redan klasser, ingen tävling genereras");
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+
+        List<Track> savedTracks = new ArrayList<Track>();
+        for (int t = 1; t <= tracks; t++) {
+            Track track = new Track();
+            track.setTrackName("Klass " + t);
+            trackService.saveTrack(track);
+            savedTracks.add(track);
+        }
+
+        List<Station> savedStations = new ArrayList<Station>();
+        for (int s = 1; s <= stations; s++) {
+            String username = stationUser(s);
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword(username);
+            user.setRole("ROLE_USER");
+            userService.saveUser(user);
+
+            Station station = new Station();
+            station.setStationNumber(s);
+            station.setStationName("Kontroll " + s);
+            station.setMinScore(minScore);
+            station.setMaxScore(maxScore);
+            station.setMinStyleScore(minStyleScore);
+            station.setMaxStyleScore(maxStyleScore);
+            station.setStationUser(username);
+            stationService.saveStation(station);
+            savedStations.add(station);
+        }
+
+        List<PatrolImpl> savedPatrols = new ArrayList<PatrolImpl>();
+        for (int p = 1; p <= patrols; p++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("Patrull " + p);
+            patrol.setTroop("Kår " + (p % 50 + 1));
+            patrol.setTrack(savedTracks.get(p % savedTracks.size()));
+            patrolService.savePatrol(patrol);
+            savedPatrols.add(patrol);
+        }
+
+        int saved = 0;
+        for (Station station : savedStations) {
+            List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+            for (PatrolImpl patrol : savedPatrols) {
+                if (random.nextDouble() >= scoredShare) {
+                    continue;
+                }
+                ScoreImpl score = new ScoreImpl();
+                score.setPatrol(patrol);
+                score.setStation(station);
+                score.setScorePoint(minScore + random.nextInt(maxScore - minScore + 1));
+                score.setStylePoint(minStyleScore + random.nextInt(maxStyleScore - minStyleScore + 1));
+                scores.add(score);
+            }
+            if (!scores.isEmpty()) {
+                scoreService.saveScores(scores);
+                saved += scores.size();
+            }
+        }
+        log.info("Genererade " + tracks + " klasser, " + stations + " kontroller, " + patrols + " patruller och "
+                + saved + " poäng på " + (System.currentTimeMillis() - start) + " ms");
+        return saved;
+    }
+
+    /**
+     * Inloggningen för kontroll nummer station, med lösenordet lika med
+     * användarnamnet.
+     */
+    public static String stationUser(int station) {
+        return "kontroll" + station;
+    }
+
+    public void setTracks(int tracks) {
+        this.tracks = tracks;
+    }
+
+    public void setStations(int stations) {
+        this.stations = stations;
+    }
+
+    public void setPatrols(int patrols) {
+        this.patrols = patrols;
+    }
+
+    public void setScoredShare(double scoredShare) {
+        this.scoredShare = scoredShare;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setMinScore(int minScore) {
+        this.minScore = minScore;
+    }
+
+    public void setMaxScore(int maxScore) {
+        this.maxScore = maxScore;
+    }
+
+    public void setMinStyleScore(int minStyleScore) {
+        this.minStyleScore = minStyleScore;
+    }
+
+    public void setMaxStyleScore(int maxStyleScore) {
+        this.maxStyleScore = maxStyleScore;
+    }
+}
@@ -0,0 +1,13 @@
+package se.gokopen.service;
+
+import se.gokopen.model.Config;
+
+/**
+ * Bönor som implementerar det här interfacet anropas när inställningarna har
+ * sparats, efter att transaktionen har gått igenom.
+ */
+public interface ConfigChangeListener {
+
+    public void configChanged(Config config);
+
+}
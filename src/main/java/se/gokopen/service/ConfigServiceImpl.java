@@ -1,26 +1,93 @@
 package se.gokopen.service;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import se.gokopen.dao.ConfigDAO;
 import se.gokopen.model.Config;
 
+/**
+ * Inställningarna läses in en gång när applikationen startar och byts sedan
+ * bara ut när de sparas. Finns ingen rad i tabellen används samma
+ * standardinställning tills någon sparar.
+ */
 @Service
-public class ConfigServiceImpl implements ConfigService {
+public class ConfigServiceImpl implements ConfigService, InitializingBean {
+
+    private static final Log log = LogFactory.getLog(ConfigServiceImpl.class);
 
     @Autowired ConfigDAO configDao;
-    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired(required = false)
+    private List<ConfigChangeListener> listeners = Collections.emptyList();
+
+    private final AtomicReference<Config> currentConfig = new AtomicReference<Config>();
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            currentConfig.compareAndSet(null, loadConfig());
+        } catch (RuntimeException e) {
+            log.warn("Kunde inte läsa inställningarna vid start, de läses vid första anropet i stället", e);
+        }
+    }
+
+    /**
+     * Läser bara databasen om inställningarna inte har lästs in än, så att
+     * anropen i övrigt inte behöver någon transaktion.
+     */
     @Override
-    @Transactional
     public Config getCurrentConfig(){
-        return configDao.getCurrentConfig();
+        Config config = currentConfig.get();
+        if(config==null){
+            config = loadConfig();
+            // Har någon hunnit spara under tiden gäller den sparade
+            if (!currentConfig.compareAndSet(null, config)) {
+                config = currentConfig.get();
+            }
+        }
+        return config;
     }
     
     @Override
     @Transactional
-    public void saveConfig(Config config){
+    public void saveConfig(final Config config){
         configDao.save(config);
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                currentConfig.set(config);
+                for (ConfigChangeListener listener : listeners) {
+                    try {
+                        listener.configChanged(config);
+                    } catch (RuntimeException e) {
+                        // Det som lyssnaren cachar stämmer inte längre med inställningarna
+                        log.error("Kunde inte meddela " + listener + " att inställningarna ändrats", e);
+                    }
+                }
+            }
+        });
+    }
+
+    private Config loadConfig() {
+        return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Config>() {
+            @Override
+            public Config doInTransaction(TransactionStatus status) {
+                return configDao.getCurrentConfig();
+            }
+        });
     }
 }
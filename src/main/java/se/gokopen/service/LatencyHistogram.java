@@ -0,0 +1,99 @@
+package se.gokopen.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Svarstider i fasta intervall, räknade utan lås så att mätningen inte blir
+ * en flaskhals när många rapporterar samtidigt. Percentilerna är intervallets
+ * övre gräns och alltså en uppskattning.
+ */
+public class LatencyHistogram {
+
+    // Övre gräns i millisekunder för varje intervall, sista intervallet saknar gräns
+    private static final long[] BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_MILLIS.length];
+    static {
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos, boolean failed) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    public long getP50Millis() {
+        return percentileMillis(0.50);
+    }
+
+    public long getP95Millis() {
+        return percentileMillis(0.95);
+    }
+
+    public long getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    /**
+     * Övre gränsen för intervallet där percentilen hamnar. Hamnar den i sista
+     * intervallet används den längsta uppmätta tiden.
+     */
+    public long percentileMillis(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_MILLIS[i];
+            }
+        }
+        return (long) Math.ceil(getMaxMillis());
+    }
+}
@@ -1,18 +1,26 @@
 package se.gokopen.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import se.gokopen.dao.PatrolNotFoundException;
 import se.gokopen.dao.PatrolNotSavedException;
 import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.PatrolPage;
+import se.gokopen.model.PatrolSummary;
 import se.gokopen.model.Track;
 
 public interface PatrolService {
 	public void savePatrol(PatrolImpl patrol) throws PatrolNotSavedException;
 	public List<PatrolImpl> getAllPatrols();
+	public List<PatrolSummary> getAllPatrolSummaries();
+	public PatrolPage getPatrolSummaryPage(Integer trackId, String troop, String afterName, Integer afterId, int pageSize);
+	public List<String> getAllTroops();
 	public void deletePatrol(PatrolImpl patrol) throws PatrolNotFoundException;
 	public void deletePatrolById(Integer id) throws PatrolNotFoundException;
 	public PatrolImpl getPatrolById(Integer id) throws PatrolNotFoundException;
+	public List<PatrolImpl> getPatrolsByIds(Collection<Integer> ids);
+	public PatrolImpl getPatrolWithScoresById(Integer id) throws PatrolNotFoundException;
 	public List<PatrolImpl> getAllPatrolsByTrackId(Integer trackId);
 	public List<PatrolImpl> getAllPatrolsByTrack(Track track);
 	public List<PatrolImpl> getAllPatrolsLeftOnStation(Integer stationId);
@@ -1,6 +1,7 @@
 package se.gokopen.service;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +12,8 @@ import se.gokopen.dao.PatrolDAO;
 import se.gokopen.dao.PatrolNotFoundException;
 import se.gokopen.dao.PatrolNotSavedException;
 import se.gokopen.model.PatrolImpl;
-import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.PatrolPage;
+import se.gokopen.model.PatrolSummary;
 import se.gokopen.model.Track;
 
 @Service
@@ -19,11 +21,49 @@ public class PatrolServiceImpl implements PatrolService {
 
 	@Autowired
 	private PatrolDAO patrolDao;
+	@Autowired
+	private StandingsService standingsService;
+	@Autowired
+	private ScoreCardService scoreCardService;
 	
 	@Override
 	@Transactional
 	public void savePatrol(PatrolImpl patrol) throws PatrolNotSavedException {
-		patrolDao.save(patrol);
+		PatrolImpl saved = patrol;
+		if (patrol.getPatrolId() != null) {
+			try {
+				saved = patrolDao.getById(patrol.getPatrolId());
+			} catch (PatrolNotFoundException e) {
+				throw new PatrolNotSavedException("Patrullen finns inte längre och kunde inte sparas");
+			}
+			//En patrull som byter klass ska också bort från den gamla klassens poängkort
+			scoreCardService.trackChanged(trackIdOf(saved));
+			copyPatrolFields(patrol, saved);
+		} else {
+			patrolDao.save(patrol);
+		}
+		standingsService.patrolSaved(saved);
+		scoreCardService.trackChanged(trackIdOf(saved));
+	}
+
+	/**
+	 * Formulärets fält flyttas till den inlästa patrullen, som sparas när
+	 * transaktionen avslutas. Poängen och summorna följer inte med formuläret
+	 * och lämnas orörda.
+	 */
+	private static void copyPatrolFields(PatrolImpl from, PatrolImpl to) {
+		to.setPatrolName(from.getPatrolName());
+		to.setTroop(from.getTroop());
+		to.setTrack(from.getTrack());
+		to.setStartTime(from.getStartTime());
+		to.setEndTime(from.getEndTime());
+		to.setMembers(from.getMembers());
+		to.setNote(from.getNote());
+		to.setLeaderContact(from.getLeaderContact());
+	}
+
+	private static Integer trackIdOf(PatrolImpl patrol) {
+		return patrol.getTrack() != null ? patrol.getTrack().getTrackId() : null;
 	}
 
 	@Override
@@ -32,17 +72,44 @@ public class PatrolServiceImpl implements PatrolService {
 		return patrolDao.getAllPatrols();
 	}
 
+	@Override
+	@Transactional
+	public List<PatrolSummary> getAllPatrolSummaries() {
+		return patrolDao.getAllPatrolSummaries();
+	}
+
+	@Override
+	@Transactional(readOnly=true)
+	public PatrolPage getPatrolSummaryPage(Integer trackId, String troop, String afterName, Integer afterId, int pageSize) {
+		// En extra rad avslöjar om det finns en sida till
+		List<PatrolSummary> patrols = patrolDao.getPatrolSummaryPage(trackId, troop, afterName, afterId, pageSize + 1);
+		if (patrols.size() > pageSize) {
+			return new PatrolPage(new ArrayList<PatrolSummary>(patrols.subList(0, pageSize)), true);
+		}
+		return new PatrolPage(patrols, false);
+	}
+
+	@Override
+	@Transactional(readOnly=true)
+	public List<String> getAllTroops() {
+		return patrolDao.getAllTroops();
+	}
+
 	@Override
 	@Transactional
 	public void deletePatrol(PatrolImpl patrol) throws PatrolNotFoundException {
+		scoreCardService.trackChanged(patrolDao.getTrackIdByPatrolId(patrol.getPatrolId()));
 		patrolDao.delete(patrol);
+		standingsService.patrolDeleted(patrol.getPatrolId());
 
 	}
 
 	@Override
 	@Transactional
 	public void deletePatrolById(Integer id) throws PatrolNotFoundException {
+		scoreCardService.trackChanged(patrolDao.getTrackIdByPatrolId(id));
 		patrolDao.deleteById(id);
+		standingsService.patrolDeleted(id);
 
 	}
 
@@ -51,6 +118,18 @@ public class PatrolServiceImpl implements PatrolService {
 	public PatrolImpl getPatrolById(Integer id) throws PatrolNotFoundException {
 		return patrolDao.getById(id);
 	}
+
+	@Override
+	@Transactional(readOnly=true)
+	public List<PatrolImpl> getPatrolsByIds(Collection<Integer> ids) {
+		return patrolDao.getByIds(ids);
+	}
+
+	@Override
+	@Transactional
+	public PatrolImpl getPatrolWithScoresById(Integer id) throws PatrolNotFoundException {
+		return patrolDao.getByIdWithScores(id);
+	}
 	
 	
 
@@ -68,23 +147,6 @@ public class PatrolServiceImpl implements PatrolService {
 	@Override
 	@Transactional
 	public List<PatrolImpl> getAllPatrolsLeftOnStation(Integer stationId) {
-		List<PatrolImpl> allPatrols = patrolDao.getAllPatrols();
-		
-		Iterator<PatrolImpl> itt = allPatrols.iterator();
-		while(itt.hasNext()){
-			PatrolImpl patrol = (PatrolImpl) itt.next();
-			Iterator<ScoreImpl> scores = patrol.getScores().iterator();
-			while(scores.hasNext()){
-				ScoreImpl score = scores.next();
-				if(score.getStation().getStationId()==stationId){
-					itt.remove();
-					break;
-				}
-				
-			}
-			
-		}
-
-		return allPatrols;
+		return patrolDao.getPatrolsLeftOnStation(stationId);
 	}
 }
@@ -0,0 +1,210 @@
+package se.gokopen.service;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Rangordning av patruller efter en nyckel som räknas fram en gång per
+ * patrull. Kriterierna packas i en long med det viktigaste kriteriet i de
+ * högsta bitarna, så två patruller jämförs med en enda jämförelse av
+ * nycklarna och en större nyckel betyder bättre placering. Vilka kriterier som
+ * avgör och i vilken ordning ställs in per tävling, se {@link #parse(String)}.
+ */
+public final class Ranking {
+
+    public enum Criterion {
+        TOTAL(20, "Totalpoäng"),
+        SCORE_POINT(19, "Poäng"),
+        STYLE_POINT(16, "Stilpoäng"),
+        MAX_SCORES(10, "Flest maxpoäng"),
+        REPORTED_STATIONS(10, "Flest kontroller");
+
+        private final int bits;
+        private final String label;
+
+        private Criterion(int bits, String label) {
+            this.bits = bits;
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Förskjuter värdet så att negativa poäng också sorteras rätt och
+         * klipper det som inte får plats i kriteriets bitar.
+         */
+        long pack(int value) {
+            long max = (1L << bits) - 1;
+            long packed = (long) value + (1L << (bits - 1));
+            if (packed < 0) {
+                return 0;
+            }
+            return packed > max ? max : packed;
+        }
+    }
+
+    public static final String DEFAULT_ORDER = "TOTAL,SCORE_POINT";
+    public static final Ranking DEFAULT = parse(DEFAULT_ORDER);
+
+    // Teckenbiten lämnas fri så att nycklarna kan jämföras som vanliga long
+    private static final int MAX_BITS = 63;
+    // Kortare delar än så sorteras med insättningssortering innan de slås ihop
+    private static final int RUN = 32;
+
+    private final Criterion[] criteria;
+
+    public Ranking(Criterion... criteria) {
+        if (criteria.length == 0) {
+            throw new IllegalArgumentException("Minst ett kriterium måste anges.");
+        }
+        Set<Criterion> seen = EnumSet.noneOf(Criterion.class);
+        int bits = 0;
+        for (Criterion criterion : criteria) {
+            if (!seen.add(criterion)) {
+                throw new IllegalArgumentException(criterion + " finns med flera gånger.");
+            }
+            bits += criterion.bits;
+        }
+        if (bits > MAX_BITS) {
+            throw new IllegalArgumentException("För många kriterier, ta bort något.");
+        }
+        this.criteria = criteria.clone();
+    }
+
+    /**
+     * Läser en kommaseparerad lista med kriterier, t.ex.
+     * "TOTAL,SCORE_POINT,MAX_SCORES". Tom eller saknad lista ger
+     * {@link #DEFAULT}.
+     */
+    public static Ranking parse(String order) {
+        if (order == null || order.trim().isEmpty()) {
+            return DEFAULT;
+        }
+        String[] names = order.split(",");
+        Criterion[] criteria = new Criterion[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().toUpperCase();
+            try {
+                criteria[i] = Criterion.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Okänt kriterium: " + name + ".");
+            }
+        }
+        return new Ranking(criteria);
+    }
+
+    public long key(int scorePoint, int stylePoint, int maxScores, int reportedStations) {
+        long key = 0;
+        for (Criterion criterion : criteria) {
+            int value;
+            switch (criterion) {
+            case TOTAL:
+                value = scorePoint + stylePoint;
+                break;
+            case SCORE_POINT:
+                value = scorePoint;
+                break;
+            case STYLE_POINT:
+                value = stylePoint;
+                break;
+            case MAX_SCORES:
+                value = maxScores;
+                break;
+            default:
+                value = reportedStations;
+                break;
+            }
+            key = (key << criterion.bits) | criterion.pack(value);
+        }
+        return key;
+    }
+
+    /**
+     * Index i keys ordnade med största nyckeln först. Sorteringen är stabil, så
+     * lika nycklar behåller inbördes ordning. Inget annat än två int-arrayer
+     * skapas.
+     */
+    public static int[] sortDescending(long[] keys) {
+        int n = keys.length;
+        int[] src = new int[n];
+        for (int i = 0; i < n; i++) {
+            src[i] = i;
+        }
+        for (int lo = 0; lo < n; lo += RUN) {
+            insertionSort(keys, src, lo, Math.min(lo + RUN, n));
+        }
+        int[] dst = new int[n];
+        for (int width = RUN; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += width << 1) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + (width << 1), n);
+                merge(keys, src, dst, lo, mid, hi);
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        return src;
+    }
+
+    private static void insertionSort(long[] keys, int[] order, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int index = order[i];
+            long key = keys[index];
+            int j = i;
+            while (j > lo && keys[order[j - 1]] < key) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = index;
+        }
+    }
+
+    private static void merge(long[] keys, int[] src, int[] dst, int lo, int mid, int hi) {
+        if (mid >= hi || keys[src[mid - 1]] >= keys[src[mid]]) {
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            return;
+        }
+        int i = lo;
+        int j = mid;
+        int k = lo;
+        while (i < mid && j < hi) {
+            dst[k++] = keys[src[j]] > keys[src[i]] ? src[j++] : src[i++];
+        }
+        while (i < mid) {
+            dst[k++] = src[i++];
+        }
+        while (j < hi) {
+            dst[k++] = src[j++];
+        }
+    }
+
+    public String getOrder() {
+        StringBuilder order = new StringBuilder();
+        for (Criterion criterion : criteria) {
+            if (order.length() > 0) {
+                order.append(',');
+            }
+            order.append(criterion.name());
+        }
+        return order.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Ranking && Arrays.equals(criteria, ((Ranking) obj).criteria);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(criteria);
+    }
+
+    @Override
+    public String toString() {
+        return getOrder();
+    }
+}
@@ -0,0 +1,103 @@
+package se.gokopen.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Läs-igenom-cache för referensdata som ändras några gånger per tävling men
+ * läses vid nästan varje anrop (klasser och kontroller). Hela listan laddas på
+ * en gång och byts ut i sin helhet när den ogiltigförklaras.
+ *
+ * Cachens instanser delas mellan alla trådar och lämnas aldrig ut. Den som
+ * frågar får kopior, så att t.ex. ett formulär som binds till en kontroll
+ * inte ändrar den för andra anrop.
+ */
+abstract class ReferenceDataCache<T> {
+
+    private static class Snapshot<T> {
+        final List<T> all;
+        final Map<Integer, T> byId;
+
+        Snapshot(List<T> all, Map<Integer, T> byId) {
+            this.all = all;
+            this.byId = byId;
+        }
+    }
+
+    private volatile Snapshot<T> snapshot;
+    // Räknas upp vid varje ändring så att en lista som laddats samtidigt som en ändring inte sparas
+    private final AtomicLong modCount = new AtomicLong();
+
+    /**
+     * Laddar hela listan i en egen transaktion, eller i den som pågår. Bara
+     * en miss i cachen behöver alltså en anslutning.
+     */
+    protected abstract List<T> load();
+
+    protected abstract Integer idOf(T item);
+
+    protected abstract T copyOf(T item);
+
+    List<T> getAll() {
+        List<T> all = getSnapshot().all;
+        List<T> copies = new ArrayList<T>(all.size());
+        for (T item : all) {
+            copies.add(copyOf(item));
+        }
+        return copies;
+    }
+
+    /**
+     * Cachens egna instanser, för att läsa inom paketet. Samma lista ända
+     * tills cachen ogiltigförklaras.
+     */
+    List<T> getShared() {
+        return getSnapshot().all;
+    }
+
+    /**
+     * Returnerar null om id:t inte finns i cachen.
+     */
+    T get(Integer id) {
+        T item = getSnapshot().byId.get(id);
+        return item != null ? copyOf(item) : null;
+    }
+
+    void invalidate() {
+        clear();
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                clear();
+            }
+        });
+    }
+
+    private synchronized void clear() {
+        modCount.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot<T> getSnapshot() {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            long before = modCount.get();
+            List<T> all = load();
+            Map<Integer, T> byId = new HashMap<Integer, T>();
+            for (T item : all) {
+                byId.put(idOf(item), item);
+            }
+            current = new Snapshot<T>(Collections.unmodifiableList(all), byId);
+            synchronized (this) {
+                if (modCount.get() == before) {
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+}
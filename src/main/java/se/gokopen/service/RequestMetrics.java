@@ -0,0 +1,45 @@
+package se.gokopen.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Svarstider per sida sedan start eller senaste nollställning, se
+ * se.gokopen.controller.RequestTimingInterceptor. Deklareras i metrics.xml så
+ * att det bara finns en, i mvc-dispatcher.
+ */
+public class RequestMetrics {
+
+    private final ConcurrentMap<String, LatencyHistogram> handlers = new ConcurrentHashMap<String, LatencyHistogram>();
+    private volatile long since = System.currentTimeMillis();
+
+    public void record(String handler, long nanos, boolean failed) {
+        LatencyHistogram histogram = handlers.get(handler);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = handlers.putIfAbsent(handler, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos, failed);
+    }
+
+    /**
+     * Sidorna sorterade på namn.
+     */
+    public Map<String, LatencyHistogram> getHandlers() {
+        return new TreeMap<String, LatencyHistogram>(handlers);
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public void reset() {
+        handlers.clear();
+        since = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,163 @@
+package se.gokopen.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.Station;
+
+/**
+ * Ritar poängkorten för en klass som PDF, en sida per kontroll med samma
+ * tabell som printscorecardstations.jsp. Får inte alla patruller plats på en
+ * sida fortsätter tabellen på nästa.
+ */
+class ScoreCardPdf {
+
+    private static final PDRectangle PAGE = PDRectangle.A4;
+    private static final float MARGIN = 40;
+    private static final float TITLE_HEIGHT = 50;
+    private static final float HEADER_HEIGHT = 20;
+    private static final float ROW_HEIGHT = 32;
+    private static final float[] COLUMN_WIDTHS = { 235, 60, 60, 60, 100 };
+    private static final String[] COLUMNS = { "Patrull", "Poäng", "Stilp", "Totalt", "Signatur" };
+
+    private static final PDType1Font FONT = PDType1Font.HELVETICA;
+    private static final PDType1Font BOLD = PDType1Font.HELVETICA_BOLD;
+
+    private ScoreCardPdf() {
+
+    }
+
+    static byte[] render(String trackName, List<Station> stations, List<PatrolImpl> patrols) throws IOException {
+        PDDocument document = new PDDocument();
+        try {
+            int rowsPerPage = (int) ((PAGE.getHeight() - 2 * MARGIN - TITLE_HEIGHT - HEADER_HEIGHT) / ROW_HEIGHT);
+            if (stations.isEmpty()) {
+                PDPage page = new PDPage(PAGE);
+                document.addPage(page);
+                PDPageContentStream content = new PDPageContentStream(document, page);
+                try {
+                    text(content, BOLD, 16, MARGIN, PAGE.getHeight() - MARGIN - 16, "Inga kontroller finns för " + trackName);
+                } finally {
+                    content.close();
+                }
+            }
+            for (Station station : stations) {
+                int first = 0;
+                do {
+                    int last = Math.min(first + rowsPerPage, patrols.size());
+                    PDPage page = new PDPage(PAGE);
+                    document.addPage(page);
+                    PDPageContentStream content = new PDPageContentStream(document, page);
+                    try {
+                        String title = "Poängkort för " + station.getStationName() + " - " + trackName;
+                        if (first > 0) {
+                            title = title + " (forts.)";
+                        }
+                        text(content, BOLD, 16, MARGIN, PAGE.getHeight() - MARGIN - 16, title);
+                        drawTable(content, patrols.subList(first, last));
+                    } finally {
+                        content.close();
+                    }
+                    first = last;
+                } while (first < patrols.size());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        } finally {
+            document.close();
+        }
+    }
+
+    private static void drawTable(PDPageContentStream content, List<PatrolImpl> patrols) throws IOException {
+        float top = PAGE.getHeight() - MARGIN - TITLE_HEIGHT;
+        float width = 0;
+        for (float columnWidth : COLUMN_WIDTHS) {
+            width += columnWidth;
+        }
+        float bottom = top - HEADER_HEIGHT - patrols.size() * ROW_HEIGHT;
+
+        float x = MARGIN;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            text(content, BOLD, 10, x + 4, top - 14, COLUMNS[i]);
+            x += COLUMN_WIDTHS[i];
+        }
+        float y = top - HEADER_HEIGHT;
+        for (PatrolImpl patrol : patrols) {
+            text(content, FONT, 10, MARGIN + 4, y - 13, fit(FONT, 10, patrol.getPatrolName(), COLUMN_WIDTHS[0] - 8));
+            text(content, FONT, 8, MARGIN + 4, y - 25, fit(FONT, 8, patrol.getTroop(), COLUMN_WIDTHS[0] - 8));
+            y -= ROW_HEIGHT;
+        }
+
+        content.setLineWidth(0.5f);
+        content.moveTo(MARGIN, top);
+        content.lineTo(MARGIN + width, top);
+        y = top - HEADER_HEIGHT;
+        for (int row = 0; row <= patrols.size(); row++) {
+            content.moveTo(MARGIN, y);
+            content.lineTo(MARGIN + width, y);
+            y -= ROW_HEIGHT;
+        }
+        x = MARGIN;
+        for (int i = 0; i <= COLUMN_WIDTHS.length; i++) {
+            content.moveTo(x, top);
+            content.lineTo(x, bottom);
+            if (i < COLUMN_WIDTHS.length) {
+                x += COLUMN_WIDTHS[i];
+            }
+        }
+        content.stroke();
+    }
+
+    private static void text(PDPageContentStream content, PDType1Font font, float size, float x, float y, String text) throws IOException {
+        content.beginText();
+        content.setFont(font, size);
+        content.newLineAtOffset(x, y);
+        content.showText(printable(font, text));
+        content.endText();
+    }
+
+    /**
+     * Kortar texten så att den får plats i kolumnen.
+     */
+    private static String fit(PDType1Font font, float size, String text, float width) throws IOException {
+        String printable = printable(font, text);
+        if (font.getStringWidth(printable) / 1000 * size <= width) {
+            return printable;
+        }
+        while (printable.length() > 0 && font.getStringWidth(printable + "...") / 1000 * size > width) {
+            printable = printable.substring(0, printable.length() - 1);
+        }
+        return printable + "...";
+    }
+
+    /**
+     * Standardtypsnitten klarar bara WinAnsi (bl.a. åäö), andra tecken byts mot ?.
+     */
+    private static String printable(PDType1Font font, String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder printable = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            String c = String.valueOf(text.charAt(i));
+            try {
+                font.encode(c);
+                printable.append(c);
+            } catch (IllegalArgumentException e) {
+                printable.append('?');
+            } catch (IOException e) {
+                printable.append('?');
+            }
+        }
+        return printable.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package se.gokopen.service;
+
+import java.io.IOException;
+
+import se.gokopen.model.Track;
+
+public interface ScoreCardService {
+    public byte[] getScoreCardPdf(Track track) throws IOException;
+    public void trackChanged(Integer trackId);
+    public void stationsChanged();
+}
@@ -0,0 +1,85 @@
+package se.gokopen.service;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.StationDAO;
+import se.gokopen.model.Track;
+
+/**
+ * Poängkort som PDF per klass. Ett färdigt dokument sparas tills klassens
+ * patruller eller kontrollerna ändras, så utskrifterna vid start kostar bara
+ * en sökning i minnet efter den första.
+ */
+@Service
+public class ScoreCardServiceImpl implements ScoreCardService {
+
+    @Autowired
+    private PatrolDAO patrolDao;
+    @Autowired
+    private StationDAO stationDao;
+
+    private final ConcurrentMap<Integer, byte[]> scoreCards = new ConcurrentHashMap<Integer, byte[]>();
+    // Räknas upp vid varje ändring så att ett dokument som ritats samtidigt som en ändring inte sparas
+    private final AtomicLong modCount = new AtomicLong();
+
+    @Override
+    @Transactional(readOnly=true)
+    public byte[] getScoreCardPdf(Track track) throws IOException {
+        byte[] pdf = scoreCards.get(track.getTrackId());
+        if (pdf == null) {
+            long before = modCount.get();
+            pdf = ScoreCardPdf.render(track.getTrackName(), stationDao.getAllStations(), patrolDao.getPatrolsByTrackId(track.getTrackId()));
+            synchronized (modCount) {
+                if (modCount.get() == before) {
+                    scoreCards.put(track.getTrackId(), pdf);
+                }
+            }
+        }
+        return pdf;
+    }
+
+    @Override
+    public void trackChanged(final Integer trackId) {
+        if (trackId == null) {
+            return;
+        }
+        change(new Runnable() {
+            @Override
+            public void run() {
+                scoreCards.remove(trackId);
+            }
+        });
+    }
+
+    @Override
+    public void stationsChanged() {
+        change(new Runnable() {
+            @Override
+            public void run() {
+                scoreCards.clear();
+            }
+        });
+    }
+
+    private void change(final Runnable change) {
+        modCount.incrementAndGet();
+        change.run();
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (modCount) {
+                    modCount.incrementAndGet();
+                    change.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,338 @@
+package se.gokopen.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Journal på disk för poäng som har tagits emot men ännu inte sparats i
+ * databasen. En rad skrivs och fsyncas innan saveScore svarar, anrop som
+ * kommer samtidigt delar på samma fsync. ScoreJournalWriter för över raderna
+ * till databasen och flyttar fram checkpointen. Vid start läses allt efter
+ * checkpointen in igen och en halvskriven sista rad efter en krasch tas bort.
+ * Varje rad har en egen nyckel som sparas i score.clientkey, så en rad som
+ * redan hann sparas före en krasch sparas inte igen.
+ */
+public class ScoreJournal {
+
+    private static final Log log = LogFactory.getLog(ScoreJournal.class);
+    private static final String JOURNAL_FILE = "scores.journal";
+    private static final String CHECKPOINT_FILE = "scores.checkpoint";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final File directory;
+    private boolean enabled = true;
+
+    private FileChannel channel;
+    private IOException failure;
+    // Positioner räknas från första raden sedan start och fortsätter öka när
+    // filen töms, base är positionen där den nuvarande filen börjar
+    private long base;
+    private long written;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Set<String> pendingPatrolStations = new HashSet<String>();
+
+    private final Object syncLock = new Object();
+    private long durable;
+    private boolean syncing;
+
+    public ScoreJournal(String directory) {
+        this.directory = new File(directory);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Kan inte skapa katalogen " + directory);
+        }
+        File file = new File(directory, JOURNAL_FILE);
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        byte[] content = Files.readAllBytes(file.toPath());
+        long checkpoint = readCheckpoint();
+        int valid = 0;
+        for (int end = indexOf(content, valid); end >= 0; end = indexOf(content, valid)) {
+            Entry entry = parse(new String(content, valid, end - valid, ASCII), end + 1);
+            if (entry == null) {
+                break;
+            }
+            if (valid >= checkpoint) {
+                entries.add(entry);
+                pendingPatrolStations.add(patrolStation(entry.getPatrolId(), entry.getStationId()));
+            }
+            valid = end + 1;
+        }
+        if (valid < content.length) {
+            log.warn("Tar bort " + (content.length - valid) + " byte halvskriven data i slutet av " + file);
+            channel.truncate(valid);
+            channel.force(false);
+        }
+        channel.position(valid);
+        base = 0;
+        written = valid;
+        durable = valid;
+        if (!entries.isEmpty()) {
+            log.info(entries.size() + " poäng i " + file + " har inte sparats i databasen och förs över igen");
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Skriver poängen till journalen och väntar tills den ligger på disk.
+     *
+     * @return poängens nyckel, eller null om patrullen redan har en poäng på
+     *         kontrollen som inte har förts över än
+     */
+    public String append(int patrolId, int stationId, int scorePoint, int stylePoint) throws IOException {
+        String key = UUID.randomUUID().toString();
+        long end;
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("Journalen gick inte att skriva tidigare", failure);
+            }
+            if (channel == null) {
+                throw new IOException("Journalen är inte öppen");
+            }
+            if (!pendingPatrolStations.add(patrolStation(patrolId, stationId))) {
+                return null;
+            }
+            ByteBuffer line = ByteBuffer.wrap(format(key, patrolId, stationId, scorePoint, stylePoint).getBytes(ASCII));
+            try {
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+            } catch (IOException e) {
+                pendingPatrolStations.remove(patrolStation(patrolId, stationId));
+                failure = e;
+                throw e;
+            }
+            written += line.capacity();
+            end = written;
+            entries.add(new Entry(key, patrolId, stationId, scorePoint, stylePoint, end));
+        }
+        awaitDurable(end);
+        return key;
+    }
+
+    /**
+     * Den som först behöver en fsync gör den för allt som har skrivits hittills,
+     * övriga väntar och är oftast klara när den är färdig.
+     */
+    private void awaitDurable(long end) throws IOException {
+        while (true) {
+            synchronized (syncLock) {
+                while (durable < end && syncing) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Avbröts i väntan på journalen");
+                    }
+                }
+                if (durable >= end) {
+                    return;
+                }
+                syncing = true;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = written;
+                current = channel;
+            }
+            boolean forced = false;
+            try {
+                current.force(false);
+                forced = true;
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+                throw e;
+            } finally {
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (forced && target > durable) {
+                        durable = target;
+                    }
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * De äldsta poängen som inte har förts över till databasen.
+     */
+    public synchronized List<Entry> pendingEntries(int max) {
+        return new ArrayList<Entry>(entries.subList(0, Math.min(max, entries.size())));
+    }
+
+    public synchronized int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * Markerar de första poängen från pendingEntries som sparade i databasen.
+     * När allt är överfört töms filen.
+     */
+    public synchronized void drained(List<Entry> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean all = batch.size() == entries.size();
+        // Checkpointen först, kraschar vi innan filen töms läses raderna bara in igen
+        writeCheckpoint(all ? 0 : batch.get(batch.size() - 1).getEnd() - base);
+        for (Entry entry : batch) {
+            pendingPatrolStations.remove(patrolStation(entry.getPatrolId(), entry.getStationId()));
+        }
+        entries.subList(0, batch.size()).clear();
+        if (all) {
+            channel.truncate(0);
+            channel.position(0);
+            base = written;
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file.toPath()), ASCII).trim());
+        } catch (NumberFormatException e) {
+            // Raderna läses in igen, nycklarna hindrar dubbletter
+            log.warn("Checkpointen kunde inte läsas, hela journalen läses in igen", e);
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long position) throws IOException {
+        File tmp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            out.write(String.valueOf(position).getBytes(ASCII));
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), new File(directory, CHECKPOINT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String format(String key, int patrolId, int stationId, int scorePoint, int stylePoint) {
+        String data = key + ";" + patrolId + ";" + stationId + ";" + scorePoint + ";" + stylePoint;
+        return data + ";" + Long.toHexString(crc(data)) + "\n";
+    }
+
+    private static Entry parse(String line, long end) {
+        int split = line.lastIndexOf(';');
+        if (split < 0) {
+            return null;
+        }
+        String data = line.substring(0, split);
+        String[] fields = data.split(";");
+        try {
+            if (fields.length != 5 || Long.parseLong(line.substring(split + 1), 16) != crc(data)) {
+                return null;
+            }
+            return new Entry(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]), end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crc(String data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.getBytes(ASCII));
+        return crc.getValue();
+    }
+
+    private static int indexOf(byte[] content, int from) {
+        for (int i = from; i < content.length; i++) {
+            if (content[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String patrolStation(int patrolId, int stationId) {
+        return patrolId + ":" + stationId;
+    }
+
+    public static final class Entry {
+        private final String key;
+        private final int patrolId;
+        private final int stationId;
+        private final int scorePoint;
+        private final int stylePoint;
+        private final long end;
+
+        Entry(String key, int patrolId, int stationId, int scorePoint, int stylePoint, long end) {
+            this.key = key;
+            this.patrolId = patrolId;
+            this.stationId = stationId;
+            this.scorePoint = scorePoint;
+            this.stylePoint = stylePoint;
+            this.end = end;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getPatrolId() {
+            return patrolId;
+        }
+
+        public int getStationId() {
+            return stationId;
+        }
+
+        public int getScorePoint() {
+            return scorePoint;
+        }
+
+        public int getStylePoint() {
+            return stylePoint;
+        }
+
+        long getEnd() {
+            return end;
+        }
+    }
+}
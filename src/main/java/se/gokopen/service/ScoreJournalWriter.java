@@ -0,0 +1,253 @@
+package se.gokopen.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.dao.StationNotFoundException;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.ScoreUpload;
+import se.gokopen.model.Station;
+
+/**
+ * För över poäng från ScoreJournal till databasen i bakgrunden, en
+ * transaktion per kontroll och omgång via ScoreService.syncScores. Går
+ * databasen inte att nå väntar den allt längre mellan försöken.
+ */
+public class ScoreJournalWriter {
+
+    private static final Log log = LogFactory.getLog(ScoreJournalWriter.class);
+    private static final int BATCH_SIZE = 100;
+    private static final int RECENT_REJECTIONS = 20;
+    private static final long DRAIN_INTERVAL_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    @Autowired
+    private ScoreJournal scoreJournal;
+    @Autowired
+    private ScoreService scoreService;
+    @Autowired
+    private StationService stationService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ScheduledExecutorService executor;
+    private long backoff;
+    private long nextAttempt;
+    private final AtomicLong rejected = new AtomicLong();
+    private final LinkedList<Rejection> recentRejections = new LinkedList<Rejection>();
+
+    public void start() {
+        if (!scoreJournal.isEnabled()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "score-journal-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                drainWithBackoff();
+            }
+        }, 0, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Antal poäng från journalen som databasen inte tog emot, t.ex. för att
+     * patrullen redan hade poäng på kontrollen.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * De senaste avvisade poängen, den senaste först, för /admin/metrics.
+     */
+    public List<Rejection> getRecentRejections() {
+        synchronized (recentRejections) {
+            return new ArrayList<Rejection>(recentRejections);
+        }
+    }
+
+    private void drainWithBackoff() {
+        if (System.currentTimeMillis() < nextAttempt) {
+            return;
+        }
+        try {
+            drain();
+            backoff = 0;
+        } catch (RuntimeException e) {
+            backoff = backoff == 0 ? 1000 : Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            log.warn("Journalen kunde inte föras över till databasen, försöker igen om " + backoff + " ms", e);
+            nextAttempt = System.currentTimeMillis() + backoff;
+        }
+    }
+
+    /**
+     * För över allt som ligger i journalen.
+     *
+     * @return antal poäng som fördes över
+     */
+    int drain() {
+        int count = 0;
+        List<ScoreJournal.Entry> batch = scoreJournal.pendingEntries(BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            write(batch);
+            try {
+                scoreJournal.drained(batch);
+            } catch (IOException e) {
+                // Poängen finns i databasen, vid omstart läses de in igen och svarar alreadysaved
+                throw new IllegalStateException("Kunde inte skriva journalens checkpoint", e);
+            }
+            count += batch.size();
+            batch = scoreJournal.pendingEntries(BATCH_SIZE);
+        }
+        return count;
+    }
+
+    private void write(List<ScoreJournal.Entry> batch) {
+        Map<Integer, List<ScoreUpload>> byStation = new LinkedHashMap<Integer, List<ScoreUpload>>();
+        for (ScoreJournal.Entry entry : batch) {
+            List<ScoreUpload> uploads = byStation.get(entry.getStationId());
+            if (uploads == null) {
+                uploads = new ArrayList<ScoreUpload>();
+                byStation.put(entry.getStationId(), uploads);
+            }
+            uploads.add(new ScoreUpload(entry.getKey(), entry.getPatrolId(), entry.getScorePoint(), entry.getStylePoint()));
+        }
+        for (Map.Entry<Integer, List<ScoreUpload>> station : byStation.entrySet()) {
+            try {
+                rejectUnsaved(station.getKey(), station.getValue(), sync(station.getKey(), station.getValue()));
+            } catch (ScoreNotSavedException e) {
+                // Någon rad krockade med en poäng som sparades direkt, ta en i taget
+                for (ScoreUpload upload : station.getValue()) {
+                    List<ScoreUpload> single = Collections.singletonList(upload);
+                    try {
+                        rejectUnsaved(station.getKey(), single, sync(station.getKey(), single));
+                    } catch (ScoreNotSavedException e1) {
+                        reject(station.getKey(), upload, e1.getErrorMsg());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resultaten kommer i samma ordning som raderna. Är listan tom fanns inte
+     * kontrollen och raderna är redan avvisade.
+     */
+    private void rejectUnsaved(Integer stationId, List<ScoreUpload> uploads, List<ScoreResult> results) {
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isSaved()) {
+                reject(stationId, uploads.get(i), results.get(i).getErrorMsg());
+            }
+        }
+    }
+
+    private void reject(Integer stationId, ScoreUpload upload, String errorMsg) {
+        rejected.incrementAndGet();
+        log.warn("Poäng " + upload.getClientKey() + " för patrull " + upload.getPatrolId() + " på kontroll " + stationId
+                + " från journalen sparades inte: " + errorMsg);
+        synchronized (recentRejections) {
+            recentRejections.addFirst(new Rejection(new Date(), upload.getPatrolId(), stationId, errorMsg));
+            if (recentRejections.size() > RECENT_REJECTIONS) {
+                recentRejections.removeLast();
+            }
+        }
+    }
+
+    private List<ScoreResult> sync(final Integer stationId, final List<ScoreUpload> uploads) throws ScoreNotSavedException {
+        try {
+            return new TransactionTemplate(transactionManager).execute(new TransactionCallback<List<ScoreResult>>() {
+                @Override
+                public List<ScoreResult> doInTransaction(TransactionStatus status) {
+                    Station station;
+                    try {
+                        station = stationService.getStationById(stationId);
+                    } catch (StationNotFoundException e) {
+                        for (ScoreUpload upload : uploads) {
+                            reject(stationId, upload, "Kontrollen finns inte längre.");
+                        }
+                        return Collections.emptyList();
+                    }
+                    try {
+                        return scoreService.syncScores(station, uploads);
+                    } catch (ScoreNotSavedException e) {
+                        throw new RejectedBatchException(e);
+                    }
+                }
+            });
+        } catch (RejectedBatchException e) {
+            throw (ScoreNotSavedException) e.getCause();
+        }
+    }
+
+    public static final class Rejection {
+        private final Date time;
+        private final Integer patrolId;
+        private final Integer stationId;
+        private final String errorMsg;
+
+        Rejection(Date time, Integer patrolId, Integer stationId, String errorMsg) {
+            this.time = time;
+            this.patrolId = patrolId;
+            this.stationId = stationId;
+            this.errorMsg = errorMsg;
+        }
+
+        public Date getTime() {
+            return time;
+        }
+
+        public Integer getPatrolId() {
+            return patrolId;
+        }
+
+        public Integer getStationId() {
+            return stationId;
+        }
+
+        public String getErrorMsg() {
+            return errorMsg;
+        }
+    }
+
+    private static class RejectedBatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedBatchException(ScoreNotSavedException cause) {
+            super(cause);
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package se.gokopen.service;
 
+import java.io.IOException;
 import java.util.List;
 
+import se.gokopen.dao.RowHandler;
 import se.gokopen.dao.ScoreNotFoundException;
 import se.gokopen.dao.ScoreNotSavedException;
 import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.ScoreUpload;
+import se.gokopen.model.Station;
 
 
 public interface ScoreService {
 	public void saveScore(ScoreImpl score) throws ScoreNotSavedException;
+	public List<ScoreResult> saveScores(List<ScoreImpl> scores) throws ScoreNotSavedException;
+	public List<ScoreResult> syncScores(Station station, List<ScoreUpload> uploads) throws ScoreNotSavedException;
 	public List<ScoreImpl> getAllScores();
+	public void scrollAllScores(RowHandler handler) throws IOException;
 	public List<ScoreImpl> getScoreByPatrolId(Integer id);
 	public void deleteScore(ScoreImpl score) throws ScoreNotFoundException;
 	public void deleteScoreById(Integer id) throws ScoreNotFoundException;
@@ -1,31 +1,215 @@
 package se.gokopen.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.RowHandler;
 import se.gokopen.dao.ScoreDAO;
 import se.gokopen.dao.ScoreNotFoundException;
 import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.model.PatrolImpl;
 import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.ScoreUpload;
+import se.gokopen.model.Station;
 
 @Service
 public class ScoreServiceImpl implements ScoreService {
 
+    private static final Log log = LogFactory.getLog(ScoreServiceImpl.class);
+
     @Autowired
     private ScoreDAO scoreDao;
+    @Autowired
+    private PatrolDAO patrolDao;
+    @Autowired
+    private StandingsService standingsService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    // Finns bara i servlet-kontexten, se score-journal.xml
+    @Autowired(required = false)
+    private ScoreJournal scoreJournal;
 
+    /**
+     * Med journalen påslagen skrivs nya poäng bara till den, utan att
+     * databasen används, och sparas i databasen av ScoreJournalWriter. Poäng
+     * som databasen sedan inte tar emot, t.ex. för en patrull som redan har
+     * poäng på kontrollen, avvisas av skrivaren och visas på /admin/metrics.
+     */
     @Override
-    @Transactional
     public void saveScore(ScoreImpl score) throws ScoreNotSavedException {
-        if(isScoreInEditMode(score) || !hasScoreBeenSavedBefore(score)){
-            scoreDao.save(score);
+        if (isNew(score) && scoreJournal != null && scoreJournal.isEnabled() && appendToJournal(score)) {
+            return;
+        }
+        saveInTransaction(score);
+    }
+
+    private boolean appendToJournal(ScoreImpl score) throws ScoreNotSavedException {
+        String errorMsg = validatePoints(score);
+        if (errorMsg != null) {
+            throw new ScoreNotSavedException(errorMsg);
+        }
+        String key;
+        try {
+            key = scoreJournal.append(score.getPatrol().getPatrolId(), score.getStation().getStationId(), score.getScorePoint(),
+                    score.getStylePoint());
+        } catch (IOException e) {
+            log.warn("Kunde inte skriva poängen till journalen, den sparas direkt i databasen", e);
+            return false;
         }
-        else{
+        if (key == null) {
             throw new ScoreNotSavedException("Det finns redan poäng registrerat för denna patrull på denna kontroll.");
         }
+        score.setClientKey(key);
+        return true;
+    }
+
+    /**
+     * Sparar poängen direkt i databasen. Transaktionen rullas tillbaka om
+     * poängen inte kan sparas.
+     */
+    private void saveInTransaction(final ScoreImpl score) throws ScoreNotSavedException {
+        ScoreNotSavedException notSaved = new TransactionTemplate(transactionManager).execute(
+                new TransactionCallback<ScoreNotSavedException>() {
+                    @Override
+                    public ScoreNotSavedException doInTransaction(TransactionStatus status) {
+                        try {
+                            // Dubbletter stoppas av den unika nyckeln på patrull och kontroll i ScoreDAO
+                            scoreDao.save(score);
+                        } catch (ScoreNotSavedException e) {
+                            status.setRollbackOnly();
+                            return e;
+                        }
+                        standingsService.scoreSaved(score);
+                        return null;
+                    }
+                });
+        if (notSaved != null) {
+            throw notSaved;
+        }
+    }
+
+    private static boolean isNew(ScoreImpl score) {
+        return score.getScoreId() == null || score.getScoreId() == 0;
+    }
+
+    @Override
+    @Transactional(rollbackFor=ScoreNotSavedException.class)
+    public List<ScoreResult> saveScores(List<ScoreImpl> scores) throws ScoreNotSavedException {
+        List<ScoreResult> results = new ArrayList<ScoreResult>(scores.size());
+        List<ScoreImpl> valid = new ArrayList<ScoreImpl>(scores.size());
+        Map<Integer, Set<Integer>> scoredPatrolsByStation = new HashMap<Integer, Set<Integer>>();
+        for (ScoreImpl score : scores) {
+            String errorMsg = validate(score, scoredPatrolsByStation);
+            if (errorMsg == null) {
+                valid.add(score);
+            }
+            results.add(new ScoreResult(score, errorMsg == null, errorMsg));
+        }
+        if (!valid.isEmpty()) {
+            scoreDao.saveNewScores(valid);
+            for (ScoreImpl score : valid) {
+                standingsService.scoreSaved(score);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Nycklar som redan finns svarar med den poäng som sparades då, även om
+     * det var i ett tidigare anrop vars svar aldrig kom fram. Övriga poäng går
+     * igenom samma kontroller som i saveScores.
+     */
+    @Override
+    @Transactional(rollbackFor=ScoreNotSavedException.class)
+    public List<ScoreResult> syncScores(Station station, List<ScoreUpload> uploads) throws ScoreNotSavedException {
+        Set<String> keys = new HashSet<String>();
+        Set<Integer> patrolIds = new HashSet<Integer>();
+        for (ScoreUpload upload : uploads) {
+            keys.add(upload.getClientKey());
+            patrolIds.add(upload.getPatrolId());
+        }
+        keys.remove(null);
+        patrolIds.remove(null);
+        Map<String, ScoreImpl> savedByKey = new HashMap<String, ScoreImpl>();
+        for (ScoreImpl score : scoreDao.getScoresByClientKeys(keys)) {
+            savedByKey.put(score.getClientKey(), score);
+        }
+        Map<Integer, PatrolImpl> patrols = new HashMap<Integer, PatrolImpl>();
+        for (PatrolImpl patrol : patrolDao.getByIds(patrolIds)) {
+            patrols.put(patrol.getPatrolId(), patrol);
+        }
+
+        ScoreResult[] results = new ScoreResult[uploads.size()];
+        Map<String, Integer> firstIndexByKey = new HashMap<String, Integer>();
+        Map<String, ScoreImpl> firstByKey = new HashMap<String, ScoreImpl>();
+        List<ScoreImpl> newScores = new ArrayList<ScoreImpl>();
+        List<Integer> newIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < uploads.size(); i++) {
+            ScoreUpload upload = uploads.get(i);
+            ScoreImpl score = new ScoreImpl();
+            score.setClientKey(upload.getClientKey());
+            score.setStation(station);
+            score.setPatrol(patrols.get(upload.getPatrolId()));
+            score.setScorePoint(upload.getScorePoint());
+            score.setStylePoint(upload.getStylePoint());
+
+            ScoreImpl saved = savedByKey.get(upload.getClientKey());
+            if (upload.getClientKey() == null || upload.getClientKey().isEmpty() || upload.getClientKey().length() > 64) {
+                results[i] = new ScoreResult(score, false, "Poängen saknar giltig nyckel.");
+            } else if (saved != null) {
+                if (isSameScore(saved, upload.getPatrolId(), station)) {
+                    results[i] = new ScoreResult(saved, true, null, true);
+                } else {
+                    results[i] = new ScoreResult(score, false, "Nyckeln har redan använts för en annan poäng.");
+                }
+            } else if (firstByKey.containsKey(upload.getClientKey())) {
+                if (isSameScore(firstByKey.get(upload.getClientKey()), upload.getPatrolId(), station)) {
+                    // Samma poäng två gånger i kön, avgörs av den första
+                    continue;
+                }
+                results[i] = new ScoreResult(score, false, "Nyckeln har redan använts för en annan poäng.");
+            } else if (score.getPatrol() == null) {
+                results[i] = new ScoreResult(score, false, "Hittar inte patrullen.");
+            } else {
+                firstIndexByKey.put(upload.getClientKey(), i);
+                firstByKey.put(upload.getClientKey(), score);
+                newScores.add(score);
+                newIndexes.add(i);
+            }
+        }
+        List<ScoreResult> newResults = saveScores(newScores);
+        for (int i = 0; i < newResults.size(); i++) {
+            results[newIndexes.get(i)] = newResults.get(i);
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                ScoreResult first = results[firstIndexByKey.get(uploads.get(i).getClientKey())];
+                results[i] = first.isSaved() ? new ScoreResult(first.getScore(), true, null, true) : first;
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static boolean isSameScore(ScoreImpl score, Integer patrolId, Station station) {
+        return score.getPatrol().getPatrolId().equals(patrolId) && score.getStation().getStationId().equals(station.getStationId());
     }
 
     @Override
@@ -34,6 +218,12 @@ public class ScoreServiceImpl implements ScoreService {
         return scoreDao.getAllScores();
     }
 
+    @Override
+    @Transactional(readOnly=true)
+    public void scrollAllScores(RowHandler handler) throws IOException {
+        scoreDao.scrollScores(handler);
+    }
+
     @Override
     @Transactional
     public List<ScoreImpl> getScoreByPatrolId(Integer id) {
@@ -44,12 +234,15 @@ public class ScoreServiceImpl implements ScoreService {
     @Transactional
     public void deleteScore(ScoreImpl score) throws ScoreNotFoundException {
         scoreDao.delete(score);
+        standingsService.scoreDeleted(score);
     }
 
     @Override
     @Transactional
     public void deleteScoreById(Integer id) throws ScoreNotFoundException {
-        scoreDao.deleteById(id);
+        ScoreImpl score = scoreDao.getById(id);
+        scoreDao.delete(score);
+        standingsService.scoreDeleted(score);
     }
 
     @Override
@@ -58,26 +251,33 @@ public class ScoreServiceImpl implements ScoreService {
         return scoreDao.getById(id);
     }
 
-    
-    private boolean hasScoreBeenSavedBefore(ScoreImpl score){
-        Integer patrolId = score.getPatrol().getPatrolId();
-        Integer stationId = score.getStation().getStationId();
-        try{
-            ScoreImpl prevscore = scoreDao.getScoreForPatrolOnStation(patrolId, stationId);   
-            System.out.println("Hittar poäng (" + prevscore.getScorePoint() + ") för patrullid: " + patrolId + " för kontroll " + stationId);
-        }catch(ScoreNotFoundException e){
-            System.out.println("Hittar inget poäng, ok att spara");
-            return false;
+    private String validate(ScoreImpl score, Map<Integer, Set<Integer>> scoredPatrolsByStation) {
+        if (!isNew(score)) {
+            return "Poäng som redan är sparad kan inte ändras här.";
         }
-        
-        return true;
+        String errorMsg = validatePoints(score);
+        if (errorMsg != null) {
+            return errorMsg;
+        }
+        Set<Integer> scoredPatrols = scoredPatrolsByStation.get(score.getStation().getStationId());
+        if (scoredPatrols == null) {
+            scoredPatrols = new HashSet<Integer>(scoreDao.getPatrolIdsWithScoreOnStation(score.getStation().getStationId()));
+            scoredPatrolsByStation.put(score.getStation().getStationId(), scoredPatrols);
+        }
+        if (!scoredPatrols.add(score.getPatrol().getPatrolId())) {
+            return "Det finns redan poäng registrerat för denna patrull på denna kontroll.";
+        }
+        return null;
     }
-    
-    private boolean isScoreInEditMode(ScoreImpl score){
-        if(score.getScoreId()==null || score.getScoreId()==0){
-            return false;
-        }else{
-            return true;
+
+    private static String validatePoints(ScoreImpl score) {
+        Station station = score.getStation();
+        if (score.getScorePoint() < station.getMinScore() || score.getScorePoint() > station.getMaxScore()) {
+            return "Poängen måste vara mellan " + station.getMinScore() + " och " + station.getMaxScore() + ".";
+        }
+        if (score.getStylePoint() < station.getMinStyleScore() || score.getStylePoint() > station.getMaxStyleScore()) {
+            return "Stilpoängen måste vara mellan " + station.getMinStyleScore() + " och " + station.getMaxStyleScore() + ".";
         }
+        return null;
     }
 }
@@ -0,0 +1,19 @@
+package se.gokopen.service;
+
+import java.util.List;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Standing;
+import se.gokopen.model.Track;
+
+public interface StandingsService {
+    public List<Standing> getStandingsByTrack(Track track);
+    public void scoreSaved(ScoreImpl score);
+    public void scoreDeleted(ScoreImpl score);
+    public void patrolSaved(PatrolImpl patrol);
+    public void patrolDeleted(Integer patrolId);
+    public void invalidate();
+    public long getVersion(Integer trackId);
+    public long awaitChange(Integer trackId, long since, long timeoutMillis) throws InterruptedException;
+}
@@ -0,0 +1,210 @@
+package se.gokopen.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.model.Config;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Standing;
+import se.gokopen.model.Track;
+
+/**
+ * Håller en färdigsorterad resultatlista per klass i minnet. Listan byggs från
+ * databasen första gången den efterfrågas och uppdateras sedan för varje sparad
+ * eller borttagen poäng när transaktionen har gått igenom. Varje ändring räknar
+ * också upp klassens ändringsnummer och väcker resultatskärmar som väntar.
+ * Ändras tävlingens sorteringsordning byggs alla listor om.
+ */
+@Service
+public class StandingsServiceImpl implements StandingsService, ConfigChangeListener {
+
+    private static final Log log = LogFactory.getLog(StandingsServiceImpl.class);
+
+    @Autowired
+    private PatrolDAO patrolDao;
+    // Lat eftersom ConfigServiceImpl i sin tur behöver den här bönan som lyssnare
+    @Autowired
+    @Lazy
+    private ConfigService configService;
+
+    private final ConcurrentMap<Integer, TrackStandings> standings = new ConcurrentHashMap<Integer, TrackStandings>();
+    // Räknas upp vid varje ändring så att en lista som laddats samtidigt som en ändring inte sparas
+    private final AtomicLong modCount = new AtomicLong();
+    private final ChangeVersions versions = new ChangeVersions();
+    private volatile Ranking ranking;
+
+    @Override
+    @Transactional
+    public List<Standing> getStandingsByTrack(Track track) {
+        TrackStandings trackStandings = standings.get(track.getTrackId());
+        if (trackStandings == null) {
+            long before = modCount.get();
+            trackStandings = new TrackStandings(patrolDao.getPatrolsByTrack(track), getRanking());
+            synchronized (modCount) {
+                if (modCount.get() == before) {
+                    TrackStandings existing = standings.putIfAbsent(track.getTrackId(), trackStandings);
+                    if (existing != null) {
+                        trackStandings = existing;
+                    }
+                }
+            }
+        }
+        return trackStandings.getStandings();
+    }
+
+    @Override
+    public void scoreSaved(final ScoreImpl score) {
+        final PatrolImpl patrol = score.getPatrol();
+        final Integer stationId = score.getStation().getStationId();
+        final int scorePoint = score.getScorePoint();
+        final int stylePoint = score.getStylePoint();
+        final boolean maxScore = TrackStandings.isMaxScore(score);
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                if (patrol.getTrack() == null) {
+                    return;
+                }
+                TrackStandings trackStandings = standings.get(patrol.getTrack().getTrackId());
+                if (trackStandings != null) {
+                    trackStandings.putScore(patrol, stationId, scorePoint, stylePoint, maxScore);
+                }
+                versions.changed(patrol.getTrack().getTrackId());
+            }
+        });
+    }
+
+    @Override
+    public void scoreDeleted(ScoreImpl score) {
+        final Integer patrolId = score.getPatrol().getPatrolId();
+        final Integer stationId = score.getStation().getStationId();
+        final Track track = score.getPatrol().getTrack();
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                for (TrackStandings trackStandings : standings.values()) {
+                    trackStandings.removeScore(patrolId, stationId);
+                }
+                if (track != null) {
+                    versions.changed(track.getTrackId());
+                } else {
+                    versions.changedAll();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void patrolSaved(final PatrolImpl patrol) {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                Integer trackId = patrol.getTrack() != null ? patrol.getTrack().getTrackId() : null;
+                for (Map.Entry<Integer, TrackStandings> entry : standings.entrySet()) {
+                    if (!entry.getKey().equals(trackId)) {
+                        entry.getValue().removePatrol(patrol.getPatrolId());
+                    }
+                }
+                if (trackId != null) {
+                    TrackStandings trackStandings = standings.get(trackId);
+                    // Poängen laddas inte med patrullen, så en ny eller flyttad
+                    // patrull läses in när listan för klassen byggs om
+                    if (trackStandings != null && !trackStandings.updatePatrol(patrol)) {
+                        standings.remove(trackId);
+                    }
+                }
+                versions.changedAll();
+            }
+        });
+    }
+
+    @Override
+    public void patrolDeleted(final Integer patrolId) {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                for (TrackStandings trackStandings : standings.values()) {
+                    trackStandings.removePatrol(patrolId);
+                }
+                versions.changedAll();
+            }
+        });
+    }
+
+    @Override
+    public void invalidate() {
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                standings.clear();
+                versions.changedAll();
+            }
+        });
+    }
+
+    Ranking getRanking() {
+        Ranking current = ranking;
+        if (current == null) {
+            current = toRanking(configService.getCurrentConfig());
+            ranking = current;
+        }
+        return current;
+    }
+
+    @Override
+    public void configChanged(Config config) {
+        Ranking changed = toRanking(config);
+        if (!changed.equals(ranking)) {
+            synchronized (modCount) {
+                modCount.incrementAndGet();
+                ranking = changed;
+                standings.clear();
+                versions.changedAll();
+            }
+        }
+    }
+
+    private static Ranking toRanking(Config config) {
+        try {
+            return Ranking.parse(config.getRankingOrder());
+        } catch (IllegalArgumentException e) {
+            log.warn("Ogiltig sorteringsordning \"" + config.getRankingOrder() + "\", standardordningen används", e);
+            return Ranking.DEFAULT;
+        }
+    }
+
+    @Override
+    public long getVersion(Integer trackId) {
+        return versions.current(trackId);
+    }
+
+    @Override
+    public long awaitChange(Integer trackId, long since, long timeoutMillis) throws InterruptedException {
+        return versions.await(trackId, since, timeoutMillis);
+    }
+
+    private void afterCommit(final Runnable change) {
+        modCount.incrementAndGet();
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (modCount) {
+                    modCount.incrementAndGet();
+                    change.run();
+                }
+            }
+        });
+    }
+}
@@ -12,4 +12,5 @@ public interface StationService {
 	public void deleteStation(Station station) throws StationNotFoundException;
 	public void deleteStationById(Integer id) throws StationNotFoundException;
 	public Station getStationById(Integer id) throws StationNotFoundException;
+	public StationUserIndex getStationUserIndex();
 }
@@ -1,10 +1,15 @@
 package se.gokopen.service;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import se.gokopen.dao.StationDAO;
 import se.gokopen.dao.StationNotFoundException;
@@ -16,35 +21,122 @@ public class StationServiceImpl implements StationService {
 	
 	@Autowired
 	private StationDAO stationDao;
+	@Autowired
+	private StandingsService standingsService;
+	@Autowired
+	private ScoreCardService scoreCardService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final ReferenceDataCache<Station> stations = new ReferenceDataCache<Station>() {
+		@Override
+		protected List<Station> load() {
+			return new TransactionTemplate(transactionManager).execute(new TransactionCallback<List<Station>>() {
+				@Override
+				public List<Station> doInTransaction(TransactionStatus status) {
+					return stationDao.getAllStations();
+				}
+			});
+		}
+
+		@Override
+		protected Integer idOf(Station station) {
+			return station.getStationId();
+		}
+
+		@Override
+		protected Station copyOf(Station station) {
+			return new Station(station);
+		}
+	};
+	private volatile StationUserIndex stationUserIndex;
+	// Räknas upp vid varje ändring så att ett index som byggs samtidigt som en ändring inte sparas
+	private final AtomicLong stationChanges = new AtomicLong();
 
 	@Override
 	@Transactional
 	public void saveStation(Station station) throws StationNotSavedException {
 		stationDao.save(station);
+		// Ändrat maxpoäng kan ändra placeringen om tävlingen räknar maxpoäng
+		standingsService.invalidate();
+		stationsChanged();
 	}
 
 	@Override
-	@Transactional
 	public List<Station> getAllStations() {
-		return stationDao.getAllStations();
+		return stations.getAll();
 	}
 
 	@Override
 	@Transactional
 	public void deleteStation(Station station) throws StationNotFoundException {
 		stationDao.delete(station);
+		standingsService.invalidate();
+		stationsChanged();
 	}
 
 	@Override
 	@Transactional
 	public void deleteStationById(Integer id) throws StationNotFoundException {
 		stationDao.deleteId(id);
+		standingsService.invalidate();
+		stationsChanged();
 	}
 
 	@Override
-	@Transactional
-	public Station getStationById(Integer id) throws StationNotFoundException {
-		return stationDao.getById(id);
+	public Station getStationById(final Integer id) throws StationNotFoundException {
+		Station station = stations.get(id);
+		if (station == null) {
+			station = new TransactionTemplate(transactionManager).execute(new TransactionCallback<Station>() {
+				@Override
+				public Station doInTransaction(TransactionStatus status) {
+					try {
+						return stationDao.getById(id);
+					} catch (StationNotFoundException e) {
+						return null;
+					}
+				}
+			});
+		}
+		if (station == null) {
+			throw new StationNotFoundException("Hittar inte kontrollen med id: " + id);
+		}
+		return station;
+	}
+
+	/**
+	 * Byggs en gång från kontrollistan och sedan igen först efter att en
+	 * kontroll har ändrats.
+	 */
+	@Override
+	public StationUserIndex getStationUserIndex() {
+		StationUserIndex index = stationUserIndex;
+		if (index == null) {
+			final long before = stationChanges.get();
+			index = new StationUserIndex(stations.getShared(), before);
+			synchronized (this) {
+				if (stationChanges.get() == before) {
+					stationUserIndex = index;
+				}
+			}
+		}
+		return index;
 	}
 
+	private void stationsChanged() {
+		stations.invalidate();
+		scoreCardService.stationsChanged();
+		clearStationUserIndex();
+		AfterCommit.run(new Runnable() {
+			@Override
+			public void run() {
+				clearStationUserIndex();
+			}
+		});
+	}
+
+	private synchronized void clearStationUserIndex() {
+		stationChanges.incrementAndGet();
+		stationUserIndex = null;
+	}
 }
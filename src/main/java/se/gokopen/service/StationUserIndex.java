@@ -0,0 +1,60 @@
+package se.gokopen.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import se.gokopen.model.Station;
+
+/**
+ * Vilka kontroller varje kontrollanvändare får ge poäng på. Byggs från
+ * kontrollistan och byts ut i sin helhet när listan har ändrats. Varje nytt
+ * index får en högre version, så att den som sparat något beräknat från ett
+ * index kan se om det fortfarande gäller.
+ */
+public class StationUserIndex {
+
+    private final Map<String, Set<Integer>> stationIdsByUser;
+    private final long version;
+
+    public StationUserIndex(List<Station> stations, long version) {
+        this.version = version;
+        Map<String, Set<Integer>> byUser = new HashMap<String, Set<Integer>>();
+        for (Station station : stations) {
+            if (station.getStationUser() == null || station.getStationUser().isEmpty()) {
+                continue;
+            }
+            String key = key(station.getStationUser());
+            Set<Integer> stationIds = byUser.get(key);
+            if (stationIds == null) {
+                stationIds = new HashSet<Integer>();
+                byUser.put(key, stationIds);
+            }
+            stationIds.add(station.getStationId());
+        }
+        for (Map.Entry<String, Set<Integer>> entry : byUser.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+        this.stationIdsByUser = byUser;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Användarnamnet jämförs utan hänsyn till stora och små bokstäver.
+     */
+    public Set<Integer> getStationIds(String username) {
+        Set<Integer> stationIds = username != null ? stationIdsByUser.get(key(username)) : null;
+        return stationIds != null ? stationIds : Collections.<Integer>emptySet();
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
@@ -4,7 +4,11 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import se.gokopen.dao.TrackDAO;
 import se.gokopen.dao.TrackNotFoundException;
@@ -16,35 +20,85 @@ public class TrackServiceImpl implements TrackService {
 
 	@Autowired
 	private TrackDAO trackDao;
+	@Autowired
+	private StandingsService standingsService;
+	@Autowired
+	private ScoreCardService scoreCardService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final ReferenceDataCache<Track> tracks = new ReferenceDataCache<Track>() {
+		@Override
+		protected List<Track> load() {
+			return new TransactionTemplate(transactionManager).execute(new TransactionCallback<List<Track>>() {
+				@Override
+				public List<Track> doInTransaction(TransactionStatus status) {
+					return trackDao.getAllTracks();
+				}
+			});
+		}
+
+		@Override
+		protected Integer idOf(Track track) {
+			return track.getTrackId();
+		}
+
+		@Override
+		protected Track copyOf(Track track) {
+			return new Track(track);
+		}
+	};
 	
 	@Override
 	@Transactional
 	public void saveTrack(Track track) throws TrackNotSavedException {
 		trackDao.save(track);
+		tracks.invalidate();
+		scoreCardService.trackChanged(track.getTrackId());
 	}
 
 	@Override
-	@Transactional
 	public List<Track> getAllTracks() {
-		return trackDao.getAllTracks();
+		return tracks.getAll();
 	}
 
 	@Override
 	@Transactional
 	public void deleteTrack(Track track) throws TrackNotFoundException {
 		trackDao.delete(track);
+		standingsService.invalidate();
+		tracks.invalidate();
+		scoreCardService.trackChanged(track.getTrackId());
 	}
 
 	@Override
 	@Transactional
 	public void deleteTrackById(Integer id) throws TrackNotFoundException {
 		trackDao.deleteId(id);
+		standingsService.invalidate();
+		tracks.invalidate();
+		scoreCardService.trackChanged(id);
 	}
 
 	@Override
-	@Transactional
-	public Track getTrackById(Integer id) throws TrackNotFoundException {
-		return trackDao.getById(id);
+	public Track getTrackById(final Integer id) throws TrackNotFoundException {
+		Track track = tracks.get(id);
+		if (track == null) {
+			track = new TransactionTemplate(transactionManager).execute(new TransactionCallback<Track>() {
+				@Override
+				public Track doInTransaction(TransactionStatus status) {
+					try {
+						return trackDao.getById(id);
+					} catch (TrackNotFoundException e) {
+						return null;
+					}
+				}
+			});
+		}
+		if (track == null) {
+			throw new TrackNotFoundException("Hittar inte spåret med id: " + id);
+		}
+		return track;
 	}
 
 }
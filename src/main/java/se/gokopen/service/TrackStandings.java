@@ -0,0 +1,189 @@
+package se.gokopen.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Standing;
+
+/**
+ * Resultatlista för en klass som hålls sorterad vid varje ändring. Läsare får
+ * en oföränderlig lista som byts ut vid skrivning, så ingen sortering sker när
+ * listan visas. Placeringen avgörs av nyckeln från {@link Ranking}, som räknas
+ * fram en gång per patrull och ändring.
+ */
+class TrackStandings {
+
+    static final Comparator<Standing> ORDER = new Comparator<Standing>() {
+        @Override
+        public int compare(Standing s1, Standing s2) {
+            int comp = compareLong(s2.getRankKey(), s1.getRankKey());
+            if (comp == 0) {
+                comp = compareName(s1.getPatrolName(), s2.getPatrolName());
+            }
+            if (comp == 0) {
+                comp = s1.getPatrolId().compareTo(s2.getPatrolId());
+            }
+            return comp;
+        }
+    };
+
+    private static class PatrolEntry {
+        String patrolName;
+        String troop;
+        // stationId -> {poäng, stilpoäng, 1 om maxpoäng annars 0}
+        final Map<Integer, int[]> points = new HashMap<Integer, int[]>();
+        Standing standing;
+    }
+
+    private final Ranking ranking;
+    private final Map<Integer, PatrolEntry> entries = new HashMap<Integer, PatrolEntry>();
+    private volatile List<Standing> sorted = Collections.emptyList();
+
+    TrackStandings(List<PatrolImpl> patrols) {
+        this(patrols, Ranking.DEFAULT);
+    }
+
+    TrackStandings(List<PatrolImpl> patrols, Ranking ranking) {
+        this.ranking = ranking;
+        Standing[] standings = new Standing[patrols.size()];
+        long[] keys = new long[standings.length];
+        for (int i = 0; i < standings.length; i++) {
+            PatrolImpl patrol = patrols.get(i);
+            PatrolEntry entry = newEntry(patrol);
+            for (ScoreImpl score : patrol.getScores()) {
+                entry.points.put(score.getStation().getStationId(),
+                        new int[] { score.getScorePoint(), score.getStylePoint(), isMaxScore(score) ? 1 : 0 });
+            }
+            entry.standing = toStanding(patrol.getPatrolId(), entry);
+            entries.put(patrol.getPatrolId(), entry);
+            standings[i] = entry.standing;
+            keys[i] = entry.standing.getRankKey();
+        }
+        int[] order = Ranking.sortDescending(keys);
+        List<Standing> list = new ArrayList<Standing>(standings.length);
+        for (int index : order) {
+            list.add(standings[index]);
+        }
+        // Lika nycklar ordnas efter namn som i ORDER, annars hittar inte binärsökningen rätt
+        int start = 0;
+        for (int i = 1; i <= order.length; i++) {
+            if (i == order.length || keys[order[i]] != keys[order[start]]) {
+                if (i - start > 1) {
+                    Collections.sort(list.subList(start, i), ORDER);
+                }
+                start = i;
+            }
+        }
+        sorted = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Full poäng räknas bara på kontroller som har ett maxpoäng inställt.
+     */
+    static boolean isMaxScore(ScoreImpl score) {
+        int maxScore = score.getStation().getMaxScore();
+        return maxScore > 0 && score.getScorePoint() >= maxScore;
+    }
+
+    List<Standing> getStandings() {
+        return sorted;
+    }
+
+    synchronized boolean contains(Integer patrolId) {
+        return entries.containsKey(patrolId);
+    }
+
+    synchronized void putScore(PatrolImpl patrol, Integer stationId, int scorePoint, int stylePoint, boolean maxScore) {
+        PatrolEntry entry = entries.get(patrol.getPatrolId());
+        if (entry == null) {
+            entry = newEntry(patrol);
+            entries.put(patrol.getPatrolId(), entry);
+        }
+        entry.points.put(stationId, new int[] { scorePoint, stylePoint, maxScore ? 1 : 0 });
+        update(patrol.getPatrolId(), entry);
+    }
+
+    synchronized void removeScore(Integer patrolId, Integer stationId) {
+        PatrolEntry entry = entries.get(patrolId);
+        if (entry != null && entry.points.remove(stationId) != null) {
+            update(patrolId, entry);
+        }
+    }
+
+    /**
+     * Uppdaterar namn och kår för en patrull som redan finns i listan. Poängen
+     * lämnas orörda. Returnerar false om patrullen inte finns.
+     */
+    synchronized boolean updatePatrol(PatrolImpl patrol) {
+        PatrolEntry entry = entries.get(patrol.getPatrolId());
+        if (entry == null) {
+            return false;
+        }
+        entry.patrolName = patrol.getPatrolName();
+        entry.troop = patrol.getTroop();
+        update(patrol.getPatrolId(), entry);
+        return true;
+    }
+
+    synchronized void removePatrol(Integer patrolId) {
+        PatrolEntry entry = entries.remove(patrolId);
+        if (entry != null && entry.standing != null) {
+            List<Standing> list = new ArrayList<Standing>(sorted);
+            list.remove(Collections.binarySearch(list, entry.standing, ORDER));
+            sorted = Collections.unmodifiableList(list);
+        }
+    }
+
+    private void update(Integer patrolId, PatrolEntry entry) {
+        List<Standing> list = new ArrayList<Standing>(sorted.size() + 1);
+        list.addAll(sorted);
+        if (entry.standing != null) {
+            list.remove(Collections.binarySearch(list, entry.standing, ORDER));
+        }
+        entry.standing = toStanding(patrolId, entry);
+        int pos = Collections.binarySearch(list, entry.standing, ORDER);
+        list.add(-(pos + 1), entry.standing);
+        sorted = Collections.unmodifiableList(list);
+    }
+
+    private static PatrolEntry newEntry(PatrolImpl patrol) {
+        PatrolEntry entry = new PatrolEntry();
+        entry.patrolName = patrol.getPatrolName();
+        entry.troop = patrol.getTroop();
+        return entry;
+    }
+
+    private Standing toStanding(Integer patrolId, PatrolEntry entry) {
+        int scorePoint = 0;
+        int stylePoint = 0;
+        int maxScores = 0;
+        for (int[] p : entry.points.values()) {
+            scorePoint += p[0];
+            stylePoint += p[1];
+            maxScores += p[2];
+        }
+        int reported = entry.points.size();
+        return new Standing(patrolId, entry.patrolName, entry.troop, scorePoint, stylePoint, reported, maxScores,
+                ranking.key(scorePoint, stylePoint, maxScores, reported));
+    }
+
+    private static int compareLong(long x, long y) {
+        return (x < y) ? -1 : ((x == y) ? 0 : 1);
+    }
+
+    private static int compareName(String n1, String n2) {
+        if (n1 == null) {
+            return n2 == null ? 0 : 1;
+        }
+        if (n2 == null) {
+            return -1;
+        }
+        return n1.compareTo(n2);
+    }
+}
@@ -0,0 +1,63 @@
+-- Tabellerna som hbm2ddl.auto=update byggde innan databasen fick versioner,
+-- som de såg ut då. Finns de redan lämnas de orörda, så nya kolumner läggs
+-- till i senare skript.
+
+create table if not exists track (
+    trackid integer not null auto_increment,
+    trackname varchar(50),
+    primary key (trackid)
+);
+
+create table if not exists station (
+    stationid integer not null auto_increment,
+    stationnumber integer not null,
+    stationname varchar(100),
+    minscore integer not null,
+    maxscore integer not null,
+    minstylescore integer not null,
+    maxstylescore integer not null,
+    stationcontact varchar(50),
+    stationphone varchar(50),
+    stationuser varchar(16),
+    primary key (stationid)
+);
+
+create table if not exists patrol (
+    patrolid integer not null auto_increment,
+    patrolname varchar(120),
+    troop varchar(100),
+    fk_track integer,
+    starttime varchar(10),
+    endtime varchar(10),
+    members varchar(500),
+    note varchar(500),
+    leadercontact varchar(100),
+    primary key (patrolid),
+    constraint fk_patrol_track foreign key (fk_track) references track (trackid)
+);
+
+create table if not exists score (
+    scoreid integer not null auto_increment,
+    fk_patrol integer,
+    fk_station integer,
+    scorepoint integer not null,
+    stylepoint integer not null,
+    primary key (scoreid),
+    constraint fk_score_patrol foreign key (fk_patrol) references patrol (patrolid),
+    constraint fk_score_station foreign key (fk_station) references station (stationid)
+);
+
+create table if not exists config (
+    id integer not null auto_increment,
+    name varchar(255),
+    primary key (id)
+);
+
+create table if not exists users (
+    userid integer not null auto_increment,
+    username varchar(45) not null,
+    password varchar(45) not null,
+    enabled bit not null,
+    role varchar(255),
+    primary key (userid)
+);
@@ -0,0 +1,14 @@
+-- Kolumner som kommit till efter version 1. En kolumn som hbm2ddl redan
+-- lagt till hoppas över.
+
+-- Patrullens summerade poäng, se V4.
+alter table patrol add column scorepoint int default 0 not null;
+alter table patrol add column stylepoint int default 0 not null;
+alter table patrol add column total int default 0 not null;
+alter table patrol add column reportedstations int default 0 not null;
+
+-- Nyckeln som en kontroll utan nät sätter på sina poäng.
+alter table score add column clientkey varchar(64);
+
+-- Ordningen mellan patruller med samma totalpoäng.
+alter table config add column rankingorder varchar(200);
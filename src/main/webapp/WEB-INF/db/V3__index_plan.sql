@@ -0,0 +1,44 @@
+-- Index för frågorna i PatrolDAO, ScoreDAO och UserDaoImpl. Index som
+-- hbm2ddl redan skapat med samma namn hoppas över.
+
+-- Tidigare kunde en patrull få två poäng på samma kontroll. Den senast
+-- sparade får stå kvar och de äldre flyttas till score_duplicate, så att de
+-- kan gås igenom i efterhand.
+create table if not exists score_duplicate (
+    scoreid integer not null,
+    fk_patrol integer,
+    fk_station integer,
+    scorepoint integer not null,
+    stylepoint integer not null,
+    primary key (scoreid)
+);
+
+insert into score_duplicate (scoreid, fk_patrol, fk_station, scorepoint, stylepoint)
+    select s.scoreid, s.fk_patrol, s.fk_station, s.scorepoint, s.stylepoint from score s
+    where exists (select n.scoreid from score n where n.fk_patrol = s.fk_patrol and n.fk_station = s.fk_station and n.scoreid > s.scoreid)
+    and not exists (select d.scoreid from score_duplicate d where d.scoreid = s.scoreid);
+
+delete from score where scoreid in (select scoreid from score_duplicate);
+
+-- En poäng per patrull och kontroll. Täcker också poängen för en patrull
+-- (getAllScoresByPatrolId), getScoreForPatrolOnStation och "not exists" i
+-- getPatrolsLeftOnStation.
+create unique index uq_score_patrol_station on score (fk_patrol, fk_station);
+
+-- Patruller med poäng på en kontroll (getPatrolIdsWithScoreOnStation).
+create index idx_score_station_patrol on score (fk_station, fk_patrol);
+
+-- Offline-poäng som skickas igen känns igen på klientens nyckel
+-- (getScoresByClientKeys).
+create unique index uq_score_clientkey on score (clientkey);
+
+-- Patrullerna i en klass i namnordning (getPatrolsByTrack,
+-- getPatrolsByTrackId): resultatlistor och protokoll.
+create index idx_patrol_track_name on patrol (fk_track, patrolname, patrolid);
+
+-- Patrullistan sorterad och filtrerad på namn eller kår.
+create index idx_patrol_name on patrol (patrolname, patrolid);
+create index idx_patrol_troop_name on patrol (troop, patrolname, patrolid);
+
+-- Inloggning slår upp användaren på namn (getUserByName).
+create index idx_users_username on users (username);
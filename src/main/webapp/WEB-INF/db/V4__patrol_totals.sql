@@ -0,0 +1,7 @@
+-- Patrullens summor räknas fram ur poängen en gång. Därefter håller
+-- ScoreDAO dem uppdaterade när poäng sparas eller tas bort.
+update patrol set
+    scorepoint = (select coalesce(sum(s.scorepoint), 0) from score s where s.fk_patrol = patrol.patrolid),
+    stylepoint = (select coalesce(sum(s.stylepoint), 0) from score s where s.fk_patrol = patrol.patrolid),
+    total = (select coalesce(sum(s.scorepoint + s.stylepoint), 0) from score s where s.fk_patrol = patrol.patrolid),
+    reportedstations = (select count(*) from score s where s.fk_patrol = patrol.patrolid);
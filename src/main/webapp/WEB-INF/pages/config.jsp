@@ -1,5 +1,6 @@
 <%@ taglib uri="http://www.springframework.org/tags/form" prefix="form"%>
 <%@ taglib uri="http://www.springframework.org/tags" prefix="spring"%>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
 <!DOCTYPE html>
 <html>
@@ -8,6 +9,11 @@
 <title>Konfiguration</title>
 </head>
 <body>
+	<c:if test="${not empty errormsg }">
+	<div class="errorblock">
+	${errormsg}
+	</div>
+	</c:if>
 	<div class="nav-box">
 		<h1>Appens konfiguration</h1>
 		<form:form commandName="config" method="post"
@@ -18,6 +24,12 @@
 					<label for="name">Tävlingens namn:</label>
 					<form:input path="name" id="name" />
 				</fieldset>
+				<fieldset>
+					<label for="rankingOrder">Sorteringsordning:</label>
+					<form:input path="rankingOrder" id="rankingOrder" placeholder="${defaultRankingOrder}" />
+				</fieldset>
+				<p>Kommaseparerad lista där första kriteriet avgör först och nästa vid lika. Tomt ger ${defaultRankingOrder}.
+					<c:forEach items="${criteria}" var="criterion" varStatus="status">${criterion} = ${criterion.label}<c:if test="${not status.last}">, </c:if></c:forEach>.</p>
 			</div>
 			<div class="submit-area">
 				<input type="submit" name="saveConfig" value="Spara" /> | <a href="${pageContext.request.contextPath}/admin">Tillbaka</a>
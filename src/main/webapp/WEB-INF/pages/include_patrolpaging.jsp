@@ -0,0 +1,42 @@
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<c:choose>
+<c:when test="${param.part eq 'filter' }">
+<c:url var="filterurl" value="${listurl }"/>
+<form method="get" action="${filterurl }">
+	<select name="track">
+		<option value="">Alla klasser</option>
+		<c:forEach items="${tracks }" var="track">
+		<option value="${track.trackId }" <c:if test="${track.trackId eq selectedTrackId }">selected="selected"</c:if>>${track.trackName }</option>
+		</c:forEach>
+	</select>
+	<select name="troop">
+		<option value="">Alla kårer</option>
+		<c:forEach items="${troops }" var="troop">
+		<option value="<c:out value="${troop }"/>" <c:if test="${troop eq selectedTroop }">selected="selected"</c:if>><c:out value="${troop }"/></option>
+		</c:forEach>
+	</select>
+	<input type="submit" value="Visa"/>
+</form>
+</c:when>
+<c:otherwise>
+<p>
+<c:if test="${not firstPage }">
+	<c:url var="firsturl" value="${listurl }">
+		<c:param name="track" value="${selectedTrackId }"/>
+		<c:param name="troop" value="${selectedTroop }"/>
+	</c:url>
+	<a href="${firsturl }">Till början</a>
+</c:if>
+<c:if test="${page.more }">
+	<c:url var="nexturl" value="${listurl }">
+		<c:param name="track" value="${selectedTrackId }"/>
+		<c:param name="troop" value="${selectedTroop }"/>
+		<c:param name="afterName" value="${page.last.patrolName }"/>
+		<c:param name="afterId" value="${page.last.patrolId }"/>
+	</c:url>
+	<a href="${nexturl }">Nästa sida</a>
+</c:if>
+</p>
+</c:otherwise>
+</c:choose>
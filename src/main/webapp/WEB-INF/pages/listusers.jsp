@@ -34,6 +34,7 @@ function confirmDelete(id){
 	<li><a href="${pageContext.request.contextPath}/admin/user/open/${user.id}">${user.username }</a> <a href="#" onclick="return confirmDelete(${user.id});" class="del"><img src="${pageContext.request.contextPath}/css/delete.png"></a></li>
 </c:forEach>
 </ul>
+<p>Inloggningscache: ${loginCacheHits } träffar, ${loginCacheMisses } missar</p>
 </div>
 <div><a href="${pageContext.request.contextPath}/">Tillbaka</a></div>
 </body>
@@ -0,0 +1,81 @@
+<%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<!DOCTYPE html>
+<html>
+<head>
+<title>Mätvärden</title>
+<jsp:include page="include_metadata.jsp" flush="false"></jsp:include>
+</head>
+<body>
+<div class="nav-box">
+<h1>Mätvärden</h1>
+Sedan <fmt:formatDate value="${since}" pattern="yyyy-MM-dd HH:mm:ss" />.
+<a href="${pageContext.request.contextPath}/admin/metrics">Uppdatera</a> |
+<a href="${pageContext.request.contextPath}/admin/metrics/json">JSON</a> |
+<a href="${pageContext.request.contextPath}/admin">Tillbaka</a>
+<form method="post" action="${pageContext.request.contextPath}/admin/metrics/reset">
+	<input type="submit" value="Nollställ" />
+</form>
+</div>
+
+<h2>Svarstider</h2>
+<table>
+	<tr>
+		<th>Sida</th>
+		<th>Anrop</th>
+		<th>Fel</th>
+		<th>Medel (ms)</th>
+		<th>50% (ms)</th>
+		<th>95% (ms)</th>
+		<th>99% (ms)</th>
+		<th>Max (ms)</th>
+	</tr>
+	<c:forEach items="${handlers}" var="handler">
+	<tr>
+		<td><c:out value="${handler.key}" /></td>
+		<td>${handler.value.count}</td>
+		<td>${handler.value.errors}</td>
+		<td><fmt:formatNumber value="${handler.value.meanMillis}" maxFractionDigits="1" /></td>
+		<td>&le; ${handler.value.p50Millis}</td>
+		<td>&le; ${handler.value.p95Millis}</td>
+		<td>&le; ${handler.value.p99Millis}</td>
+		<td><fmt:formatNumber value="${handler.value.maxMillis}" maxFractionDigits="1" /></td>
+	</tr>
+	</c:forEach>
+</table>
+
+<c:forEach items="${sections}" var="section">
+<h2>${section.key}</h2>
+<table>
+	<c:forEach items="${section.value}" var="value">
+	<tr>
+		<td><c:out value="${value.key}" /></td>
+		<td><c:out value="${value.value}" /></td>
+	</tr>
+	</c:forEach>
+</table>
+</c:forEach>
+
+<h2>Långsammaste frågorna</h2>
+<table>
+	<tr>
+		<th>Fråga</th>
+		<th>Antal</th>
+		<th>Medel (ms)</th>
+		<th>Max (ms)</th>
+		<th>Rader</th>
+	</tr>
+	<c:forEach items="${slowQueries}" var="query">
+	<tr>
+		<td><c:out value="${query.query}" /></td>
+		<td>${query.count}</td>
+		<td>${query.meanMillis}</td>
+		<td>${query.maxMillis}</td>
+		<td>${query.rows}</td>
+	</tr>
+	</c:forEach>
+</table>
+</body>
+</html>
@@ -14,6 +14,7 @@
 		<a href="${pageContext.request.contextPath}/patrol/admin/newpatrol">Lägg
 			till ny patrull</a> | <a href="${pageContext.request.contextPath}/admin">Tillbaka</a>
 	</p>
+	<jsp:include page="include_patrolpaging.jsp"><jsp:param name="part" value="filter"/></jsp:include>
 	<table>
 		<tr>
 			<th>Patrullnamn</th>
@@ -30,7 +31,7 @@
 			<tr ${trclass}>
 				<td><a
 					href="${pageContext.request.contextPath}/patrol/viewpatrol/${patrol.patrolId}">${patrol.patrolName }</a></td>
-				<td>${patrol.track.trackName }</td>
+				<td>${patrol.trackName }</td>
 				<td>${patrol.troop }</td>
 				<td>${patrol.leaderContact}</td>
 				<td><a
@@ -41,5 +42,6 @@
 			</tr>
 		</c:forEach>
 	</table>
+	<jsp:include page="include_patrolpaging.jsp"><jsp:param name="part" value="paging"/></jsp:include>
 </body>
 </html>
\ No newline at end of file
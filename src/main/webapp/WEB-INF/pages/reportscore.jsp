@@ -78,6 +78,9 @@ Vald kontroll: ${score.station.stationName }
 <input type="submit" name="saveScore" value="Spara"/> | <a href="${pageContext.request.contextPath}/">Avbryt</a>
 </div>
 </form:form>
+<div class="form-box">
+<a href="${pageContext.request.contextPath}/score/sheet/${score.station.stationId}">Rapportera flera patruller på en gång</a>
+</div>
 </c:if>
 </body>
 </html>
\ No newline at end of file
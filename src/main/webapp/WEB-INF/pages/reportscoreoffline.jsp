@@ -0,0 +1,217 @@
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<!DOCTYPE html>
+<html>
+<head>
+<jsp:include page="include_metadata.jsp" flush="false"></jsp:include>
+<title>Rapportera poäng offline</title>
+</head>
+<body>
+	<h1>Rapportera poäng</h1>
+	<p>Vald kontroll: ${station.stationName }</p>
+	<p>Poängen sparas i telefonen och skickas så fort det finns täckning. Stäng inte sidan innan kön är tom.</p>
+	<div id="status" class="statusrow"></div>
+	<div id="errors"></div>
+	<form id="scoreform" class="form-general" onsubmit="return false;">
+	<select id="patrol"></select>
+	<select id="scorePoint">
+	<c:forEach var="j" begin="${station.minScore}" end="${station.maxScore}">
+		<option value="${j}">${j}</option>
+	</c:forEach>
+	</select>
+	<select id="stylePoint">
+	<c:forEach var="i" begin="${station.minStyleScore}" end="${station.maxStyleScore}">
+		<option value="${i}">${i}</option>
+	</c:forEach>
+	</select>
+	<div class="submit-area">
+	<input type="button" id="add" value="Spara"/> | <a href="${pageContext.request.contextPath}/score">Tillbaka</a>
+	</div>
+	</form>
+	<h2>Ej skickade</h2>
+	<ul id="queue" class="list"></ul>
+	<script type="text/javascript">
+	(function() {
+		var syncUrl = '${pageContext.request.contextPath}/score/sync/${station.stationId}';
+		var storageKey = 'gokopen.scorequeue.${station.stationId}';
+		var BATCH = 50;
+		var MIN_DELAY = 5000;
+		var MAX_DELAY = 300000;
+		// Kön finns kvar i telefonen om sidan laddas om
+		var queue = load(storageKey, []);
+		var remaining = ${patrolsJson };
+		var busy = false;
+		var delay = MIN_DELAY;
+		var timer = null;
+
+		function load(key, fallback) {
+			try {
+				var value = localStorage.getItem(key);
+				return value ? JSON.parse(value) : fallback;
+			} catch (e) {
+				return fallback;
+			}
+		}
+
+		function store() {
+			try {
+				localStorage.setItem(storageKey, JSON.stringify(queue));
+			} catch (e) {
+				// privat läge, kön finns kvar så länge sidan är öppen
+			}
+		}
+
+		function newKey() {
+			var random = '';
+			if (window.crypto && crypto.getRandomValues) {
+				var values = new Uint32Array(2);
+				crypto.getRandomValues(values);
+				random = values[0].toString(36) + values[1].toString(36);
+			} else {
+				random = Math.random().toString(36).substring(2);
+			}
+			return '${station.stationId}-' + new Date().getTime().toString(36) + '-' + random;
+		}
+
+		function isQueued(patrolId) {
+			for (var i = 0; i < queue.length; i++) {
+				if (queue[i].patrolId === patrolId) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		function render() {
+			var select = document.getElementById('patrol');
+			select.innerHTML = '';
+			var placeholder = document.createElement('option');
+			placeholder.value = '';
+			placeholder.text = '-- Välj patrull --';
+			select.appendChild(placeholder);
+			for (var i = 0; i < remaining.length; i++) {
+				if (!isQueued(remaining[i].patrolId)) {
+					var option = document.createElement('option');
+					option.value = remaining[i].patrolId;
+					option.text = remaining[i].patrolInfo;
+					select.appendChild(option);
+				}
+			}
+			var list = document.getElementById('queue');
+			list.innerHTML = '';
+			for (var j = 0; j < queue.length; j++) {
+				var item = document.createElement('li');
+				item.appendChild(document.createTextNode(queue[j].patrolInfo + ': ' + queue[j].scorePoint + ' + ' + queue[j].stylePoint));
+				list.appendChild(item);
+			}
+			document.getElementById('status').innerHTML = queue.length === 0 ? 'Allt är skickat.' : queue.length + ' poäng väntar på att skickas.';
+		}
+
+		function showError(text) {
+			var block = document.createElement('div');
+			block.className = 'errorblock';
+			block.appendChild(document.createTextNode(text));
+			document.getElementById('errors').appendChild(block);
+		}
+
+		function retryLater() {
+			// Slumpen sprider ut kontrollerna när täckningen kommer tillbaka
+			clearTimeout(timer);
+			timer = setTimeout(sync, delay + Math.floor(Math.random() * delay / 2));
+			delay = Math.min(delay * 2, MAX_DELAY);
+		}
+
+		function handleResponse(json, sent) {
+			var done = {};
+			for (var i = 0; i < json.results.length; i++) {
+				var result = json.results[i];
+				done[result.key] = true;
+				if (result.status === 'rejected') {
+					for (var k = 0; k < sent.length; k++) {
+						if (sent[k].key === result.key) {
+							showError(sent[k].patrolInfo + ': ' + result.message);
+						}
+					}
+				}
+			}
+			var left = [];
+			for (var j = 0; j < queue.length; j++) {
+				if (!done[queue[j].key]) {
+					left.push(queue[j]);
+				}
+			}
+			queue = left;
+			remaining = json.remaining;
+			store();
+			render();
+		}
+
+		function sync() {
+			if (busy || queue.length === 0) {
+				return;
+			}
+			busy = true;
+			var sent = queue.slice(0, BATCH);
+			var body = [];
+			for (var i = 0; i < sent.length; i++) {
+				body.push('key=' + encodeURIComponent(sent[i].key));
+				body.push('patrolId=' + sent[i].patrolId);
+				body.push('scorePoint=' + sent[i].scorePoint);
+				body.push('stylePoint=' + sent[i].stylePoint);
+			}
+			var xhr = new XMLHttpRequest();
+			xhr.open('POST', syncUrl, true);
+			xhr.setRequestHeader('Content-Type', 'application/x-www-form-urlencoded; charset=UTF-8');
+			xhr.onreadystatechange = function() {
+				if (xhr.readyState !== 4) {
+					return;
+				}
+				busy = false;
+				var json = null;
+				try {
+					json = JSON.parse(xhr.responseText);
+				} catch (e) {
+					// inte JSON, t.ex. inloggningssidan eller ingen täckning
+				}
+				if (xhr.status === 200 && json && json.results) {
+					delay = MIN_DELAY;
+					handleResponse(json, sent);
+					sync();
+				} else if (json && json.error && xhr.status !== 409) {
+					showError(json.error);
+				} else {
+					retryLater();
+				}
+			};
+			xhr.send(body.join('&'));
+		}
+
+		document.getElementById('add').onclick = function() {
+			var select = document.getElementById('patrol');
+			if (!select.value) {
+				showError('Du måste välja en patrull innan du sparar poängen.');
+				return;
+			}
+			queue.push({
+				key: newKey(),
+				patrolId: parseInt(select.value, 10),
+				patrolInfo: select.options[select.selectedIndex].text,
+				scorePoint: parseInt(document.getElementById('scorePoint').value, 10),
+				stylePoint: parseInt(document.getElementById('stylePoint').value, 10)
+			});
+			store();
+			render();
+			delay = MIN_DELAY;
+			sync();
+		};
+		window.addEventListener('online', function() {
+			delay = MIN_DELAY;
+			clearTimeout(timer);
+			timer = setTimeout(sync, Math.floor(Math.random() * MIN_DELAY));
+		});
+		render();
+		sync();
+	})();
+	</script>
+</body>
+</html>
@@ -0,0 +1,70 @@
+<%@ taglib uri="http://www.springframework.org/tags/form" prefix="form" %>
+<%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<!DOCTYPE html>
+<html>
+<head>
+<jsp:include page="include_metadata.jsp" flush="false"></jsp:include>
+<title>Rapportera poäng</title>
+</head>
+<body>
+<c:if test="${not empty errormsg }">
+<div class="errorblock">
+${errormsg}
+</div>
+</c:if>
+<c:forEach items="${results }" var="result">
+	<c:if test="${result.saved }">
+	<div class="statusrow">
+	Sparat ${result.score.scorePoint} + ${result.score.stylePoint} poäng till ${result.score.patrol.patrolName }.
+	</div>
+	</c:if>
+	<c:if test="${not result.saved }">
+	<div class="errorblock">
+	${result.score.patrol.patrolName }: ${result.errorMsg}
+	</div>
+	</c:if>
+</c:forEach>
+	<h1>Rapportera poäng</h1>
+	<form:form commandName="sheet" method="post" action="${pageContext.request.contextPath}/score/savesheet" cssClass="form-general">
+	Vald kontroll: ${sheet.station.stationName } (<a href="${pageContext.request.contextPath}/score/offline/${sheet.station.stationId}">dålig täckning?</a>)
+	<form:hidden path="station" id="station" />
+	<c:if test="${empty sheet.scores }">
+	<p>Alla patruller har fått poäng på denna kontroll.</p>
+	</c:if>
+	<c:if test="${not empty sheet.scores }">
+	<table>
+	<tr><th>Patrull</th><th>Poäng</th><th>Stilpoäng</th></tr>
+	<c:forEach items="${sheet.scores }" varStatus="row">
+	<tr>
+	<td>
+	<form:select path="scores[${row.index}].patrol">
+	<option value="-1">-- Välj patrull --</option>
+	<form:options items="${patrols}" itemLabel="patrolInfo"/>
+	</form:select>
+	</td>
+	<td>
+	<form:select path="scores[${row.index}].scorePoint">
+	<c:forEach var="j" begin="${sheet.station.minScore}" end="${sheet.station.maxScore}">
+		<option value="${j}">${j}</option>
+	</c:forEach>
+	</form:select>
+	</td>
+	<td>
+	<form:select path="scores[${row.index}].stylePoint">
+	<c:forEach var="i" begin="${sheet.station.minStyleScore}" end="${sheet.station.maxStyleScore}">
+		<option value="${i}">${i}</option>
+	</c:forEach>
+	</form:select>
+	</td>
+	</tr>
+	</c:forEach>
+	</table>
+	<div class="submit-area">
+	<input type="submit" name="saveSheet" value="Spara alla"/> | <a href="${pageContext.request.contextPath}/score">Avbryt</a>
+	</div>
+	</c:if>
+	</form:form>
+</body>
+</html>
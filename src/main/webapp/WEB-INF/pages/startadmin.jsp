@@ -16,6 +16,8 @@
 <li class="nav-item"><a href="${pageContext.request.contextPath}/admin/track">Klasser</a></li>
 <li class="nav-item"><a href="${pageContext.request.contextPath}/admin/user">Användare</a>
 <li class="nav-item"><a href="${pageContext.request.contextPath}/admin/config">Konfiguration</a>
+<li class="nav-item"><a href="${pageContext.request.contextPath}/admin/metrics">Mätvärden</a>
+<li class="nav-item">Export: <a href="${pageContext.request.contextPath}/admin/export/standings.csv">resultat (CSV)</a>, <a href="${pageContext.request.contextPath}/admin/export/standings.json">resultat (JSON)</a>, <a href="${pageContext.request.contextPath}/admin/export/scores.csv">poäng (CSV)</a>, <a href="${pageContext.request.contextPath}/admin/export/scores.json">poäng (JSON)</a></li>
 <li class="nav-item"><a href="${pageContext.request.contextPath}/">Till huvudmenyn</a>
 </ul>
 </div>
@@ -14,15 +14,17 @@
 <a href="${pageContext.request.contextPath}/">Tillbaka</a>
 </div>
 <h1>Alla patruller</h1>
+	<jsp:include page="include_patrolpaging.jsp"><jsp:param name="part" value="filter"/></jsp:include>
 	<c:if test="${not empty patrols }">
 	<c:forEach items="${patrols }" var="patrol" varStatus="status">
 	<div class="scoreitem">
-	<a href="${pageContext.request.contextPath}/patrol/viewpatrolfrompatrollist/${patrol.patrolId}">${patrol.patrolName }</a> (${patrol.track.trackName })<br/>
+	<a href="${pageContext.request.contextPath}/patrol/viewpatrolfrompatrollist/${patrol.patrolId}">${patrol.patrolName }</a> (${patrol.trackName })<br/>
 	${patrol.troop }<br/>
 	Antal stationer: ${patrol.totalReportedStations }
 	</div>
 	</c:forEach>
 	</c:if>
+	<jsp:include page="include_patrolpaging.jsp"><jsp:param name="part" value="paging"/></jsp:include>
 	</div>
 </body>
 </html>
\ No newline at end of file
@@ -33,5 +33,38 @@
 	</div>
 	</c:forEach>
 	</c:if>
+	
+	<c:if test="${not empty trackid }">
+	<%-- Väntar på ändringar i klassen och laddar om sidan när något har rapporterats --%>
+	<script type="text/javascript">
+	(function() {
+		var url = '${pageContext.request.contextPath}/reports/bytrack/${trackid}/feed?since=${version}';
+		function poll() {
+			var xhr = new XMLHttpRequest();
+			xhr.open('GET', url, true);
+			xhr.onreadystatechange = function() {
+				if (xhr.readyState !== 4) {
+					return;
+				}
+				var delay = 5000;
+				if (xhr.status === 200) {
+					try {
+						if (JSON.parse(xhr.responseText).changed) {
+							location.reload();
+							return;
+						}
+						delay = 0;
+					} catch (e) {
+						// inte JSON, t.ex. inloggningssidan
+					}
+				}
+				setTimeout(poll, delay);
+			};
+			xhr.send();
+		}
+		poll();
+	})();
+	</script>
+	</c:if>
 </body>
 </html>
\ No newline at end of file
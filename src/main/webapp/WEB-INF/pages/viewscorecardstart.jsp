@@ -13,7 +13,7 @@
 		<a href="${pageContext.request.contextPath}/">Tillbaka</a>
 		<ul>
 		<c:forEach items="${tracks }" var="track">
-			<li class="nav-item-small"><a href="${pageContext.request.contextPath}/print/bytrack/${track.trackId }">${track.trackName }</a></li> 
+			<li class="nav-item-small"><a href="${pageContext.request.contextPath}/print/bytrack/${track.trackId }">${track.trackName }</a> (<a href="${pageContext.request.contextPath}/print/pdf/${track.trackId }">PDF</a>)</li> 
 		</c:forEach>
 		</ul>
 		</div>
@@ -0,0 +1,351 @@
+package se.gokopen.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.ModelAttribute;
+
+import se.gokopen.dao.ConfigDAO;
+import se.gokopen.dao.CountingConnectionProvider;
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.dao.StationDAO;
+import se.gokopen.dao.TrackDAO;
+import se.gokopen.dao.UserDaoImpl;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+import se.gokopen.service.ConfigServiceImpl;
+import se.gokopen.service.PatrolServiceImpl;
+import se.gokopen.service.ScoreCardServiceImpl;
+import se.gokopen.service.ScoreServiceImpl;
+import se.gokopen.service.StandingsServiceImpl;
+import se.gokopen.service.StationServiceImpl;
+import se.gokopen.service.TrackServiceImpl;
+import se.gokopen.service.UserServiceImpl;
+
+/**
+ * Kör controllers mot en H2-databas med riktiga DAO:er och tjänster, utan
+ * Spring-proxies. Tjänstemetoder med @Transactional körs i en egen
+ * transaktion om ingen redan pågår, så att antalet SQL-satser och lånade
+ * anslutningar per anrop blir detsamma som i drift. Se TestControllerQueries.
+ */
+public class ControllerQueryHarness {
+
+    public interface Action {
+        void run(HttpServletRequest request, HttpServletResponse response) throws Exception;
+    }
+
+    /**
+     * Vad ett anrop kostade i databasen.
+     */
+    public static class QueryCount {
+        final long connections;
+        final long statements;
+        final long entityLoads;
+        final long collectionLoads;
+
+        QueryCount(long connections, long statements, long entityLoads, long collectionLoads) {
+            this.connections = connections;
+            this.statements = statements;
+            this.entityLoads = entityLoads;
+            this.collectionLoads = collectionLoads;
+        }
+
+        @Override
+        public String toString() {
+            return connections + " anslutningar, " + statements + " satser, " + entityLoads + " entiteter, " + collectionLoads
+                    + " samlingar";
+        }
+    }
+
+    private static final Class<?>[] BEANS = { PatrolDAO.class, ScoreDAO.class, StationDAO.class, TrackDAO.class, ConfigDAO.class,
+            UserDaoImpl.class, PatrolServiceImpl.class, ScoreServiceImpl.class, StationServiceImpl.class, TrackServiceImpl.class,
+            StandingsServiceImpl.class, ScoreCardServiceImpl.class, ConfigServiceImpl.class, UserServiceImpl.class,
+            ScoreController.class, ReportsController.class, PrintController.class, ExportController.class };
+
+    private final SessionFactory sessionFactory;
+    private final DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+    private final Map<String, Object> sessionAttributes = new HashMap<String, Object>();
+
+    final List<Track> tracks = new ArrayList<Track>();
+    final List<Station> stations = new ArrayList<Station>();
+    final List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+    final List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+
+    public ControllerQueryHarness(String name) {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.provider_class", CountingConnectionProvider.class.getName());
+        sessionFactory = EmbeddedDatabase.createSessionFactory(name, properties);
+
+        beans.setAutowireCandidateResolver(new ContextAnnotationAutowireCandidateResolver());
+        AutowiredAnnotationBeanPostProcessor autowired = new AutowiredAnnotationBeanPostProcessor();
+        autowired.setBeanFactory(beans);
+        beans.addBeanPostProcessor(autowired);
+        beans.addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return beanName.endsWith("ServiceImpl") || beanName.endsWith("DaoImpl") ? transactional(bean) : bean;
+            }
+        });
+        beans.registerSingleton("sessionFactory", sessionFactory);
+        beans.registerSingleton("transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+        for (Class<?> type : BEANS) {
+            beans.registerBeanDefinition(type.getSimpleName(), new RootBeanDefinition(type));
+        }
+        beans.preInstantiateSingletons();
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("admin", "", AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return beans.getBean(type);
+    }
+
+    /**
+     * Kopplar in tjänsterna i ett objekt som inte är registrerat här, t.ex.
+     * CompetitionGenerator.
+     */
+    public <T> T autowire(T bean) {
+        beans.autowireBean(bean);
+        return bean;
+    }
+
+    /**
+     * Klasser med patruller som har poäng på alla kontroller utom de två
+     * sista, så att det finns patruller kvar att rapportera.
+     */
+    public void seed(int trackCount, int stationCount, int patrolsPerTrack) throws ScoreNotSavedException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        for (int s = 1; s <= stationCount; s++) {
+            Station station = new Station();
+            station.setStationName("Kontroll " + s);
+            station.setStationNumber(s);
+            station.setMaxScore(10);
+            station.setMaxStyleScore(5);
+            session.save(station);
+            stations.add(station);
+        }
+        for (int t = 1; t <= trackCount; t++) {
+            Track track = new Track();
+            track.setTrackName("Klass " + t);
+            session.save(track);
+            tracks.add(track);
+            for (int p = 1; p <= patrolsPerTrack; p++) {
+                PatrolImpl patrol = new PatrolImpl();
+                patrol.setPatrolName("Patrull " + t + "-" + p);
+                patrol.setTroop("Kår " + (p % 5));
+                patrol.setTrack(track);
+                session.save(patrol);
+                patrols.add(patrol);
+                for (int s = 0; s < stationCount - 2; s++) {
+                    ScoreImpl score = new ScoreImpl();
+                    score.setPatrol(patrol);
+                    score.setStation(stations.get(s));
+                    score.setScorePoint((p + s) % 11);
+                    score.setStylePoint((p * s) % 6);
+                    scores.add(score);
+                }
+            }
+        }
+        session.flush();
+        getBean(ScoreDAO.class).saveNewScores(scores);
+        session.getTransaction().commit();
+    }
+
+    /**
+     * Kör anropet med @ModelAttribute-metoderna först, som Spring gör, och
+     * räknar vad det kostade.
+     */
+    public QueryCount measure(Object controller, Map<String, String> parameters, Action action) throws Exception {
+        HttpServletRequest request = request(parameters);
+        HttpServletResponse response = response();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        CountingConnectionProvider connections = CountingConnectionProvider.of(sessionFactory);
+        connections.clear();
+        for (Method method : controller.getClass().getMethods()) {
+            if (method.isAnnotationPresent(ModelAttribute.class)) {
+                method.invoke(controller);
+            }
+        }
+        action.run(request, response);
+        return new QueryCount(connections.getConnectionCount(), connections.getStatementCount(), statistics.getEntityLoadCount(),
+                statistics.getCollectionLoadCount());
+    }
+
+    /**
+     * Binder anropets parametrar till formulärobjektet med controllerns
+     * @InitBinder, som när formuläret skickas.
+     */
+    public void bind(Object controller, Object target, HttpServletRequest request, Map<String, String> form) {
+        WebDataBinder binder = new WebDataBinder(target, "target");
+        ReflectionTestUtils.invokeMethod(controller, "initBinder", binder, request);
+        binder.bind(new MutablePropertyValues(form));
+    }
+
+    public void close() {
+        SecurityContextHolder.clearContext();
+        beans.destroySingletons();
+        sessionFactory.close();
+    }
+
+    /**
+     * Anrop och session som bara har det controllers använder: parametrar,
+     * attribut och context path. Byggda med Proxy, då Springs attrapper kräver
+     * Servlet 3.0.
+     */
+    private HttpServletRequest request(final Map<String, String> parameters) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final HttpSession session = fake(HttpSession.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return attributes(method, args, sessionAttributes);
+            }
+        });
+        return fake(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getSession")) {
+                    return session;
+                } else if (name.equals("getContextPath")) {
+                    return "";
+                } else if (name.equals("getParameterValues")) {
+                    String value = parameters.get(args[0]);
+                    return value == null ? null : value.split(",");
+                } else if (name.equals("getParameter")) {
+                    String value = parameters.get(args[0]);
+                    return value == null ? null : value.split(",")[0];
+                } else if (name.equals("getParameterNames")) {
+                    return Collections.enumeration(parameters.keySet());
+                }
+                return attributes(method, args, attributes);
+            }
+        });
+    }
+
+    private static HttpServletResponse response() {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        };
+        final Writer writer = new PrintWriter(new StringWriter());
+        return fake(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getOutputStream")) {
+                    return out;
+                } else if (method.getName().equals("getWriter")) {
+                    return writer;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Object attributes(Method method, Object[] args, Map<String, Object> attributes) {
+        if (method.getName().equals("getAttribute")) {
+            return attributes.get(args[0]);
+        } else if (method.getName().equals("setAttribute")) {
+            attributes.put((String) args[0], args[1]);
+        } else if (method.getName().equals("removeAttribute")) {
+            attributes.remove(args[0]);
+        }
+        return null;
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ControllerQueryHarness.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private Object transactional(final Object target) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), ClassUtils.getAllInterfaces(target), new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Session session = sessionFactory.getCurrentSession();
+                if (!isTransactional(method, target) || session.getTransaction().isActive()) {
+                    return call(method, target, args);
+                }
+                Transaction transaction = session.beginTransaction();
+                try {
+                    Object result = call(method, target, args);
+                    transaction.commit();
+                    return result;
+                } catch (Throwable e) {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Bara metoder med @Transactional, Springs eller JTA:s, får en
+     * transaktion, som i applikationen.
+     */
+    private static boolean isTransactional(Method method, Object target) {
+        Method implementation = ClassUtils.getMostSpecificMethod(method, target.getClass());
+        return AnnotationUtils.findAnnotation(implementation, Transactional.class) != null
+                || AnnotationUtils.findAnnotation(target.getClass(), Transactional.class) != null
+                || AnnotationUtils.findAnnotation(implementation, javax.transaction.Transactional.class) != null;
+    }
+
+    private static Object call(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
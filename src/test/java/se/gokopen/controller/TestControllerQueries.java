@@ -0,0 +1,348 @@
+package se.gokopen.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.gokopen.controller.ControllerQueryHarness.Action;
+import se.gokopen.controller.ControllerQueryHarness.QueryCount;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.ScoreSheet;
+import se.gokopen.model.Station;
+import se.gokopen.service.StationService;
+import se.gokopen.service.StationUserIndex;
+import se.gokopen.service.TrackService;
+
+/**
+ * Övre gränser för antalet SQL-satser och laddade entiteter per anrop till
+ * ScoreController, ReportsController och PrintController. Tävlingen är så
+ * stor att en fråga per patrull eller poäng spräcker gränserna, så ett
+ * N+1-mönster som smyger sig tillbaka får bygget att fallera. Sänk gränsen
+ * när ett anrop blir billigare.
+ */
+public class TestControllerQueries {
+
+    private static final int TRACKS = 2;
+    private static final int STATIONS = 8;
+    private static final int PATROLS_PER_TRACK = 40;
+    private static final int ALL_PATROLS = TRACKS * PATROLS_PER_TRACK;
+    private static final int SCORED_STATIONS = STATIONS - 2;
+    private static final int SHEET_ROWS = 20;
+
+    private ControllerQueryHarness harness;
+    private ScoreController scoreController;
+    private ReportsController reportsController;
+    private PrintController printController;
+    private String trackId;
+    private String openStationId;
+
+    @Before
+    public void setup() throws Exception {
+        harness = new ControllerQueryHarness("controllerqueries");
+        harness.seed(TRACKS, STATIONS, PATROLS_PER_TRACK);
+        scoreController = harness.getBean(ScoreController.class);
+        reportsController = harness.getBean(ReportsController.class);
+        printController = harness.getBean(PrintController.class);
+        trackId = harness.tracks.get(0).getTrackId().toString();
+        openStationId = harness.stations.get(STATIONS - 1).getStationId().toString();
+
+        // Kontroller och klasser ligger i minnet under en tävling
+        harness.getBean(StationService.class).getAllStations();
+        harness.getBean(TrackService.class).getAllTracks();
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    // Gränserna nedan är uppmätta med TRACKS klasser, STATIONS kontroller och
+    // PATROLS_PER_TRACK patruller per klass, med poäng på SCORED_STATIONS.
+    // Entiteterna växer med tävlingen, SQL-satserna ska inte göra det.
+
+    @Test
+    public void startScore() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.startScore();
+            }
+        });
+        assertAtMost(count, 0, 0, 0);
+        // Klasser och kontroller läses ur cachen utan transaktion
+        assertEquals("Lånade anslutningar: " + count, 0, count.connections);
+    }
+
+    @Test
+    public void selectStation() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                ScoreImpl score = new ScoreImpl();
+                harness.bind(scoreController, score, request, form("station", openStationId));
+                scoreController.selectStation(score, null, request, response);
+                assertEquals(ALL_PATROLS, ((List<?>) request.getAttribute("patrols")).size());
+            }
+        });
+        assertAtMost(count, 3, ALL_PATROLS + TRACKS, 0);
+    }
+
+    @Test
+    public void saveScore() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                ScoreImpl score = new ScoreImpl();
+                harness.bind(scoreController, score, request, form("patrol", patrolId(0), "station", openStationId,
+                        "scorePoint", "7", "stylePoint", "3"));
+                scoreController.saveScore(score, null, request, response);
+                assertEquals(null, request.getAttribute("errormsg"));
+            }
+        });
+        assertAtMost(count, 6, ALL_PATROLS + TRACKS + 1, 0);
+    }
+
+    @Test
+    public void scoreSheet() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.startScoreSheet(openStationId, request);
+            }
+        });
+        assertAtMost(count, 3, ALL_PATROLS + TRACKS, 0);
+    }
+
+    @Test
+    public void saveScoreSheet() throws Exception {
+        final Map<String, String> form = form("station", openStationId);
+        for (int i = 0; i < SHEET_ROWS; i++) {
+            form.put("scores[" + i + "].patrol", patrolId(i));
+            form.put("scores[" + i + "].scorePoint", "5");
+            form.put("scores[" + i + "].stylePoint", "1");
+        }
+        QueryCount count = harness.measure(scoreController, form, new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                ScoreSheet sheet = new ScoreSheet();
+                harness.bind(scoreController, sheet, request, form);
+                scoreController.saveScoreSheet(sheet, null, request, response);
+                assertEquals(null, request.getAttribute("errormsg"));
+            }
+        });
+        assertAtMost(count, 7, ALL_PATROLS + TRACKS + 1, 0);
+    }
+
+    @Test
+    public void offlineScore() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.startOfflineScore(openStationId, request);
+            }
+        });
+        assertAtMost(count, 3, ALL_PATROLS + TRACKS, 0);
+    }
+
+    @Test
+    public void syncScores() throws Exception {
+        StringBuilder keys = new StringBuilder();
+        StringBuilder patrolIds = new StringBuilder();
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            String separator = i > 0 ? "," : "";
+            keys.append(separator).append("nyckel-").append(i);
+            patrolIds.append(separator).append(patrolId(i));
+            points.append(separator).append(i % 5);
+        }
+        QueryCount count = harness.measure(scoreController, form("key", keys.toString(), "patrolId", patrolIds.toString(),
+                "scorePoint", points.toString(), "stylePoint", points.toString()), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                String json = scoreController.syncScores(openStationId, request, response);
+                assertTrue(json, json.contains("\"saved\""));
+            }
+        });
+        assertAtMost(count, 8, ALL_PATROLS + TRACKS + 1, 0);
+    }
+
+    @Test
+    public void viewScore() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.viewScore(scoreId(0), request);
+            }
+        });
+        assertAtMost(count, 1, 4, 0);
+    }
+
+    @Test
+    public void editScoreFromPatrol() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.editScoreFromPatrolView(scoreId(0), patrolId(0), request);
+            }
+        });
+        assertAtMost(count, 1, 4, 0);
+    }
+
+    @Test
+    public void saveScoreFromPatrol() throws Exception {
+        final ScoreImpl saved = harness.scores.get(0);
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                ScoreImpl score = new ScoreImpl();
+                harness.bind(scoreController, score, request, form("scoreId", saved.getScoreId().toString(),
+                        "patrol", saved.getPatrol().getPatrolId().toString(), "station", saved.getStation().getStationId().toString(),
+                        "scorePoint", "9", "stylePoint", "4"));
+                scoreController.saveScoreFromPatrol(score, null, request, response);
+                assertEquals(null, request.getAttribute("errormsg"));
+            }
+        });
+        assertAtMost(count, 5, SCORED_STATIONS + 10, 1);
+    }
+
+    @Test
+    public void deleteScore() throws Exception {
+        QueryCount count = harness.measure(scoreController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                scoreController.deleteScore(scoreId(0), harness.scores.get(0).getPatrol().getPatrolId().toString(), request);
+                assertEquals(null, request.getAttribute("errormsg"));
+            }
+        });
+        assertAtMost(count, 5, SCORED_STATIONS + 10, 1);
+    }
+
+    @Test
+    public void patrolList() throws Exception {
+        QueryCount count = harness.measure(reportsController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                reportsController.viewPatrols(Integer.valueOf(trackId), null, null, null);
+            }
+        });
+        assertAtMost(count, 2, 0, 0);
+    }
+
+    @Test
+    public void standingsStart() throws Exception {
+        QueryCount count = harness.measure(reportsController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                reportsController.startPatrolsByTrack(request);
+            }
+        });
+        assertAtMost(count, 0, 0, 0);
+    }
+
+    @Test
+    public void standingsByTrack() throws Exception {
+        QueryCount count = harness.measure(reportsController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                reportsController.startPatrolsByTrack(trackId, request);
+            }
+        });
+        assertAtMost(count, 8, PATROLS_PER_TRACK * (1 + SCORED_STATIONS) + 7, PATROLS_PER_TRACK);
+    }
+
+    @Test
+    public void standingsFeed() throws Exception {
+        QueryCount count = harness.measure(reportsController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                String json = reportsController.standingsFeed(trackId, null, response);
+                assertTrue(json, json.contains("\"standings\""));
+            }
+        });
+        assertAtMost(count, 8, PATROLS_PER_TRACK * (1 + SCORED_STATIONS) + 7, PATROLS_PER_TRACK);
+    }
+
+    @Test
+    public void printStart() throws Exception {
+        QueryCount count = harness.measure(printController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                printController.printScoreCardsStart(request);
+            }
+        });
+        assertAtMost(count, 0, 0, 0);
+    }
+
+    @Test
+    public void printScoreCards() throws Exception {
+        QueryCount count = harness.measure(printController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) {
+                printController.printScoreCardForTrack(trackId, request);
+            }
+        });
+        assertAtMost(count, 8, PATROLS_PER_TRACK * (1 + SCORED_STATIONS) + 7, PATROLS_PER_TRACK);
+    }
+
+    @Test
+    public void printScoreCardPdf() throws Exception {
+        QueryCount count = harness.measure(printController, form(), new Action() {
+            @Override
+            public void run(HttpServletRequest request, HttpServletResponse response) throws Exception {
+                printController.printScoreCardPdfForTrack(trackId, response);
+            }
+        });
+        assertAtMost(count, 3, PATROLS_PER_TRACK + STATIONS + 1, 0);
+    }
+
+    @Test
+    public void stationUserIndexIsBuiltOncePerChange() throws Exception {
+        StationService stationService = harness.getBean(StationService.class);
+        StationUserIndex index = stationService.getStationUserIndex();
+        assertSame(index, stationService.getStationUserIndex());
+
+        Station station = stationService.getStationById(Integer.valueOf(openStationId));
+        station.setStationUser("nykontroll");
+        stationService.saveStation(station);
+
+        StationUserIndex changed = stationService.getStationUserIndex();
+        assertNotSame(index, changed);
+        assertTrue(changed.getVersion() > index.getVersion());
+        assertTrue(changed.getStationIds("nykontroll").contains(station.getStationId()));
+        assertSame(changed, stationService.getStationUserIndex());
+    }
+
+    private String patrolId(int index) {
+        return harness.patrols.get(index).getPatrolId().toString();
+    }
+
+    private String scoreId(int index) {
+        return harness.scores.get(index).getScoreId().toString();
+    }
+
+    private static Map<String, String> form(String... nameValues) {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            form.put(nameValues[i], nameValues[i + 1]);
+        }
+        return form;
+    }
+
+    private static void assertAtMost(QueryCount count, long statements, long entityLoads, long collectionLoads) {
+        assertTrue("För många SQL-satser: " + count, count.statements <= statements);
+        assertTrue("För många laddade entiteter: " + count, count.entityLoads <= entityLoads);
+        assertTrue("För många laddade samlingar: " + count, count.collectionLoads <= collectionLoads);
+    }
+}
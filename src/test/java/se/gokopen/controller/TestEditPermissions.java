@@ -0,0 +1,74 @@
+package se.gokopen.controller;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import se.gokopen.model.Station;
+import se.gokopen.service.StationUserIndex;
+
+public class TestEditPermissions {
+
+    @Test
+    public void stationUserMayOnlyEditOwnStations() {
+        List<Station> stations = new ArrayList<Station>();
+        Station own = station(1, "Kontroll1");
+        Station other = station(2, "kontroll2");
+        Station alsoOwn = station(3, "KONTROLL1");
+        stations.add(own);
+        stations.add(other);
+        stations.add(alsoOwn);
+
+        EditPermissions permissions = EditPermissions.create(login("kontroll1", "ROLE_USER"), new StationUserIndex(stations, 1));
+
+        assertTrue(permissions.isEditAllowedOnStation(own));
+        assertTrue(permissions.isEditAllowedOnStation(alsoOwn));
+        assertFalse(permissions.isEditAllowedOnStation(other));
+        assertFalse(permissions.isEditAllowedOnStation(null));
+    }
+
+    @Test
+    public void adminAndStartFinishMayEditAllStations() {
+        StationUserIndex index = new StationUserIndex(new ArrayList<Station>(), 1);
+        Station station = station(1, "kontroll1");
+
+        assertTrue(EditPermissions.create(login("admin", "ROLE_ADMIN"), index).isEditAllowedOnStation(station));
+        assertTrue(EditPermissions.create(login("start", "ROLE_STARTFINISH"), index).isEditAllowedOnStation(station));
+        assertFalse(EditPermissions.create(login("kontroll1", "ROLE_USER"), index).isEditAllowedOnStation(station));
+    }
+
+    @Test
+    public void permissionsAreRecomputedWhenStationsChange() {
+        List<Station> before = new ArrayList<Station>();
+        before.add(station(1, "kontroll1"));
+        StationUserIndex oldIndex = new StationUserIndex(before, 1);
+        Authentication authentication = login("kontroll1", "ROLE_USER");
+        EditPermissions permissions = EditPermissions.create(authentication, oldIndex);
+        assertTrue(permissions.isCurrent(authentication, oldIndex));
+
+        List<Station> after = new ArrayList<Station>(before);
+        after.add(station(2, "kontroll1"));
+        StationUserIndex newIndex = new StationUserIndex(after, 2);
+        assertFalse(permissions.isCurrent(authentication, newIndex));
+        assertTrue(EditPermissions.create(authentication, newIndex).isEditAllowedOnStation(after.get(1)));
+        assertFalse(permissions.isCurrent(login("kontroll2", "ROLE_USER"), oldIndex));
+    }
+
+    private static Station station(int id, String stationUser) {
+        Station station = new Station();
+        station.setStationId(id);
+        station.setStationUser(stationUser);
+        return station;
+    }
+
+    private static Authentication login(String username, String role) {
+        return new UsernamePasswordAuthenticationToken(username, "", AuthorityUtils.createAuthorityList(role));
+    }
+}
@@ -0,0 +1,101 @@
+package se.gokopen.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.validation.DataBinder;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.StationDAO;
+import se.gokopen.dao.TrackDAO;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+import se.gokopen.service.PatrolServiceImpl;
+import se.gokopen.service.StationServiceImpl;
+import se.gokopen.service.TrackServiceImpl;
+
+/**
+ * Räknar SQL-satser när ett poängformulär binds två gånger under samma anrop,
+ * som när flera @InitBinder-anrop görs. Varje uppslag görs i en egen
+ * transaktion precis som i tjänsterna.
+ */
+public class TestEditorQueries {
+
+    private SessionFactory sessionFactory;
+    private PatrolServiceImpl patrolService;
+    private StationServiceImpl stationService;
+    private TrackServiceImpl trackService;
+    private MutablePropertyValues form;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("editorqueries");
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        StationDAO stationDao = new StationDAO();
+        ReflectionTestUtils.setField(stationDao, "sessionFactory", sessionFactory);
+        TrackDAO trackDao = new TrackDAO();
+        ReflectionTestUtils.setField(trackDao, "sessionFactory", sessionFactory);
+        patrolService = new PatrolServiceImpl();
+        ReflectionTestUtils.setField(patrolService, "patrolDao", patrolDao);
+        stationService = new StationServiceImpl();
+        ReflectionTestUtils.setField(stationService, "stationDao", stationDao);
+        ReflectionTestUtils.setField(stationService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+        trackService = new TrackServiceImpl();
+        ReflectionTestUtils.setField(trackService, "trackDao", trackDao);
+        ReflectionTestUtils.setField(trackService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        Station station = new Station();
+        session.save(station);
+        PatrolImpl patrol = new PatrolImpl();
+        session.save(patrol);
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrol);
+        score.setStation(station);
+        session.save(score);
+        session.getTransaction().commit();
+
+        form = new MutablePropertyValues();
+        form.add("patrol", patrol.getPatrolId().toString());
+        form.add("station", station.getStationId().toString());
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void shouldLookUpEachEntityOnlyOncePerRequest() {
+        // Första anropet laddar även kontrollerna till cachen
+        assertEquals(2, bindTwice());
+        assertEquals(1, bindTwice());
+    }
+
+    private long bindTwice() {
+        sessionFactory.getStatistics().clear();
+        RequestIdentityMap identityMap = new RequestIdentityMap();
+        for (int i = 0; i < 2; i++) {
+            Session session = sessionFactory.getCurrentSession();
+            session.beginTransaction();
+            DataBinder binder = new DataBinder(new ScoreImpl(), "score");
+            binder.registerCustomEditor(Station.class, new StationEditor(stationService, identityMap));
+            binder.registerCustomEditor(PatrolImpl.class, new PatrolEditor(patrolService, identityMap));
+            binder.registerCustomEditor(Track.class, new TrackEditor(trackService, identityMap));
+            binder.bind(form);
+            session.getTransaction().commit();
+        }
+        return sessionFactory.getStatistics().getPrepareStatementCount();
+    }
+}
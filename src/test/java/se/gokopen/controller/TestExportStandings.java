@@ -0,0 +1,68 @@
+package se.gokopen.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.gokopen.dao.RowHandler;
+import se.gokopen.model.Config;
+import se.gokopen.model.Standing;
+import se.gokopen.model.Track;
+import se.gokopen.service.ConfigService;
+import se.gokopen.service.StandingsService;
+
+/**
+ * Exporten av resultatlistorna ska ha samma placeringar som resultatsidorna,
+ * även när tävlingen har en annan rangordning än standard.
+ */
+public class TestExportStandings {
+
+    private ControllerQueryHarness harness;
+
+    @Before
+    public void setup() throws Exception {
+        harness = new ControllerQueryHarness("exportstandings");
+        harness.seed(2, 5, 12);
+        ConfigService configService = harness.getBean(ConfigService.class);
+        Config config = configService.getCurrentConfig();
+        config.setRankingOrder("STYLE_POINT,TOTAL");
+        configService.saveConfig(config);
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    public void exportFollowsTheRankingOrder() throws Exception {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        harness.getBean(ExportController.class).forEachStanding(new RowHandler() {
+            @Override
+            public void handleRow(Object[] row) {
+                rows.add(row);
+            }
+        });
+
+        int row = 0;
+        for (Track track : harness.tracks) {
+            List<Standing> standings = harness.getBean(StandingsService.class).getStandingsByTrack(track);
+            for (int position = 1; position <= standings.size(); position++) {
+                Object[] exported = rows.get(row++);
+                assertEquals(track.getTrackId(), exported[0]);
+                assertEquals(position, exported[2]);
+                assertEquals(standings.get(position - 1).getPatrolId(), exported[3]);
+                if (position > 1) {
+                    assertTrue((Integer) rows.get(row - 2)[8] >= (Integer) exported[8]);
+                }
+            }
+        }
+        assertEquals(rows.size(), row);
+    }
+}
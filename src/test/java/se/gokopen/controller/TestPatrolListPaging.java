@@ -0,0 +1,92 @@
+package se.gokopen.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.ModelMap;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.PatrolPage;
+import se.gokopen.model.PatrolSummary;
+import se.gokopen.service.PatrolService;
+import se.gokopen.service.PatrolServiceImpl;
+
+/**
+ * Bläddring i patrullistan med samma parametrar som länkarna i
+ * include_patrolpaging.jsp skickar, där ett värde som saknas blir en tom
+ * sträng.
+ */
+public class TestPatrolListPaging {
+
+    private static final int PATROLS = 2 * PatrolPage.DEFAULT_SIZE;
+    private static final int UNNAMED = PatrolPage.DEFAULT_SIZE + 10;
+
+    private SessionFactory sessionFactory;
+    private PatrolService patrolService;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSpringSessionFactory("patrollistpaging");
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        PatrolServiceImpl target = new PatrolServiceImpl();
+        ReflectionTestUtils.setField(target, "patrolDao", patrolDao);
+        patrolService = EmbeddedDatabase.transactional(PatrolService.class, target, sessionFactory);
+
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        for (int p = 0; p < PATROLS; p++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("Patrull " + (1000 + p));
+            session.save(patrol);
+        }
+        // Patruller utan namn kommer först, så de två första sidorna slutar med en av dem
+        for (int p = 0; p < UNNAMED; p++) {
+            session.save(new PatrolImpl());
+        }
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void nextPageLinksCoverAllPatrols() {
+        Set<Integer> seen = new HashSet<Integer>();
+        ModelMap model = PatrolListModel.create(patrolService, "/patrol", null, "", null, null);
+        int pages = 1;
+        while (true) {
+            @SuppressWarnings("unchecked")
+            List<PatrolSummary> patrols = (List<PatrolSummary>) model.get("patrols");
+            for (PatrolSummary patrol : patrols) {
+                assertTrue("Patrullen visas två gånger: " + patrol.getPatrolId(), seen.add(patrol.getPatrolId()));
+            }
+            PatrolPage page = (PatrolPage) model.get("page");
+            if (!page.isMore()) {
+                break;
+            }
+            // Som <c:param>, där null blir en tom sträng
+            String afterName = page.getLast().getPatrolName() != null ? page.getLast().getPatrolName() : "";
+            String afterId = page.getLast().getPatrolId().toString();
+            model = PatrolListModel.create(patrolService, "/patrol", null, "", afterName, Integer.valueOf(afterId));
+            pages++;
+        }
+        assertEquals(PATROLS + UNNAMED, seen.size());
+        assertEquals(4, pages);
+    }
+}
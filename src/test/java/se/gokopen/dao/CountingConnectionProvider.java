@@ -0,0 +1,80 @@
+package se.gokopen.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Räknar alla satser som skapas på anslutningarna, både Hibernates egna och
+ * JDBC-batchar som körs med Session.doWork, vilka Hibernates statistik inte
+ * ser, och hur många anslutningar som lånas. Används med
+ * hibernate.connection.provider_class.
+ */
+public class CountingConnectionProvider extends DriverManagerConnectionProviderImpl {
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+
+    public static CountingConnectionProvider of(SessionFactory sessionFactory) {
+        return (CountingConnectionProvider) ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+                .getService(ConnectionProvider.class);
+    }
+
+    public long getStatementCount() {
+        return statements.get();
+    }
+
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    public void clear() {
+        statements.set(0);
+        connections.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        connections.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                new Counting(super.getConnection()));
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        if (Proxy.isProxyClass(connection.getClass()) && Proxy.getInvocationHandler(connection) instanceof Counting) {
+            connection = ((Counting) Proxy.getInvocationHandler(connection)).connection;
+        }
+        super.closeConnection(connection);
+    }
+
+    private class Counting implements InvocationHandler {
+        private final Connection connection;
+
+        Counting(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+                statements.incrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package se.gokopen.dao;
+
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.orm.hibernate4.SpringSessionContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import se.gokopen.model.Config;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+import se.gokopen.model.User;
+
+/**
+ * Hibernate mot en H2-databas i minnet (MySQL-läge) för tester som ska gå att
+ * köra utan en MySQL-server. Sessioner knyts till tråden, så testet ansvarar
+ * själv för att starta och avsluta transaktioner, utom med
+ * createSpringSessionFactory.
+ */
+public class EmbeddedDatabase {
+
+    private EmbeddedDatabase() {
+
+    }
+
+    public static SessionFactory createSessionFactory(String name) {
+        return createSessionFactory(name, new Properties());
+    }
+
+    /**
+     * Som ovan men med egna Hibernate-inställningar, t.ex. en annan
+     * hibernate.connection.provider_class.
+     */
+    public static SessionFactory createSessionFactory(String name, Properties properties) {
+        Properties connection = new Properties();
+        connection.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        connection.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        connection.setProperty("hibernate.connection.username", "sa");
+        connection.putAll(properties);
+        return buildSessionFactory(connection);
+    }
+
+    /**
+     * Hibernate på en färdig anslutningspool, t.ex. för att mäta poolen.
+     */
+    public static SessionFactory createSessionFactory(DataSource dataSource) {
+        Properties connection = new Properties();
+        connection.put("hibernate.connection.datasource", dataSource);
+        return buildSessionFactory(connection);
+    }
+
+    private static SessionFactory buildSessionFactory(Properties properties) {
+        Configuration configuration = new Configuration();
+        configuration.addAnnotatedClass(PatrolImpl.class);
+        configuration.addAnnotatedClass(ScoreImpl.class);
+        configuration.addAnnotatedClass(Station.class);
+        configuration.addAnnotatedClass(Track.class);
+        configuration.addAnnotatedClass(Config.class);
+        configuration.addAnnotatedClass(User.class);
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.current_session_context_class", "thread");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+        configuration.addProperties(properties);
+        return configuration.buildSessionFactory(new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build());
+    }
+
+    /**
+     * Sessioner som i applikationen: knutna till Springs transaktioner i
+     * stället för till tråden. Används med transactional.
+     */
+    public static SessionFactory createSpringSessionFactory(String name) {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.current_session_context_class", SpringSessionContext.class.getName());
+        return createSessionFactory(name, properties);
+    }
+
+    /**
+     * Tjänsten bakom en proxy med Springs transaktionshantering, så att
+     * @Transactional, rollbackFor och återställning vid fel gäller som i
+     * applikationen. Kräver en SessionFactory från createSpringSessionFactory.
+     */
+    public static <T> T transactional(Class<T> type, T target, SessionFactory sessionFactory) {
+        return transactional(type, target, createSpringTransactionManager(sessionFactory));
+    }
+
+    /**
+     * Som ovan med en given transaktionshanterare, den som tjänsten själv
+     * använder i TransactionTemplate.
+     */
+    public static <T> T transactional(Class<T> type, T target, PlatformTransactionManager transactionManager) {
+        ProxyFactory proxy = new ProxyFactory(target);
+        proxy.setInterfaces(type);
+        proxy.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return type.cast(proxy.getProxy());
+    }
+
+    /**
+     * Springs HibernateTransactionManager, för en SessionFactory från
+     * createSpringSessionFactory.
+     */
+    public static PlatformTransactionManager createSpringTransactionManager(SessionFactory sessionFactory) {
+        HibernateTransactionManager transactionManager = new HibernateTransactionManager();
+        transactionManager.setSessionFactory(sessionFactory);
+        // Hibernate har egna anslutningar här, ingen DataSource att hämta
+        transactionManager.setAutodetectDataSource(false);
+        transactionManager.afterPropertiesSet();
+        return transactionManager;
+    }
+
+    /**
+     * För kod som själv startar transaktioner med TransactionTemplate.
+     * Transaktionen körs på trådens session precis som i testerna.
+     */
+    public static PlatformTransactionManager createTransactionManager(final SessionFactory sessionFactory) {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                // En transaktion som redan pågår används, som med PROPAGATION_REQUIRED
+                if (sessionFactory.getCurrentSession().getTransaction().isActive()) {
+                    return new SimpleTransactionStatus(false);
+                }
+                sessionFactory.getCurrentSession().beginTransaction();
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                if (status.isNewTransaction() && status.isRollbackOnly()) {
+                    sessionFactory.getCurrentSession().getTransaction().rollback();
+                } else if (status.isNewTransaction()) {
+                    sessionFactory.getCurrentSession().getTransaction().commit();
+                }
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                if (status.isNewTransaction()) {
+                    sessionFactory.getCurrentSession().getTransaction().rollback();
+                }
+            }
+        };
+    }
+}
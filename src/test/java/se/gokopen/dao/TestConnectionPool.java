@@ -0,0 +1,181 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.dbcp.DelegatingPreparedStatement;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.service.LatencyHistogram;
+
+/**
+ * Många kontroller som sparar poäng samtidigt genom en för liten pool.
+ * Varje sparning håller sin anslutning en stund, så att väntetiden blir
+ * förutsägbar.
+ */
+public class TestConnectionPool {
+
+    private static final int STATIONS = 16;
+    private static final int CONNECTIONS = 2;
+    private static final long HOLD_MILLIS = 20;
+    private static final long MAX_WAIT_MILLIS = 10;
+
+    private MeteredDataSource dataSource;
+    private SessionFactory sessionFactory;
+    private ScoreDAO scoreDao;
+    private PatrolImpl patrol;
+    private List<Station> stations = new ArrayList<Station>();
+
+    @Before
+    public void setup() {
+        dataSource = new MeteredDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:connectionpool;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaxActive(CONNECTIONS);
+        dataSource.setMaxIdle(CONNECTIONS);
+        dataSource.setMaxWait(10000);
+        dataSource.setPoolPreparedStatements(true);
+
+        sessionFactory = EmbeddedDatabase.createSessionFactory(dataSource);
+        scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        patrol = new PatrolImpl();
+        patrol.setPatrolName("TestPatrol1");
+        session.save(patrol);
+        for (int i = 0; i < STATIONS; i++) {
+            Station station = new Station();
+            station.setStationName("TestStation" + i);
+            session.save(station);
+            stations.add(station);
+        }
+        session.getTransaction().commit();
+        dataSource.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sessionFactory.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void savesWaitForConnectionsWhenThePoolIsFull() throws Exception {
+        assertEquals(STATIONS, saveConcurrently(null));
+
+        LatencyHistogram waits = dataSource.getWaits();
+        assertEquals(STATIONS, waits.getCount());
+        assertEquals(0, waits.getErrors());
+        assertEquals(CONNECTIONS, dataSource.getPeakActive());
+        // Den sista kontrollen väntar på att nästan alla andra blir klara
+        long minimumLastWait = (STATIONS / CONNECTIONS - 1) * HOLD_MILLIS;
+        assertTrue("Längsta väntan " + waits.getMaxMillis() + " ms", waits.getMaxMillis() >= minimumLastWait);
+    }
+
+    @Test
+    public void savesGiveUpAfterMaxWait() throws Exception {
+        dataSource.setMaxWait(MAX_WAIT_MILLIS);
+
+        // De som fick en anslutning håller den tills alla andra har gett upp
+        int saved = saveConcurrently(new CountDownLatch(STATIONS - CONNECTIONS));
+
+        LatencyHistogram waits = dataSource.getWaits();
+        assertEquals(CONNECTIONS, saved);
+        assertEquals(STATIONS - CONNECTIONS, waits.getErrors());
+    }
+
+    @Test
+    public void preparedStatementsAreReusedOnTheSameConnection() throws Exception {
+        String sql = "select scoreid from score where fk_patrol=? and fk_station=?";
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement first = connection.prepareStatement(sql);
+            Object pooled = ((DelegatingPreparedStatement) first).getInnermostDelegate();
+            first.close();
+            PreparedStatement second = connection.prepareStatement(sql);
+            assertSame(pooled, ((DelegatingPreparedStatement) second).getInnermostDelegate());
+            second.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Sparar en poäng från varje kontroll på en gång.
+     *
+     * @param failed räknas ned av varje sparning som inte får någon
+     *            anslutning, och de som fick en håller den tills den når noll;
+     *            null för att hålla den i HOLD_MILLIS
+     * @return antalet som sparades
+     */
+    private int saveConcurrently(final CountDownLatch failed) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(STATIONS);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (final Station station : stations) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    ScoreImpl score = new ScoreImpl();
+                    score.setPatrol(patrol);
+                    score.setStation(station);
+                    score.setScorePoint(5);
+                    start.await();
+                    Session session = sessionFactory.getCurrentSession();
+                    try {
+                        session.beginTransaction();
+                    } catch (HibernateException e) {
+                        // Ingen ledig anslutning inom maxWait
+                        session.close();
+                        if (failed != null) {
+                            failed.countDown();
+                        }
+                        return false;
+                    }
+                    scoreDao.save(score);
+                    if (failed == null) {
+                        Thread.sleep(HOLD_MILLIS);
+                    } else if (!failed.await(10, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Alla sparningar utan anslutning gav inte upp");
+                    }
+                    session.getTransaction().commit();
+                    return true;
+                }
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                saved++;
+            }
+        }
+        executor.shutdown();
+        return saved;
+    }
+}
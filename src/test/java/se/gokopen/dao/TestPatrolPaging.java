@@ -0,0 +1,106 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.PatrolSummary;
+import se.gokopen.model.Track;
+
+public class TestPatrolPaging {
+
+    private static final int PATROLS = 25;
+
+    private SessionFactory sessionFactory;
+    private PatrolDAO patrolDao;
+    private Track track;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("patrolpaging");
+        patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        track = new Track();
+        track.setTrackName("Spårare");
+        session.save(track);
+        Track other = new Track();
+        other.setTrackName("Upptäckare");
+        session.save(other);
+        for (int p = 0; p < PATROLS; p++) {
+            PatrolImpl patrol = new PatrolImpl();
+            // Var femte patrull heter likadant så att id avgör ordningen
+            patrol.setPatrolName(p % 5 == 0 ? "Samma" : "Patrull " + (char) ('A' + p));
+            patrol.setTroop(p % 2 == 0 ? "Kåren" : "Scoutkåren");
+            patrol.setTrack(p % 3 == 0 ? other : track);
+            session.save(patrol);
+        }
+        PatrolImpl unnamed = new PatrolImpl();
+        unnamed.setTrack(track);
+        session.save(unnamed);
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void pagesCoverAllPatrolsInNameOrder() {
+        List<PatrolSummary> all = pageThrough(null, null, 7);
+        assertEquals(PATROLS + 1, all.size());
+        assertEquals(null, all.get(0).getPatrolName());
+        for (int i = 1; i < all.size(); i++) {
+            PatrolSummary previous = all.get(i - 1);
+            PatrolSummary current = all.get(i);
+            if (previous.getPatrolName() != null) {
+                int order = previous.getPatrolName().compareTo(current.getPatrolName());
+                assertEquals(true, order < 0 || (order == 0 && previous.getPatrolId() < current.getPatrolId()));
+            }
+        }
+    }
+
+    @Test
+    public void filtersAreAppliedOnEveryPage() {
+        List<PatrolSummary> filtered = pageThrough(track.getTrackId(), "Kåren", 2);
+        for (PatrolSummary patrol : filtered) {
+            assertEquals("Spårare", patrol.getTrackName());
+            assertEquals("Kåren", patrol.getTroop());
+        }
+        // Jämna p som inte är delbara med 3
+        assertEquals(8, filtered.size());
+    }
+
+    private List<PatrolSummary> pageThrough(Integer trackId, String troop, int pageSize) {
+        List<PatrolSummary> all = new ArrayList<PatrolSummary>();
+        String afterName = null;
+        Integer afterId = null;
+        while (true) {
+            sessionFactory.getStatistics().clear();
+            Session session = sessionFactory.getCurrentSession();
+            session.beginTransaction();
+            List<PatrolSummary> page = patrolDao.getPatrolSummaryPage(trackId, troop, afterName, afterId, pageSize);
+            session.getTransaction().commit();
+            // En fråga per sida oavsett hur långt in i listan sidan ligger
+            assertEquals(1, sessionFactory.getStatistics().getPrepareStatementCount());
+            all.addAll(page);
+            if (page.size() < pageSize) {
+                return all;
+            }
+            afterName = page.get(page.size() - 1).getPatrolName();
+            afterId = page.get(page.size() - 1).getPatrolId();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.PatrolSummary;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+
+public class TestPatrolSummaries {
+
+    private SessionFactory sessionFactory;
+    private PatrolDAO patrolDao;
+    private PatrolImpl scored;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("patrolsummaries");
+        patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        Track track = new Track();
+        track.setTrackName("Spårare");
+        session.save(track);
+        scored = new PatrolImpl();
+        scored.setPatrolName("Bävrarna");
+        scored.setTroop("Kåren");
+        scored.setTrack(track);
+        session.save(scored);
+        PatrolImpl empty = new PatrolImpl();
+        empty.setPatrolName("Örnarna");
+        session.save(empty);
+        for (int i = 1; i <= 3; i++) {
+            Station station = new Station();
+            station.setStationName("Kontroll " + i);
+            station.setStationNumber(i);
+            session.save(station);
+            ScoreImpl score = new ScoreImpl();
+            score.setPatrol(scored);
+            score.setStation(station);
+            score.setScorePoint(i * 2);
+            score.setStylePoint(i);
+            session.save(score);
+        }
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void summariesAreAggregatedWithoutLoadingEntities() {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        List<PatrolSummary> summaries = patrolDao.getAllPatrolSummaries();
+        session.getTransaction().commit();
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, summaries.size());
+
+        PatrolSummary first = summaries.get(0);
+        assertEquals("Bävrarna", first.getPatrolName());
+        assertEquals("Spårare", first.getTrackName());
+        assertEquals(12, first.getTotalScorePoint());
+        assertEquals(6, first.getTotalStylePoint());
+        assertEquals(18, first.getTotalScore());
+        assertEquals(3, first.getTotalReportedStations());
+
+        PatrolSummary second = summaries.get(1);
+        assertNull(second.getTrackName());
+        assertEquals(0, second.getTotalScore());
+        assertEquals(0, second.getTotalReportedStations());
+    }
+
+    @Test
+    public void scoresAreOnlyLoadedWhenFetched() throws PatrolNotFoundException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        PatrolImpl plain = patrolDao.getById(scored.getPatrolId());
+        session.getTransaction().commit();
+        assertTrue(!Hibernate.isInitialized(plain.getScores()));
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        PatrolImpl withScores = patrolDao.getByIdWithScores(scored.getPatrolId());
+        session.getTransaction().commit();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(3, withScores.getScores().size());
+        assertEquals(Integer.valueOf(18), withScores.getTotalScore());
+    }
+}
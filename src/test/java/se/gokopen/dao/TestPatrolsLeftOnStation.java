@@ -0,0 +1,104 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+
+/**
+ * PatrolDAO.getPatrolsLeftOnStation ska kosta lika mycket oavsett hur många
+ * poäng som sparats: en fråga och bara de kvarvarande patrullerna laddas.
+ * Antalet patruller som är kvar hålls konstant medan antalet poäng växer.
+ * Tiderna mot det gamla filtret i Java mäts i LeftOnStationBenchmark
+ * (mvn -Pbenchmark test).
+ */
+public class TestPatrolsLeftOnStation {
+
+    private static final int PATROLS = 200;
+
+    private SessionFactory sessionFactory;
+    private PatrolDAO patrolDao;
+    private List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("leftonstation");
+        patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void costFollowsRemainingPatrolsNotTotalScores() {
+        Station target = null;
+        int stations = 0;
+        for (int toStation : new int[] { 1, 10, 40 }) {
+            target = seed(target, stations, toStation);
+            stations = toStation;
+            Statistics statistics = sessionFactory.getStatistics();
+            statistics.clear();
+
+            Session session = sessionFactory.getCurrentSession();
+            session.beginTransaction();
+            List<PatrolImpl> left = patrolDao.getPatrolsLeftOnStation(target.getStationId());
+            session.getTransaction().commit();
+
+            assertEquals(PATROLS / 2, left.size());
+            assertEquals(stations + " kontroller", 1, statistics.getPrepareStatementCount());
+            // Bara de kvarvarande patrullerna laddas, och de har inga poäng
+            assertEquals(stations + " kontroller", PATROLS / 2, statistics.getEntityLoadCount());
+            assertEquals(stations + " kontroller", 0, statistics.getCollectionLoadCount());
+        }
+    }
+
+    /**
+     * Varannan patrull har besökt målkontrollen och får poäng på fler
+     * kontroller för varje varv, övriga patruller har inga poäng alls.
+     */
+    private Station seed(Station target, int fromStation, int toStation) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        if (patrols.isEmpty()) {
+            for (int i = 0; i < PATROLS; i++) {
+                PatrolImpl patrol = new PatrolImpl();
+                patrol.setPatrolName("Patrull " + i);
+                session.save(patrol);
+                patrols.add(patrol);
+            }
+        }
+        for (int s = fromStation; s < toStation; s++) {
+            Station station = new Station();
+            station.setStationName("Kontroll " + s);
+            station.setStationNumber(s);
+            session.save(station);
+            if (target == null) {
+                target = station;
+            }
+            for (int i = 0; i < PATROLS; i += 2) {
+                ScoreImpl score = new ScoreImpl();
+                score.setPatrol(patrols.get(i));
+                score.setStation(station);
+                score.setScorePoint(5);
+                session.save(score);
+            }
+        }
+        session.getTransaction().commit();
+        return target;
+    }
+}
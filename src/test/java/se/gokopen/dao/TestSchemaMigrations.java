@@ -0,0 +1,251 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Skripten i WEB-INF/db mot H2 i MySQL-läge: att de bygger tabeller som
+ * Hibernate godkänner med validate, att de uppdaterar en databas från före
+ * versionerna, att de tar emot en databas som hbm2ddl byggt och att
+ * frågorna i DAO:erna använder indexen (EXPLAIN).
+ */
+public class TestSchemaMigrations {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SingleConnectionDataSource dataSource;
+
+    @Before
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:migrations;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    @Test
+    public void scriptsBuildTheMappedSchemaOnce() throws Exception {
+        assertEquals(Arrays.asList(1, 2, 3, 4), migrator(scripts()).migrate());
+        assertEquals(Collections.emptyList(), migrator(scripts()).migrate());
+        SchemaMigrator.Status status = migrator(scripts()).status();
+        assertEquals(4, status.getVersion());
+        assertEquals("patrol totals", status.getDescription());
+        assertEquals(0, status.getPending());
+
+        // H2 ger id:n från sekvenser där MySQL använder auto_increment
+        execute("create sequence hibernate_sequence");
+        execute("create sequence user_sequence");
+        Properties validate = new Properties();
+        validate.setProperty("hibernate.hbm2ddl.auto", "validate");
+        EmbeddedDatabase.createSessionFactory("migrations", validate).close();
+    }
+
+    @Test
+    public void databaseFromBeforeVersionsIsUpgraded() throws Exception {
+        // Tabellerna som hbm2ddl byggde, utan schema_version
+        for (String sql : SchemaMigrator.statements(FileCopyUtils.copyToString(new InputStreamReader(
+                new FileInputStream("src/main/webapp/WEB-INF/db/V1__baseline.sql"), "UTF-8")))) {
+            execute(sql);
+        }
+        execute("insert into track (trackid, trackname) values (1, 'Klass 1')");
+        for (int s = 1; s <= 2; s++) {
+            execute("insert into station (stationid, stationnumber, stationname, minscore, maxscore, minstylescore, maxstylescore) "
+                    + "values (" + s + ", " + s + ", 'Kontroll " + s + "', 0, 10, 0, 5)");
+        }
+        execute("insert into patrol (patrolid, patrolname, fk_track) values (1, 'Patrull 1', 1)");
+        execute("insert into patrol (patrolid, patrolname, fk_track) values (2, 'Patrull 2', 1)");
+        // Två poäng på samma kontroll, som det gick att spara förut
+        execute("insert into score (scoreid, fk_patrol, fk_station, scorepoint, stylepoint) values (1, 1, 1, 3, 1)");
+        execute("insert into score (scoreid, fk_patrol, fk_station, scorepoint, stylepoint) values (2, 1, 1, 7, 2)");
+        execute("insert into score (scoreid, fk_patrol, fk_station, scorepoint, stylepoint) values (3, 1, 2, 5, 0)");
+        execute("insert into config (id, name) values (1, 'Tävlingen')");
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), migrator(scripts()).migrate());
+
+        assertEquals("2,3", queryIds("select scoreid from score order by scoreid"));
+        assertEquals("1", queryIds("select scoreid from score_duplicate"));
+        assertEquals("12,2,14,2", queryIds("select scorepoint, stylepoint, total, reportedstations from patrol where patrolid=1"));
+        assertEquals("0,0,0,0", queryIds("select scorepoint, stylepoint, total, reportedstations from patrol where patrolid=2"));
+
+        execute("create sequence hibernate_sequence start with 100");
+        execute("create sequence user_sequence");
+        Properties validate = new Properties();
+        validate.setProperty("hibernate.hbm2ddl.auto", "validate");
+        EmbeddedDatabase.createSessionFactory("migrations", validate).close();
+    }
+
+    @Test
+    public void schemaFromHbm2ddlIsAccepted() throws Exception {
+        Properties create = new Properties();
+        create.setProperty("hibernate.hbm2ddl.auto", "create");
+        SessionFactory sessionFactory = EmbeddedDatabase.createSessionFactory("migrations", create);
+        sessionFactory.close();
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), migrator(scripts()).migrate());
+    }
+
+    @Test
+    public void changedScriptStopsStartup() throws Exception {
+        File script = folder.newFile("V1__first.sql");
+        FileCopyUtils.copy("create table if not exists first (id integer);".getBytes("UTF-8"), script);
+        migrator(new Resource[] { new FileSystemResource(script) }).migrate();
+
+        FileCopyUtils.copy("create table if not exists first (id bigint);".getBytes("UTF-8"), script);
+        try {
+            migrator(new Resource[] { new FileSystemResource(script) }).migrate();
+            fail("Ett ändrat skript ska inte godtas");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version 1"));
+        }
+    }
+
+    @Test
+    public void statementsSpanLinesAndSkipComments() {
+        assertEquals(Arrays.asList("create table a (\nid integer)", "create index b on a (id)"),
+                SchemaMigrator.statements("-- kommentar\ncreate table a (\n  id integer);\n\r\ncreate index b on a (id);\n"));
+    }
+
+    @Test
+    public void scoreLookupsUseIndexes() throws Exception {
+        migrator(scripts()).migrate();
+        seed();
+
+        assertUsesIndex("uq_score_patrol_station", "select scoreid from score where fk_patrol=1 and fk_station=2");
+        assertNoTableScan("select scoreid from score where fk_patrol=1 order by fk_station");
+        assertUsesIndex("idx_score_station_patrol", "select fk_patrol from score where fk_station=2");
+        assertUsesIndex("uq_score_clientkey", "select scoreid from score where clientkey in ('a', 'b')");
+        assertUsesIndex("uq_score_patrol_station", "select patrolid from patrol p where not exists "
+                + "(select s.scoreid from score s where s.fk_patrol=p.patrolid and s.fk_station=2) order by patrolname");
+    }
+
+    @Test
+    public void patrolAndUserLookupsUseIndexes() throws Exception {
+        migrator(scripts()).migrate();
+        seed();
+
+        assertUsesIndex("idx_patrol_track_name", "select patrolid from patrol where fk_track=1 order by patrolname, patrolid");
+        assertUsesIndex("idx_patrol_troop_name", "select patrolid from patrol where troop='Kår 1' order by patrolname, patrolid");
+        assertUsesIndex("idx_users_username", "select userid from users where username='admin'");
+    }
+
+    /**
+     * En tävling i liten skala så att H2 väljer index efter statistik och
+     * inte efter tomma tabeller.
+     */
+    private void seed() throws SQLException {
+        for (int s = 1; s <= 10; s++) {
+            execute("insert into station (stationid, stationnumber, stationname, minscore, maxscore, minstylescore, maxstylescore) "
+                    + "values (" + s + ", " + s + ", 'Kontroll " + s + "', 0, 10, 0, 5)");
+        }
+        for (int t = 1; t <= 4; t++) {
+            execute("insert into track (trackid, trackname) values (" + t + ", 'Klass " + t + "')");
+        }
+        for (int p = 1; p <= 200; p++) {
+            execute("insert into patrol (patrolid, patrolname, troop, fk_track) values (" + p + ", 'Patrull " + p + "', 'Kår " + (p % 20)
+                    + "', " + (p % 4 + 1) + ")");
+            for (int s = 1; s <= 8; s++) {
+                execute("insert into score (fk_patrol, fk_station, scorepoint, stylepoint) values (" + p + ", " + s + ", 5, 2)");
+            }
+        }
+        execute("insert into users (username, password, enabled, role) values ('admin', 'admin', true, 'ROLE_ADMIN')");
+        execute("analyze");
+    }
+
+    private void assertUsesIndex(String index, String sql) throws SQLException {
+        String plan = explain(sql);
+        assertTrue(sql + " använder inte " + index + ":\n" + plan, plan.toLowerCase().contains(index));
+    }
+
+    /**
+     * H2 har ett eget index för varje främmande nyckel och väljer det när
+     * flera index börjar med samma kolumn. MySQL använder det sammansatta
+     * indexet för nyckeln, så här räcker det att frågan inte läser hela
+     * tabellen.
+     */
+    private void assertNoTableScan(String sql) throws SQLException {
+        String plan = explain(sql);
+        assertTrue(sql + " läser hela tabellen:\n" + plan, !plan.contains("tableScan"));
+    }
+
+    private String explain(String sql) throws SQLException {
+        Statement statement = dataSource.getConnection().createStatement();
+        try {
+            ResultSet plan = statement.executeQuery("explain " + sql);
+            plan.next();
+            return plan.getString(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Alla värden i svaret, kommaseparerade.
+     */
+    private String queryIds(String sql) throws SQLException {
+        Statement statement = dataSource.getConnection().createStatement();
+        try {
+            ResultSet rows = statement.executeQuery(sql);
+            StringBuilder values = new StringBuilder();
+            while (rows.next()) {
+                for (int i = 1; i <= rows.getMetaData().getColumnCount(); i++) {
+                    if (values.length() > 0) {
+                        values.append(',');
+                    }
+                    values.append(rows.getString(i));
+                }
+            }
+            return values.toString();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private SchemaMigrator migrator(Resource[] scripts) {
+        SchemaMigrator migrator = new SchemaMigrator();
+        migrator.setDataSource(dataSource);
+        migrator.setScripts(scripts);
+        return migrator;
+    }
+
+    private static Resource[] scripts() throws Exception {
+        return new PathMatchingResourcePatternResolver().getResources("file:src/main/webapp/WEB-INF/db/V*.sql");
+    }
+}
@@ -0,0 +1,110 @@
+package se.gokopen.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+
+public class TestScrollingExport {
+
+    private SessionFactory sessionFactory;
+    private ScoreDAO scoreDao;
+
+    @Before
+    public void setup() throws ScoreNotSavedException {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("scrollingexport");
+        scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        Track track = new Track();
+        track.setTrackName("Spårare");
+        session.save(track);
+        Station first = station(session, 1);
+        Station second = station(session, 2);
+        PatrolImpl low = patrol(session, "Bävrarna", track);
+        PatrolImpl high = patrol(session, "Örnarna", track);
+        session.flush();
+        List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+        scores.add(score(low, second, 1, 1));
+        scores.add(score(low, first, 2, 0));
+        scores.add(score(high, first, 8, 2));
+        scoreDao.saveNewScores(scores);
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void scoresAreStreamedInTrackPatrolStationOrder() throws IOException {
+        List<Object[]> rows = scroll();
+        assertEquals(3, rows.size());
+        assertEquals("Bävrarna", rows.get(0)[2]);
+        assertEquals(1, rows.get(0)[4]);
+        assertEquals(2, rows.get(1)[4]);
+        assertEquals("Örnarna", rows.get(2)[2]);
+        assertEquals(8, rows.get(2)[6]);
+    }
+
+    private List<Object[]> scroll() throws IOException {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        RowHandler handler = new RowHandler() {
+            @Override
+            public void handleRow(Object[] row) {
+                rows.add(row);
+            }
+        };
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        scoreDao.scrollScores(handler);
+        session.getTransaction().commit();
+        // Bara skalära värden, inga entiteter i sessionen
+        assertEquals(0, statistics.getEntityLoadCount());
+        return rows;
+    }
+
+    private static Station station(Session session, int number) {
+        Station station = new Station();
+        station.setStationName("Kontroll " + number);
+        station.setStationNumber(number);
+        session.save(station);
+        return station;
+    }
+
+    private static PatrolImpl patrol(Session session, String name, Track track) {
+        PatrolImpl patrol = new PatrolImpl();
+        patrol.setPatrolName(name);
+        patrol.setTrack(track);
+        session.save(patrol);
+        return patrol;
+    }
+
+    private static ScoreImpl score(PatrolImpl patrol, Station station, int scorePoint, int stylePoint) {
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrol);
+        score.setStation(station);
+        score.setScorePoint(scorePoint);
+        score.setStylePoint(stylePoint);
+        return score;
+    }
+}
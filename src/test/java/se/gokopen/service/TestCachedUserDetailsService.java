@@ -0,0 +1,99 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.UserDaoImpl;
+import se.gokopen.model.User;
+
+public class TestCachedUserDetailsService {
+
+    private SessionFactory sessionFactory;
+    private CachedUserDetailsServiceImpl userDetailsService;
+    private User user;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("userdetails");
+        UserDaoImpl userDao = new UserDaoImpl();
+        ReflectionTestUtils.setField(userDao, "sessionFactory", sessionFactory);
+        userDetailsService = new CachedUserDetailsServiceImpl();
+        ReflectionTestUtils.setField(userDetailsService, "userDao", userDao);
+
+        user = new User();
+        user.setUsername("k1");
+        user.setPassword("hemligt");
+        user.setEnabled(true);
+        user.setRole("ROLE_USER");
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        session.save(user);
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void repeatedLoginsAreServedFromMemory() {
+        sessionFactory.getStatistics().clear();
+        UserDetails first = login("k1");
+        ((org.springframework.security.core.userdetails.User) first).eraseCredentials();
+        UserDetails second = login("K1");
+
+        assertEquals(1, sessionFactory.getStatistics().getPrepareStatementCount());
+        assertEquals(1, userDetailsService.getHitCount());
+        assertEquals(1, userDetailsService.getMissCount());
+        // Lösenordet finns kvar trots att det förra objektet nollades
+        assertEquals("hemligt", second.getPassword());
+        assertEquals("ROLE_USER", second.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    public void evictedUserIsReadAgain() {
+        login("k1");
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        user.setEnabled(false);
+        session.update(user);
+        session.getTransaction().commit();
+
+        userDetailsService.evict("k1");
+        assertFalse(login("k1").isEnabled());
+        assertEquals(2, userDetailsService.getMissCount());
+    }
+
+    @Test
+    public void unknownUserIsNotCached() {
+        try {
+            login("k2");
+            fail();
+        } catch (UsernameNotFoundException e) {
+            // förväntat
+        }
+        assertEquals(0, userDetailsService.getCachedUserCount());
+    }
+
+    private UserDetails login(String username) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return userDetailsService.loadUserByUsername(username);
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+}
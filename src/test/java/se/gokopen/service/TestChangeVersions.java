@@ -0,0 +1,58 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestChangeVersions {
+
+    private final ChangeVersions versions = new ChangeVersions();
+
+    @Test
+    public void unknownVersionIsAnsweredDirectly() throws InterruptedException {
+        long current = versions.current(1);
+        long start = System.currentTimeMillis();
+        assertEquals(current, versions.await(1, current - 5, 10000));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void waitTimesOutWithoutChange() throws InterruptedException {
+        long current = versions.current(1);
+        versions.changed(2);
+        assertEquals(current, versions.await(1, current, 200));
+    }
+
+    @Test
+    public void changeWakesWaitingReader() throws InterruptedException {
+        final long current = versions.current(1);
+        final long[] seen = new long[1];
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    seen[0] = versions.await(1, current, 10000);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        long start = System.currentTimeMillis();
+        reader.start();
+        Thread.sleep(100);
+        versions.changed(1);
+        reader.join(5000);
+        assertEquals(current + 1, seen[0]);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void changedAllBumpsEveryTrack() {
+        long first = versions.current(1);
+        long second = versions.current(2);
+        versions.changedAll();
+        assertEquals(first + 1, versions.current(1));
+        assertEquals(second + 1, versions.current(2));
+    }
+}
@@ -0,0 +1,69 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.gokopen.controller.ControllerQueryHarness;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+
+public class TestCompetitionGenerator {
+
+    private ControllerQueryHarness harness;
+    private CompetitionGenerator generator;
+
+    @Before
+    public void setup() {
+        harness = new ControllerQueryHarness("competitiongenerator");
+        generator = harness.autowire(new CompetitionGenerator());
+        generator.setTracks(3);
+        generator.setStations(6);
+        generator.setPatrols(40);
+        generator.setScoredShare(0.5);
+        generator.setMinScore(2);
+        generator.setMaxScore(8);
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    public void generatesScoresWithinStationBounds() throws Exception {
+        int saved = generator.generate();
+
+        assertEquals(3, harness.getBean(TrackService.class).getAllTracks().size());
+        List<Station> stations = harness.getBean(StationService.class).getAllStations();
+        assertEquals(6, stations.size());
+        assertEquals(CompetitionGenerator.stationUser(1), stations.get(0).getStationUser());
+        assertEquals("ROLE_USER", harness.getBean(UserService.class).getUser(CompetitionGenerator.stationUser(6)).getRole());
+        List<PatrolImpl> patrols = harness.getBean(PatrolService.class).getAllPatrols();
+        assertEquals(40, patrols.size());
+
+        List<ScoreImpl> scores = harness.getBean(ScoreService.class).getAllScores();
+        assertEquals(saved, scores.size());
+        // Hälften av 6 * 40 par, med marginal för slumpen
+        assertTrue("Sparade " + saved, saved > 80 && saved < 160);
+        for (ScoreImpl score : scores) {
+            assertTrue(score.getScorePoint() >= 2 && score.getScorePoint() <= 8);
+            assertTrue(score.getStylePoint() >= 0 && score.getStylePoint() <= 5);
+        }
+    }
+
+    @Test
+    public void existingCompetitionIsLeftAlone() throws Exception {
+        int saved = generator.generate();
+
+        assertEquals(0, generator.generate());
+        assertEquals(3, harness.getBean(TrackService.class).getAllTracks().size());
+        assertEquals(saved, harness.getBean(ScoreService.class).getAllScores().size());
+    }
+}
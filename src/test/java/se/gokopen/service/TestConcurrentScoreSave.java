@@ -0,0 +1,156 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+
+/**
+ * Poäng som sparas genom ScoreService med Springs transaktioner, som i
+ * applikationen: samtidiga poäng för samma patrull och kontroll och fel som
+ * inte är dubbletter.
+ */
+public class TestConcurrentScoreSave {
+
+    private static final int DEVICES = 8;
+
+    private SessionFactory sessionFactory;
+    private ScoreService scoreService;
+    private PatrolImpl patrol;
+    private Station station;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSpringSessionFactory("concurrentscore");
+        ScoreDAO scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+        ScoreServiceImpl target = new ScoreServiceImpl();
+        ReflectionTestUtils.setField(target, "scoreDao", scoreDao);
+        ReflectionTestUtils.setField(target, "standingsService", new StandingsServiceImpl());
+        PlatformTransactionManager transactionManager = EmbeddedDatabase.createSpringTransactionManager(sessionFactory);
+        ReflectionTestUtils.setField(target, "transactionManager", transactionManager);
+        scoreService = EmbeddedDatabase.transactional(ScoreService.class, target, transactionManager);
+
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        patrol = new PatrolImpl();
+        patrol.setPatrolName("TestPatrol1");
+        session.save(patrol);
+        station = new Station();
+        station.setStationName("TestStation1");
+        station.setMaxScore(10);
+        session.save(station);
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void shouldSaveExactlyOneOfConcurrentSubmissions() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(DEVICES);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < DEVICES; i++) {
+            final int points = i;
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    ScoreImpl score = newScore(station);
+                    score.setScorePoint(points);
+                    start.await();
+                    try {
+                        scoreService.saveScore(score);
+                        return true;
+                    } catch (ScoreNotSavedException e) {
+                        return false;
+                    }
+                }
+            }));
+        }
+        start.countDown();
+
+        int saved = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                saved++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, saved);
+        assertEquals(1L, countScores());
+        assertEquals(1, reloadPatrol().getSumReportedStations());
+    }
+
+    @Test
+    public void removedStationIsNotReportedAsDuplicate() throws Exception {
+        Station removed = new Station();
+        removed.setStationId(station.getStationId() + 1000);
+        removed.setMaxScore(10);
+        try {
+            scoreService.saveScore(newScore(removed));
+            fail("Poäng på en kontroll som inte finns ska inte sparas");
+        } catch (ScoreNotSavedException e) {
+            fail("Felet är inte en dubblett: " + e.getErrorMsg());
+        } catch (ConstraintViolationException e) {
+            // Främmande nyckel, transaktionen rullas tillbaka
+        }
+
+        assertEquals(0L, countScores());
+        assertEquals(0, reloadPatrol().getSumReportedStations());
+        scoreService.saveScore(newScore(station));
+        assertEquals(1L, countScores());
+    }
+
+    private ScoreImpl newScore(Station on) {
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrol);
+        score.setStation(on);
+        score.setScorePoint(5);
+        return score;
+    }
+
+    private long countScores() {
+        Session session = sessionFactory.openSession();
+        try {
+            return (Long) session.createQuery("select count(*) from ScoreImpl").uniqueResult();
+        } finally {
+            session.close();
+        }
+    }
+
+    private PatrolImpl reloadPatrol() {
+        Session session = sessionFactory.openSession();
+        try {
+            return (PatrolImpl) session.get(PatrolImpl.class, patrol.getPatrolId());
+        } finally {
+            session.close();
+        }
+    }
+}
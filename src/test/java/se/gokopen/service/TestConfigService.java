@@ -0,0 +1,83 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.ConfigDAO;
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.model.Config;
+
+public class TestConfigService {
+
+    private SessionFactory sessionFactory;
+    private ConfigServiceImpl configService;
+    private final List<Config> changes = new ArrayList<Config>();
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("config");
+        ConfigDAO configDao = new ConfigDAO();
+        ReflectionTestUtils.setField(configDao, "sessionFactory", sessionFactory);
+        configService = new ConfigServiceImpl();
+        ReflectionTestUtils.setField(configService, "configDao", configDao);
+        ReflectionTestUtils.setField(configService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+        ReflectionTestUtils.setField(configService, "listeners", Collections.singletonList(new ConfigChangeListener() {
+            @Override
+            public void configChanged(Config config) {
+                changes.add(config);
+            }
+        }));
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void defaultConfigIsLoadedOnceAtStartup() {
+        configService.afterPropertiesSet();
+        sessionFactory.getStatistics().clear();
+
+        Config first = configService.getCurrentConfig();
+        assertEquals("Gök Open", first.getName());
+        assertSame(first, configService.getCurrentConfig());
+        assertEquals(0, sessionFactory.getStatistics().getPrepareStatementCount());
+    }
+
+    @Test
+    public void configIsLoadedOnFirstCallWhenNotLoadedAtStartup() {
+        // Utan transaktion, getCurrentConfig startar en själv när den behöver läsa
+        Config first = configService.getCurrentConfig();
+        assertEquals("Gök Open", first.getName());
+        assertSame(first, configService.getCurrentConfig());
+    }
+
+    @Test
+    public void savedConfigReplacesCachedAndNotifiesListeners() {
+        configService.afterPropertiesSet();
+        Config config = new Config();
+        config.setName("Vårtävlingen");
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        configService.saveConfig(config);
+        session.getTransaction().commit();
+        sessionFactory.getStatistics().clear();
+
+        assertSame(config, configService.getCurrentConfig());
+        assertEquals(Collections.singletonList(config), changes);
+        assertEquals(0, sessionFactory.getStatistics().getPrepareStatementCount());
+    }
+}
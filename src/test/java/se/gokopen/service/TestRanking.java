@@ -0,0 +1,82 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestRanking {
+
+    @Test
+    public void earlierCriteriaDecideFirst() {
+        Ranking ranking = Ranking.parse("total, score_point,MAX_SCORES");
+        assertEquals("TOTAL,SCORE_POINT,MAX_SCORES", ranking.getOrder());
+
+        assertTrue(ranking.key(10, 1, 0, 2) > ranking.key(9, 1, 5, 2));
+        assertTrue(ranking.key(10, 1, 0, 2) > ranking.key(9, 2, 5, 2));
+        assertTrue(ranking.key(10, 1, 1, 2) > ranking.key(10, 1, 0, 2));
+        assertEquals(ranking.key(10, 1, 1, 2), ranking.key(10, 1, 1, 7));
+    }
+
+    @Test
+    public void negativeAndLargePointsKeepTheirOrder() {
+        Ranking ranking = Ranking.DEFAULT;
+        assertTrue(ranking.key(-3, 0, 0, 0) < ranking.key(0, 0, 0, 0));
+        assertTrue(ranking.key(-3, 0, 0, 0) > ranking.key(-4, 0, 0, 0));
+        assertTrue(ranking.key(100000, 0, 0, 0) > ranking.key(99999, 1, 0, 0));
+        assertTrue(ranking.key(0, 0, 0, 0) >= 0);
+    }
+
+    @Test
+    public void emptyOrderGivesDefault() {
+        assertEquals(Ranking.DEFAULT, Ranking.parse(null));
+        assertEquals(Ranking.DEFAULT, Ranking.parse(" "));
+    }
+
+    @Test
+    public void invalidOrdersAreRejected() {
+        assertRejected("TOTAL,SNABBAST");
+        assertRejected("TOTAL,TOTAL");
+        assertRejected("TOTAL,SCORE_POINT,STYLE_POINT,MAX_SCORES,REPORTED_STATIONS");
+    }
+
+    @Test
+    public void sortIsStableAndDescending() {
+        Random random = new Random(42);
+        final long[] keys = new long[10000];
+        List<Integer> expected = new ArrayList<Integer>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(500);
+            expected.add(i);
+        }
+        Collections.sort(expected, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Long.valueOf(keys[i2]).compareTo(keys[i1]);
+            }
+        });
+
+        int[] order = Ranking.sortDescending(keys);
+        assertEquals(keys.length, order.length);
+        for (int i = 0; i < order.length; i++) {
+            assertEquals(expected.get(i).intValue(), order[i]);
+        }
+        assertEquals(0, Ranking.sortDescending(new long[0]).length);
+    }
+
+    private static void assertRejected(String order) {
+        try {
+            Ranking.parse(order);
+            fail(order);
+        } catch (IllegalArgumentException e) {
+            // förväntat
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.gokopen.model.Station;
+
+public class TestReferenceDataCache {
+
+    private int loads;
+
+    private final ReferenceDataCache<Station> cache = new ReferenceDataCache<Station>() {
+        @Override
+        protected List<Station> load() {
+            loads++;
+            List<Station> stations = new ArrayList<Station>();
+            Station station = new Station();
+            station.setStationId(1);
+            station.setStationName("Kontroll 1");
+            station.setMaxScore(10);
+            stations.add(station);
+            return stations;
+        }
+
+        @Override
+        protected Integer idOf(Station station) {
+            return station.getStationId();
+        }
+
+        @Override
+        protected Station copyOf(Station station) {
+            return new Station(station);
+        }
+    };
+
+    @Test
+    public void changingAReturnedStationDoesNotChangeTheCache() {
+        // Som när ett formulär binds till kontrollen
+        cache.get(1).setMaxScore(99);
+        cache.getAll().get(0).setStationName("Ändrad");
+
+        assertEquals(10, cache.get(1).getMaxScore());
+        assertEquals("Kontroll 1", cache.getAll().get(0).getStationName());
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void invalidateLoadsAgain() {
+        cache.getAll();
+        cache.invalidate();
+        cache.getAll();
+
+        assertEquals(2, loads);
+        assertNull(cache.get(2));
+    }
+}
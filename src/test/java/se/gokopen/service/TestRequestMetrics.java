@@ -0,0 +1,61 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestRequestMetrics {
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(1500), false);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(40), false);
+        }
+        histogram.record(TimeUnit.SECONDS.toNanos(30), true);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getErrors());
+        assertEquals(2, histogram.getP50Millis());
+        assertEquals(50, histogram.getP95Millis());
+        assertEquals(50, histogram.getP99Millis());
+        assertEquals(30000, histogram.percentileMillis(1.0));
+        assertEquals(30000.0, histogram.getMaxMillis(), 0.001);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final RequestMetrics metrics = new RequestMetrics();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final long nanos = TimeUnit.MILLISECONDS.toNanos(t + 1);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        metrics.record(i % 2 == 0 ? "A GET /a" : "B GET /b", nanos, false);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2, metrics.getHandlers().size());
+        assertEquals(40000, metrics.getHandlers().get("A GET /a").getCount());
+        assertEquals(8.0, metrics.getHandlers().get("B GET /b").getMaxMillis(), 0.001);
+
+        metrics.reset();
+        assertEquals(0, metrics.getHandlers().size());
+    }
+}
@@ -0,0 +1,104 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.PatrolNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+
+/**
+ * En patrull som sparas från formuläret, där bara patrullens egna fält finns
+ * med, genom PatrolService med Springs transaktioner.
+ */
+public class TestSavePatrol {
+
+    private SessionFactory sessionFactory;
+    private PatrolService patrolService;
+    private PatrolImpl patrol;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSpringSessionFactory("savepatrol");
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        PatrolServiceImpl target = new PatrolServiceImpl();
+        ReflectionTestUtils.setField(target, "patrolDao", patrolDao);
+        ReflectionTestUtils.setField(target, "standingsService", new StandingsServiceImpl());
+        ReflectionTestUtils.setField(target, "scoreCardService", new ScoreCardServiceImpl());
+        patrolService = EmbeddedDatabase.transactional(PatrolService.class, target, sessionFactory);
+
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        patrol = new PatrolImpl();
+        patrol.setPatrolName("TestPatrol1");
+        patrol.setTroop("Kåren");
+        session.save(patrol);
+        Station station = new Station();
+        station.setStationName("TestStation1");
+        station.setMaxScore(10);
+        session.save(station);
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrol);
+        score.setStation(station);
+        score.setScorePoint(5);
+        score.setStylePoint(2);
+        session.save(score);
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void savingTheFormKeepsScores() throws Exception {
+        PatrolImpl form = new PatrolImpl();
+        form.setPatrolId(patrol.getPatrolId());
+        form.setPatrolName("Nytt namn");
+        form.setTroop("Kåren");
+
+        patrolService.savePatrol(form);
+
+        Session session = sessionFactory.openSession();
+        try {
+            PatrolImpl saved = (PatrolImpl) session.get(PatrolImpl.class, patrol.getPatrolId());
+            assertEquals("Nytt namn", saved.getPatrolName());
+            assertEquals(1, saved.getScores().size());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void removedPatrolIsNotSaved() throws Exception {
+        PatrolImpl form = new PatrolImpl();
+        form.setPatrolId(patrol.getPatrolId() + 1000);
+        form.setPatrolName("Borttagen");
+        try {
+            patrolService.savePatrol(form);
+            fail("En borttagen patrull ska inte sparas igen");
+        } catch (PatrolNotSavedException e) {
+            // Väntat
+        }
+
+        Session session = sessionFactory.openSession();
+        try {
+            assertEquals(1L, session.createQuery("select count(*) from PatrolImpl").uniqueResult());
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.Station;
+
+public class TestSaveScores {
+
+    private SessionFactory sessionFactory;
+    private ScoreService scoreService;
+    private Station station;
+    private List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("savescores");
+        ScoreDAO scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+        scoreService = new ScoreServiceImpl();
+        ReflectionTestUtils.setField(scoreService, "scoreDao", scoreDao);
+        ReflectionTestUtils.setField(scoreService, "standingsService", new StandingsServiceImpl());
+        ReflectionTestUtils.setField(scoreService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        station = new Station();
+        station.setStationName("TestStation1");
+        station.setMaxScore(10);
+        station.setMaxStyleScore(2);
+        session.save(station);
+        for (int i = 0; i < 3; i++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("TestPatrol" + i);
+            session.save(patrol);
+            patrols.add(patrol);
+        }
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private ScoreImpl createScore(PatrolImpl patrol, int scorePoint, int stylePoint) {
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrol);
+        score.setStation(station);
+        score.setScorePoint(scorePoint);
+        score.setStylePoint(stylePoint);
+        return score;
+    }
+
+    @Test
+    public void shouldSaveValidRowsAndReportTheOthers() throws ScoreNotSavedException {
+        List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+        scores.add(createScore(patrols.get(0), 5, 1));
+        scores.add(createScore(patrols.get(1), 11, 0));
+        scores.add(createScore(patrols.get(0), 4, 0));
+        scores.add(createScore(patrols.get(2), 3, 2));
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        List<ScoreResult> results = scoreService.saveScores(scores);
+        session.getTransaction().commit();
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSaved());
+        assertFalse(results.get(1).isSaved());
+        assertFalse(results.get(2).isSaved());
+        assertTrue(results.get(3).isSaved());
+        assertNotNull(scores.get(0).getScoreId());
+
+        session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        assertEquals(2L, session.createQuery("select count(*) from ScoreImpl").uniqueResult());
+        PatrolImpl patrol = (PatrolImpl) session.get(PatrolImpl.class, patrols.get(0).getPatrolId());
+        assertEquals(6, patrol.getSumTotal());
+        assertEquals(1, patrol.getSumReportedStations());
+        session.getTransaction().commit();
+    }
+
+    @Test
+    public void shouldRejectPatrolsAlreadyScoredOnStation() throws ScoreNotSavedException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        scoreService.saveScore(createScore(patrols.get(1), 2, 0));
+        session.getTransaction().commit();
+
+        List<ScoreImpl> scores = new ArrayList<ScoreImpl>();
+        scores.add(createScore(patrols.get(1), 5, 1));
+        session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        List<ScoreResult> results = scoreService.saveScores(scores);
+        session.getTransaction().commit();
+
+        assertFalse(results.get(0).isSaved());
+    }
+}
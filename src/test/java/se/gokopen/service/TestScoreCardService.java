@@ -0,0 +1,111 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.StationDAO;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.Station;
+import se.gokopen.model.Track;
+
+public class TestScoreCardService {
+
+    private static final int PATROLS = 30;
+
+    private SessionFactory sessionFactory;
+    private ScoreCardServiceImpl scoreCardService;
+    private Track track;
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("scorecards");
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        StationDAO stationDao = new StationDAO();
+        ReflectionTestUtils.setField(stationDao, "sessionFactory", sessionFactory);
+        scoreCardService = new ScoreCardServiceImpl();
+        ReflectionTestUtils.setField(scoreCardService, "patrolDao", patrolDao);
+        ReflectionTestUtils.setField(scoreCardService, "stationDao", stationDao);
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        track = new Track();
+        track.setTrackName("Spårare");
+        session.save(track);
+        for (int s = 1; s <= 2; s++) {
+            Station station = new Station();
+            station.setStationName("Kontroll " + s);
+            station.setStationNumber(s);
+            session.save(station);
+        }
+        for (int p = 1; p <= PATROLS; p++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("Patrull " + p);
+            patrol.setTroop("Kåren");
+            patrol.setTrack(track);
+            session.save(patrol);
+        }
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void longTracksContinueOnNextPage() throws IOException {
+        PDDocument document = PDDocument.load(scoreCards());
+        try {
+            // Två kontroller med 30 patruller ger två sidor per kontroll
+            assertEquals(4, document.getNumberOfPages());
+            String text = new PDFTextStripper().getText(document);
+            assertTrue(text.contains("Poängkort för Kontroll 1 - Spårare"));
+            assertTrue(text.contains("(forts.)"));
+            assertTrue(text.contains("Patrull 30"));
+        } finally {
+            document.close();
+        }
+    }
+
+    @Test
+    public void documentIsCachedUntilTrackOrStationsChange() throws IOException {
+        byte[] first = scoreCards();
+        assertSame(first, scoreCards());
+
+        scoreCardService.trackChanged(track.getTrackId() + 1);
+        assertSame(first, scoreCards());
+
+        scoreCardService.trackChanged(track.getTrackId());
+        byte[] second = scoreCards();
+        assertNotSame(first, second);
+
+        scoreCardService.stationsChanged();
+        assertNotSame(second, scoreCards());
+    }
+
+    private byte[] scoreCards() throws IOException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return scoreCardService.getScoreCardPdf(track);
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.dao.StationDAO;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Station;
+
+public class TestScoreJournal {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SessionFactory sessionFactory;
+    private ScoreServiceImpl scoreService;
+    private StationServiceImpl stationService;
+    private Station station;
+    private PatrolImpl[] patrols = new PatrolImpl[3];
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("scorejournal");
+        ScoreDAO scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        StationDAO stationDao = new StationDAO();
+        ReflectionTestUtils.setField(stationDao, "sessionFactory", sessionFactory);
+        scoreService = new ScoreServiceImpl();
+        ReflectionTestUtils.setField(scoreService, "scoreDao", scoreDao);
+        ReflectionTestUtils.setField(scoreService, "patrolDao", patrolDao);
+        ReflectionTestUtils.setField(scoreService, "standingsService", new StandingsServiceImpl());
+        ReflectionTestUtils.setField(scoreService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+        stationService = new StationServiceImpl();
+        ReflectionTestUtils.setField(stationService, "stationDao", stationDao);
+        ReflectionTestUtils.setField(stationService, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        station = new Station();
+        station.setStationName("Skogen");
+        station.setMaxScore(10);
+        station.setMaxStyleScore(2);
+        session.save(station);
+        for (int i = 0; i < patrols.length; i++) {
+            patrols[i] = new PatrolImpl();
+            patrols[i].setPatrolName("Patrull" + i);
+            session.save(patrols[i]);
+        }
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void pendingScoresSurviveCrashWithTornLastLine() throws IOException {
+        ScoreJournal journal = open();
+        for (PatrolImpl patrol : patrols) {
+            assertNotNull(append(journal, patrol, 5));
+        }
+        assertNull("Samma patrull och kontroll väntar redan", append(journal, patrols[0], 3));
+        // Kraschar mitt i nästa rad utan att något har förts över
+        journal.close();
+        FileOutputStream torn = new FileOutputStream(journalFile(), true);
+        torn.write("1b2c;".getBytes("US-ASCII"));
+        torn.close();
+
+        ScoreJournal recovered = open();
+        assertEquals(3, recovered.getPendingCount());
+        assertEquals(3, writer(recovered).drain());
+        assertEquals(0, recovered.getPendingCount());
+        assertEquals(0, journalFile().length());
+        assertEquals(3L, scoreCount());
+        recovered.close();
+    }
+
+    @Test
+    public void replayAfterCrashBeforeCheckpointDoesNotSaveTwice() throws IOException {
+        ScoreJournal journal = open();
+        append(journal, patrols[0], 5);
+        append(journal, patrols[1], 7);
+        byte[] beforeDrain = Files.readAllBytes(journalFile().toPath());
+        writer(journal).drain();
+        journal.close();
+        // Kraschar efter commit men innan checkpointen skrevs
+        Files.write(journalFile().toPath(), beforeDrain);
+        new File(folder.getRoot(), "scores.checkpoint").delete();
+
+        ScoreJournal recovered = open();
+        assertEquals(2, recovered.getPendingCount());
+        ScoreJournalWriter writer = writer(recovered);
+        writer.drain();
+        assertEquals(0, writer.getRejectedCount());
+        assertEquals(2L, scoreCount());
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        assertEquals(7, ((PatrolImpl) session.get(PatrolImpl.class, patrols[1].getPatrolId())).getSumTotal());
+        session.getTransaction().commit();
+        recovered.close();
+    }
+
+    @Test
+    public void saveScoreAnswersBeforeTheDatabaseIsWritten() throws IOException, ScoreNotSavedException {
+        ScoreJournal journal = open();
+        ReflectionTestUtils.setField(scoreService, "scoreJournal", journal);
+        ScoreImpl score = new ScoreImpl();
+        score.setPatrol(patrols[2]);
+        score.setStation(station);
+        score.setScorePoint(9);
+
+        // Utan transaktion, journalen använder inte databasen
+        scoreService.saveScore(score);
+        assertNotNull(score.getClientKey());
+        assertEquals(0L, scoreCount());
+
+        writer(journal).drain();
+        assertEquals(1L, scoreCount());
+        journal.close();
+    }
+
+    @Test
+    public void scoreTheDatabaseRejectsIsRejectedByTheWriter() throws IOException, ScoreNotSavedException {
+        ScoreJournal journal = open();
+        ScoreImpl saved = new ScoreImpl();
+        saved.setPatrol(patrols[0]);
+        saved.setStation(station);
+        saved.setScorePoint(4);
+        save(saved);
+        ReflectionTestUtils.setField(scoreService, "scoreJournal", journal);
+
+        // Journalen frågar inte databasen, så kontrollen får svar direkt
+        ScoreImpl again = new ScoreImpl();
+        again.setPatrol(patrols[0]);
+        again.setStation(station);
+        again.setScorePoint(6);
+        scoreService.saveScore(again);
+        assertNotNull(again.getClientKey());
+        assertEquals(1, journal.getPendingCount());
+
+        ScoreJournalWriter writer = writer(journal);
+        writer.drain();
+        assertEquals(1, writer.getRejectedCount());
+        ScoreJournalWriter.Rejection rejection = writer.getRecentRejections().get(0);
+        assertEquals(patrols[0].getPatrolId(), rejection.getPatrolId());
+        assertEquals(station.getStationId(), rejection.getStationId());
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(1L, scoreCount());
+        journal.close();
+    }
+
+    private void save(ScoreImpl score) throws ScoreNotSavedException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            scoreService.saveScore(score);
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+
+    private ScoreJournal open() throws IOException {
+        ScoreJournal journal = new ScoreJournal(folder.getRoot().getPath());
+        journal.open();
+        return journal;
+    }
+
+    private String append(ScoreJournal journal, PatrolImpl patrol, int scorePoint) throws IOException {
+        return journal.append(patrol.getPatrolId(), station.getStationId(), scorePoint, 0);
+    }
+
+    private ScoreJournalWriter writer(ScoreJournal journal) {
+        ScoreJournalWriter writer = new ScoreJournalWriter();
+        ReflectionTestUtils.setField(writer, "scoreJournal", journal);
+        ReflectionTestUtils.setField(writer, "scoreService", scoreService);
+        ReflectionTestUtils.setField(writer, "stationService", stationService);
+        ReflectionTestUtils.setField(writer, "transactionManager", EmbeddedDatabase.createTransactionManager(sessionFactory));
+        return writer;
+    }
+
+    private File journalFile() {
+        return new File(folder.getRoot(), "scores.journal");
+    }
+
+    private long scoreCount() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return (Long) session.createQuery("select count(*) from ScoreImpl").uniqueResult();
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import se.gokopen.dao.EmbeddedDatabase;
+import se.gokopen.dao.PatrolDAO;
+import se.gokopen.dao.ScoreDAO;
+import se.gokopen.dao.ScoreNotSavedException;
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreResult;
+import se.gokopen.model.ScoreUpload;
+import se.gokopen.model.Station;
+
+public class TestSyncScores {
+
+    private SessionFactory sessionFactory;
+    private ScoreService scoreService;
+    private Station station;
+    private List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+
+    @Before
+    public void setup() {
+        sessionFactory = EmbeddedDatabase.createSessionFactory("syncscores");
+        ScoreDAO scoreDao = new ScoreDAO();
+        ReflectionTestUtils.setField(scoreDao, "sessionFactory", sessionFactory);
+        PatrolDAO patrolDao = new PatrolDAO();
+        ReflectionTestUtils.setField(patrolDao, "sessionFactory", sessionFactory);
+        scoreService = new ScoreServiceImpl();
+        ReflectionTestUtils.setField(scoreService, "scoreDao", scoreDao);
+        ReflectionTestUtils.setField(scoreService, "patrolDao", patrolDao);
+        ReflectionTestUtils.setField(scoreService, "standingsService", new StandingsServiceImpl());
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        station = new Station();
+        station.setStationName("Skogen");
+        station.setMaxScore(10);
+        station.setMaxStyleScore(2);
+        session.save(station);
+        for (int i = 0; i < 3; i++) {
+            PatrolImpl patrol = new PatrolImpl();
+            patrol.setPatrolName("Patrull" + i);
+            session.save(patrol);
+            patrols.add(patrol);
+        }
+        session.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void resentQueueIsNotSavedTwice() throws ScoreNotSavedException {
+        List<ScoreUpload> queue = Arrays.asList(upload("a", 0, 5, 1), upload("b", 1, 7, 2));
+        List<ScoreResult> first = sync(queue);
+        assertTrue(first.get(0).isSaved());
+        assertFalse(first.get(0).isAlreadySaved());
+
+        // Svaret kom aldrig fram och enheten skickar samma kö igen
+        List<ScoreResult> second = sync(queue);
+        assertTrue(second.get(0).isAlreadySaved());
+        assertTrue(second.get(1).isAlreadySaved());
+        assertEquals(first.get(1).getScore().getScoreId(), second.get(1).getScore().getScoreId());
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        assertEquals(2L, session.createQuery("select count(*) from ScoreImpl").uniqueResult());
+        PatrolImpl patrol = (PatrolImpl) session.get(PatrolImpl.class, patrols.get(0).getPatrolId());
+        assertEquals(6, patrol.getSumTotal());
+        session.getTransaction().commit();
+    }
+
+    @Test
+    public void eachItemGetsItsOwnOutcome() throws ScoreNotSavedException {
+        sync(Arrays.asList(upload("a", 0, 5, 1)));
+
+        List<ScoreResult> results = sync(Arrays.asList(
+                upload("a", 1, 5, 1),
+                upload("c", 1, 4, 0),
+                upload("c", 1, 4, 0),
+                upload("d", 2, 11, 0),
+                new ScoreUpload("e", -1, 1, 0)));
+        assertEquals("Nyckeln har redan använts för en annan poäng.", results.get(0).getErrorMsg());
+        assertTrue(results.get(1).isSaved());
+        assertTrue(results.get(2).isAlreadySaved());
+        assertFalse(results.get(3).isSaved());
+        assertEquals("Hittar inte patrullen.", results.get(4).getErrorMsg());
+    }
+
+    @Test
+    public void keyReusedInTheSameQueueIsRejected() throws ScoreNotSavedException {
+        List<ScoreResult> results = sync(Arrays.asList(upload("f", 0, 5, 1), upload("f", 1, 3, 0)));
+        assertTrue(results.get(0).isSaved());
+        assertFalse(results.get(1).isSaved());
+        assertEquals("Nyckeln har redan använts för en annan poäng.", results.get(1).getErrorMsg());
+
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        PatrolImpl patrol = (PatrolImpl) session.get(PatrolImpl.class, patrols.get(1).getPatrolId());
+        assertEquals(0, patrol.getSumReportedStations());
+        session.getTransaction().commit();
+    }
+
+    private ScoreUpload upload(String key, int patrol, int scorePoint, int stylePoint) {
+        return new ScoreUpload(key, patrols.get(patrol).getPatrolId(), scorePoint, stylePoint);
+    }
+
+    private List<ScoreResult> sync(List<ScoreUpload> uploads) throws ScoreNotSavedException {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return scoreService.syncScores(station, uploads);
+        } finally {
+            session.getTransaction().commit();
+        }
+    }
+}
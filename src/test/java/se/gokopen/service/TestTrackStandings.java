@@ -0,0 +1,117 @@
+package se.gokopen.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.gokopen.model.PatrolImpl;
+import se.gokopen.model.ScoreImpl;
+import se.gokopen.model.Standing;
+import se.gokopen.model.Station;
+
+public class TestTrackStandings {
+
+    private PatrolImpl createPatrol(Integer id, String name) {
+        PatrolImpl patrol = new PatrolImpl();
+        patrol.setPatrolId(id);
+        patrol.setPatrolName(name);
+        return patrol;
+    }
+
+    private void addScore(PatrolImpl patrol, Integer stationId, int scorePoint, int stylePoint) {
+        addScore(patrol, stationId, 10, scorePoint, stylePoint);
+    }
+
+    private void addScore(PatrolImpl patrol, Integer stationId, int maxScore, int scorePoint, int stylePoint) {
+        Station station = new Station();
+        station.setStationId(stationId);
+        station.setMaxScore(maxScore);
+        ScoreImpl score = new ScoreImpl();
+        score.setStation(station);
+        score.setPatrol(patrol);
+        score.setScorePoint(scorePoint);
+        score.setStylePoint(stylePoint);
+        patrol.getScores().add(score);
+    }
+
+    @Test
+    public void shouldKeepStandingsOrderedWhenScoresChange() {
+        PatrolImpl patrol1 = createPatrol(1, "Alfa");
+        PatrolImpl patrol2 = createPatrol(2, "Beta");
+        PatrolImpl patrol3 = createPatrol(3, "Gamma");
+        addScore(patrol1, 10, 5, 1);
+        addScore(patrol2, 10, 8, 0);
+        List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+        patrols.add(patrol1);
+        patrols.add(patrol2);
+        patrols.add(patrol3);
+
+        TrackStandings standings = new TrackStandings(patrols);
+        assertOrder(standings, 2, 1, 3);
+
+        standings.putScore(patrol3, 10, 10, 2, false);
+        assertOrder(standings, 3, 2, 1);
+
+        standings.putScore(patrol1, 11, 6, 0, false);
+        assertOrder(standings, 1, 3, 2);
+        assertEquals(12, standings.getStandings().get(0).getTotalScore());
+        assertEquals(2, standings.getStandings().get(0).getTotalReportedStations());
+
+        standings.removeScore(1, 11);
+        assertOrder(standings, 3, 2, 1);
+
+        standings.removePatrol(3);
+        assertOrder(standings, 2, 1);
+    }
+
+    @Test
+    public void shouldBreakTiesOnScorePoints() {
+        PatrolImpl patrol1 = createPatrol(1, "Alfa");
+        PatrolImpl patrol2 = createPatrol(2, "Beta");
+        addScore(patrol1, 10, 5, 5);
+        addScore(patrol2, 10, 7, 3);
+        List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+        patrols.add(patrol1);
+        patrols.add(patrol2);
+
+        TrackStandings standings = new TrackStandings(patrols);
+        assertOrder(standings, 2, 1);
+    }
+
+    @Test
+    public void shouldBreakTiesOnMaxScoresWhenConfigured() {
+        PatrolImpl patrol1 = createPatrol(1, "Alfa");
+        PatrolImpl patrol2 = createPatrol(2, "Beta");
+        PatrolImpl patrol3 = createPatrol(3, "Gamma");
+        addScore(patrol1, 10, 10, 6, 0);
+        addScore(patrol1, 11, 10, 6, 0);
+        addScore(patrol2, 10, 10, 10, 0);
+        addScore(patrol2, 11, 10, 2, 0);
+        List<PatrolImpl> patrols = new ArrayList<PatrolImpl>();
+        patrols.add(patrol1);
+        patrols.add(patrol2);
+        patrols.add(patrol3);
+
+        assertOrder(new TrackStandings(patrols), 1, 2, 3);
+
+        TrackStandings standings = new TrackStandings(patrols, Ranking.parse("TOTAL,MAX_SCORES"));
+        assertOrder(standings, 2, 1, 3);
+        assertEquals(1, standings.getStandings().get(0).getMaxScoreStations());
+
+        standings.putScore(patrol3, 10, 10, 2, true);
+        standings.putScore(patrol3, 11, 10, 2, true);
+        assertOrder(standings, 3, 2, 1);
+        assertEquals(2, standings.getStandings().get(0).getMaxScoreStations());
+    }
+
+    private void assertOrder(TrackStandings standings, Integer... patrolIds) {
+        List<Standing> list = standings.getStandings();
+        assertEquals(patrolIds.length, list.size());
+        for (int i = 0; i < patrolIds.length; i++) {
+            assertEquals(patrolIds[i], list.get(i).getPatrolId());
+        }
+    }
+}